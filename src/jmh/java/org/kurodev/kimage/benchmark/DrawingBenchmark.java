@@ -0,0 +1,52 @@
+package org.kurodev.kimage.benchmark;
+
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+import org.kurodev.kimage.kimage.draw.KImage;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primitive drawing operations on a 1024x1024 image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawingBenchmark {
+    private static final int SIZE = 1024;
+    private DrawableImage image;
+
+    @Param({"false", "true"})
+    private boolean antiAliasing;
+
+    @Setup
+    public void setup() {
+        image = new DrawableImage(SIZE, SIZE);
+        image.setAntiAliasing(antiAliasing);
+    }
+
+    @Benchmark
+    public KImage fillRect() {
+        return image.fillRect(100, 100, 800, 800, Color.RED);
+    }
+
+    /**
+     * One line in every direction, horizontal, vertical and diagonal.
+     */
+    @Benchmark
+    public KImage drawLine() {
+        image.drawLine(0, 512, SIZE - 1, 512, Color.BLUE);
+        image.drawLine(512, 0, 512, SIZE - 1, Color.BLUE);
+        image.drawLine(0, 0, SIZE - 1, SIZE - 1, Color.BLUE);
+        return image.drawLine(0, SIZE - 1, SIZE - 1, 300, Color.BLUE);
+    }
+
+    @Benchmark
+    public KImage fillCircle() {
+        return image.fillCircle(512, 512, 400, Color.GREEN);
+    }
+}
@@ -0,0 +1,58 @@
+package org.kurodev.kimage.benchmark;
+
+import org.kurodev.kimage.kimage.font.FontReader;
+import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Glyph decoding for every font in testfonts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FontBenchmark {
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog 0123456789";
+    private ByteBuffer fontData;
+    private FontReader font;
+
+    @Param({"Catways.ttf", "JetBrainsMono-Regular.ttf", "Musiqwik-zRl1.ttf", "Pixellettersfull.ttf"})
+    private String fontFile;
+
+    @Setup
+    public void setup() throws IOException {
+        fontData = ByteBuffer.wrap(Files.readAllBytes(Path.of("./testfonts", fontFile)));
+        font = FontReader.read(fontData);
+    }
+
+    /**
+     * Looks up glyphs that are already decoded.
+     */
+    @Benchmark
+    public void getGlyph(Blackhole blackhole) {
+        for (int i = 0; i < TEXT.length(); i++) {
+            blackhole.consume(font.getGlyph(TEXT.charAt(i)));
+        }
+    }
+
+    /**
+     * Parses the font and decodes every glyph of the text from scratch.
+     */
+    @Benchmark
+    public void readFontAndDecodeGlyphs(Blackhole blackhole) throws IOException {
+        FontReader fresh = FontReader.read(fontData);
+        for (int i = 0; i < TEXT.length(); i++) {
+            FontGlyph glyph = fresh.getGlyph(TEXT.charAt(i));
+            blackhole.consume(glyph);
+        }
+    }
+}
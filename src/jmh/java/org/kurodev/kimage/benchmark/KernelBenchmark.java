@@ -0,0 +1,68 @@
+package org.kurodev.kimage.benchmark;
+
+import org.kurodev.kimage.kimage.img.PixelKernels;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pixel kernels on a full HD image, one pixel at a time against the Vector API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+    private static final int PIXELS = 1920 * 1080;
+    private final int[] pixels = new int[PIXELS];
+    private final int[] background = new int[PIXELS];
+    private final int[] premultiplied = new int[PIXELS];
+    private final byte[] coverage = new byte[PIXELS];
+    private final byte[] rgba = new byte[PIXELS * 4];
+    private PixelKernels kernels;
+
+    @Param({"scalar", "vector"})
+    private String implementation;
+
+    @Setup
+    public void setup() {
+        kernels = implementation.equals("scalar") ? PixelKernels.scalar() : PixelKernels.get();
+        if (implementation.equals("vector") && kernels == PixelKernels.scalar()) {
+            throw new IllegalStateException("The Vector API is not available in this JVM");
+        }
+        Random random = new Random(42);
+        random.nextBytes(coverage);
+        for (int i = 0; i < PIXELS; i++) {
+            pixels[i] = random.nextInt();
+            background[i] = pixels[i] | 0xFF000000;
+        }
+    }
+
+    @Benchmark
+    public int[] fill() {
+        kernels.fill(premultiplied, 0, PIXELS, 0xFF3366CC);
+        return premultiplied;
+    }
+
+    @Benchmark
+    public int[] srcOverMask() {
+        //anti-aliased text on an opaque background, blending keeps it opaque
+        kernels.srcOverMask(background, 0, coverage, 0, PIXELS, 0xC0202020);
+        return background;
+    }
+
+    @Benchmark
+    public int[] premultiply() {
+        kernels.premultiply(pixels, 0, premultiplied, 0, PIXELS);
+        return premultiplied;
+    }
+
+    @Benchmark
+    public byte[] argbToRgba() {
+        kernels.argbToRgba(pixels, 0, rgba, 0, PIXELS);
+        return rgba;
+    }
+}
@@ -0,0 +1,70 @@
+package org.kurodev.kimage.benchmark;
+
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+import org.kurodev.kimage.kimage.draw.KImage;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a 1024x1024 image with shapes, text and some noise, so filters and compression have
+ * something realistic to work on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PngBenchmark {
+    private KImage image;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        DrawableImage image = new DrawableImage(1024, 1024);
+        image.fill(Color.WHITE);
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            Color color = new Color(random.nextInt(), true);
+            switch (i % 3) {
+                case 0 -> image.fillRect(random.nextInt(1024), random.nextInt(1024), random.nextInt(200), random.nextInt(200), color);
+                case 1 -> image.fillCircle(random.nextInt(1024), random.nextInt(1024), random.nextInt(100), color);
+                default -> image.drawLine(random.nextInt(1024), random.nextInt(1024), random.nextInt(1024), random.nextInt(1024), color);
+            }
+        }
+        for (int y = 900; y < 1024; y++) {
+            for (int x = 0; x < 1024; x++) {
+                image.drawPixel(x, y, new Color(random.nextInt(0x1000000)));
+            }
+        }
+        image.drawString(20, 100, "Benchmark", Color.BLACK, 64);
+        this.image = image;
+        encoded = image.encode();
+    }
+
+    /**
+     * Encodes in memory, filtering and compression run in parallel.
+     */
+    @Benchmark
+    public byte[] encode() {
+        return image.encode();
+    }
+
+    /**
+     * Streams the encoded image on the calling thread.
+     */
+    @Benchmark
+    public void encodeStreaming() throws IOException {
+        image.encode(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public KImage ofBytes() {
+        return DrawableImage.ofBytes(encoded);
+    }
+}
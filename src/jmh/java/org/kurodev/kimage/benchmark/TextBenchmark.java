@@ -0,0 +1,60 @@
+package org.kurodev.kimage.benchmark;
+
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+import org.kurodev.kimage.kimage.font.FontReader;
+import org.kurodev.kimage.kimage.font.GlyphRasterCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text rendering for every font in testfonts, with and without anti-aliasing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog 0123456789";
+    private FontReader font;
+    private DrawableImage image;
+
+    @Param({"Catways.ttf", "JetBrainsMono-Regular.ttf", "Musiqwik-zRl1.ttf", "Pixellettersfull.ttf"})
+    private String fontFile;
+
+    @Param({"false", "true"})
+    private boolean antiAliasing;
+
+    @Setup
+    public void setup() throws IOException {
+        font = FontReader.read(ByteBuffer.wrap(Files.readAllBytes(Path.of("./testfonts", fontFile))));
+        image = new DrawableImage(1200, 100);
+        image.setAntiAliasing(antiAliasing);
+    }
+
+    /**
+     * Draws text whose glyph bitmaps are already cached.
+     */
+    @Benchmark
+    public DrawableImage drawString() {
+        font.drawString(image, 10, 70, 40, Color.BLACK, TEXT);
+        return image;
+    }
+
+    /**
+     * Draws text with an empty raster cache, so every glyph is flattened and rasterized.
+     */
+    @Benchmark
+    public DrawableImage drawStringUncached() {
+        font.withRasterCache(new GlyphRasterCache(GlyphRasterCache.DEFAULT_MAX_BYTES))
+                .drawString(image, 10, 70, 40, Color.BLACK, TEXT);
+        return image;
+    }
+}
@@ -0,0 +1,55 @@
+package org.kurodev.kimage.benchmark;
+
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+import org.kurodev.kimage.kimage.draw.RenderBatch;
+import org.kurodev.kimage.kimage.draw.TileRenderer;
+import org.kurodev.kimage.kimage.font.FontReaders;
+import org.kurodev.kimage.kimage.font.GlyphRun;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A poster of overlapping shapes and text on a 2048x2048 image, drawn on one thread and tile by tile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileBenchmark {
+    private static final int SIZE = 2048;
+    private final TileRenderer renderer = new TileRenderer();
+    private DrawableImage image;
+    private RenderBatch batch;
+
+    @Param({"false", "true"})
+    private boolean antiAliasing;
+
+    @Setup
+    public void setup() {
+        image = new DrawableImage(SIZE, SIZE);
+        image.setAntiAliasing(antiAliasing);
+        GlyphRun text = FontReaders.getDefaultFontReader().layout("The quick brown fox\njumps over the lazy dog", 64);
+        batch = new RenderBatch().fill(Color.WHITE);
+        for (int i = 0; i < 16; i++) {
+            int offset = i * 120;
+            batch.fillRect(offset, offset, 400, 300, new Color(i * 15, 80, 200))
+                    .fillCircle(SIZE - offset - 200, offset + 200, 180, new Color(0, 160, i * 15, 160))
+                    .drawLine(0, offset, SIZE - 1, SIZE - 1 - offset, Color.BLACK)
+                    .drawText(text, 40, offset + 100, Color.DARK_GRAY);
+        }
+    }
+
+    @Benchmark
+    public DrawableImage serial() {
+        return batch.drawTo(image);
+    }
+
+    @Benchmark
+    public DrawableImage tiled() {
+        return renderer.render(batch, image);
+    }
+}
@@ -0,0 +1,45 @@
+package org.kurodev.sound.benchmark;
+
+import org.kurodev.sound.wav.Track;
+import org.kurodev.sound.wav.WavDecoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and encoding of the files in testWAVs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WavBenchmark {
+    private byte[] wav;
+    private Track track;
+
+    @Param({"whiteNoiseMono.wav", "whiteNoiseStereo.wav"})
+    private String file;
+
+    @Setup
+    public void setup() throws IOException {
+        wav = Files.readAllBytes(Path.of("./testWAVs", file));
+        track = WavDecoder.decode(new ByteArrayInputStream(wav));
+    }
+
+    @Benchmark
+    public Track decode() throws IOException {
+        return WavDecoder.decode(new ByteArrayInputStream(wav));
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        WavDecoder.encode(track, OutputStream.nullOutputStream());
+    }
+}
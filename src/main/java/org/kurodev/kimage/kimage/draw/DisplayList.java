@@ -0,0 +1,486 @@
+package org.kurodev.kimage.kimage.draw;
+
+import org.kurodev.kimage.kimage.font.GlyphRun;
+import org.kurodev.kimage.kimage.font.KFont;
+import org.kurodev.kimage.kimage.font.glyph.FontStyle;
+import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+import org.kurodev.kimage.kimage.img.Composite;
+import org.kurodev.kimage.kimage.img.SimplePng;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Drawing commands recorded in order, to be drawn later. Filled by a {@link RecordingImage}.
+ * <p>
+ * Replaying a list first drops commands that would be drawn entirely off-canvas or painted over by a later fill, and
+ * merges adjacent rectangles of the same color. The remaining commands are then drawn as {@link RenderBatch}es, tile by
+ * tile. The list itself is never modified by replaying, so it can be drawn onto any number of images and at any scale.
+ * <p>
+ * Images drawn with {@link KImage#draw(int, int, KImage)} are read when the list is replayed, not when the command is
+ * recorded.
+ */
+public final class DisplayList {
+    private static final Rectangle EVERYTHING = new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    private final List<Command> commands = new ArrayList<>();
+
+    void add(Command command) {
+        commands.add(command);
+    }
+
+    /**
+     * Adds all commands of the other list after the ones already recorded.
+     */
+    public DisplayList append(DisplayList other) {
+        commands.addAll(other.commands);
+        return this;
+    }
+
+    public DisplayList copy() {
+        return new DisplayList().append(this);
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    public void clear() {
+        commands.clear();
+    }
+
+    /**
+     * @see #replay(DrawableImage, double, TileRenderer)
+     */
+    public DrawableImage replay(DrawableImage target) {
+        return replay(target, 1, new TileRenderer());
+    }
+
+    /**
+     * @see #replay(DrawableImage, double, TileRenderer)
+     */
+    public DrawableImage replay(DrawableImage target, double scale) {
+        return replay(target, scale, new TileRenderer());
+    }
+
+    /**
+     * Draws every command onto the target. The anti-aliasing setting of the target is restored afterwards.
+     *
+     * @param scale    multiplies every coordinate, size and font size. Commands recorded for a 100x100 image and
+     *                 replayed with a scale of 2 fill a 200x200 image.
+     * @param renderer draws the batches the list is split into
+     */
+    public DrawableImage replay(DrawableImage target, double scale, TileRenderer renderer) {
+        boolean antiAliasing = target.isAntiAliased();
+        try {
+            boolean overwrites = target.getComposite() == Composite.SRC;
+            for (Pass pass : compile(target.getWidth(), target.getHeight(), scale, overwrites)) {
+                target.setAntiAliasing(pass.antiAliased());
+                renderer.render(pass.batch(), target);
+            }
+        } finally {
+            target.setAntiAliasing(antiAliasing);
+        }
+        return target;
+    }
+
+    /**
+     * Culls and merges the commands for a canvas of the given size, then groups them into batches that share the same
+     * anti-aliasing setting.
+     *
+     * @param overwrites whether drawing replaces pixels, only then does a fill hide everything drawn before it
+     */
+    List<Pass> compile(int width, int height, double scale, boolean overwrites) {
+        Rectangle canvas = new Rectangle(0, 0, width, height);
+        List<Command> visible = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            Command scaled = scale == 1 ? command : command.scale(scale);
+            Rectangle bounds = scaled.bounds();
+            if (!bounds.intersects(canvas)) {
+                continue;
+            }
+            if (overwrites && scaled.covers(canvas)) {
+                //everything below is painted over
+                visible.clear();
+            } else if (!visible.isEmpty() && visible.getLast() instanceof FillRect last
+                    && scaled instanceof FillRect next) {
+                FillRect merged = last.merge(next);
+                if (merged != null) {
+                    visible.set(visible.size() - 1, merged);
+                    continue;
+                }
+            }
+            visible.add(scaled);
+        }
+        List<Pass> passes = new ArrayList<>();
+        Pass current = null;
+        for (Command command : visible) {
+            boolean switchesAntiAliasing = command.dependsOnAntiAliasing()
+                    && current != null && current.antiAliased() != command.antiAliased();
+            if (current == null || switchesAntiAliasing) {
+                current = new Pass(command.antiAliased(), new RenderBatch());
+                passes.add(current);
+            }
+            command.addTo(current.batch());
+        }
+        return passes;
+    }
+
+    private static int scale(int value, double scale) {
+        return (int) Math.round(value * scale);
+    }
+
+    private static Coordinate scale(Coordinate point, double scale) {
+        return new Coordinate(scale(point.x(), scale), scale(point.y(), scale));
+    }
+
+    /**
+     * @return the rectangle covering all points, with one pixel to spare for anti-aliased edges
+     */
+    private static Rectangle around(Coordinate... points) {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (Coordinate point : points) {
+            left = Math.min(left, point.x());
+            top = Math.min(top, point.y());
+            right = Math.max(right, point.x());
+            bottom = Math.max(bottom, point.y());
+        }
+        return new Rectangle(left - 1, top - 1, right - left + 3, bottom - top + 3);
+    }
+
+    record Pass(boolean antiAliased, RenderBatch batch) {
+    }
+
+    sealed interface Command {
+        /**
+         * @return every pixel the command may draw to
+         */
+        Rectangle bounds();
+
+        Command scale(double scale);
+
+        void addTo(RenderBatch batch);
+
+        boolean antiAliased();
+
+        /**
+         * @return whether the command looks any different with anti-aliasing, only those have to be drawn in a batch
+         * with the same setting
+         */
+        default boolean dependsOnAntiAliasing() {
+            return false;
+        }
+
+        /**
+         * @return whether the command overwrites every pixel of the canvas
+         */
+        default boolean covers(Rectangle canvas) {
+            return false;
+        }
+    }
+
+    record Fill(int argb, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return EVERYTHING;
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return this;
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            batch.fill(new Color(argb, true));
+        }
+
+        @Override
+        public boolean covers(Rectangle canvas) {
+            return true;
+        }
+    }
+
+    /**
+     * Single pixels are recorded as 1x1 rectangles, so runs of them merge.
+     */
+    record FillRect(int x, int y, int width, int height, int argb, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return new Rectangle(x, y, Math.max(0, width), Math.max(0, height));
+        }
+
+        /**
+         * Scales both edges, so rectangles that touched before still touch.
+         */
+        @Override
+        public Command scale(double scale) {
+            int left = DisplayList.scale(x, scale);
+            int top = DisplayList.scale(y, scale);
+            return new FillRect(left, top, DisplayList.scale(x + width, scale) - left,
+                    DisplayList.scale(y + height, scale) - top, argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            batch.fillRect(x, y, width, height, new Color(argb, true));
+        }
+
+        @Override
+        public boolean covers(Rectangle canvas) {
+            return bounds().contains(canvas);
+        }
+
+        /**
+         * @return a rectangle covering both, or null if they differ in color or don't line up edge to edge
+         */
+        FillRect merge(FillRect next) {
+            if (argb != next.argb || width <= 0 || height <= 0) {
+                return null;
+            }
+            if (x == next.x && width == next.width && y + height == next.y) {
+                return new FillRect(x, y, width, height + next.height, argb, antiAliased);
+            }
+            if (y == next.y && height == next.height && x + width == next.x) {
+                return new FillRect(x, y, width + next.width, height, argb, antiAliased);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A partially covered pixel, blended when it is drawn. Scaling it up turns it into a block of pixels.
+     */
+    record Pixel(int x, int y, int width, int height, int argb, int coverage, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return new Rectangle(x, y, width, height);
+        }
+
+        @Override
+        public Command scale(double scale) {
+            int left = DisplayList.scale(x, scale);
+            int top = DisplayList.scale(y, scale);
+            return new Pixel(left, top, DisplayList.scale(x + width, scale) - left,
+                    DisplayList.scale(y + height, scale) - top, argb, coverage, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            Color color = new Color(argb, true);
+            batch.add(bounds(), image -> {
+                for (int row = y; row < y + height; row++) {
+                    for (int column = x; column < x + width; column++) {
+                        image.drawPixel(column, row, color, coverage);
+                    }
+                }
+            });
+        }
+    }
+
+    record DrawRect(int x, int y, int width, int height, int argb, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return new Rectangle(Math.min(x, x + width), Math.min(y, y + height), Math.abs(width) + 1, Math.abs(height) + 2);
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return new DrawRect(DisplayList.scale(x, scale), DisplayList.scale(y, scale),
+                    DisplayList.scale(width, scale), DisplayList.scale(height, scale), argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            batch.drawRect(x, y, width, height, new Color(argb, true));
+        }
+    }
+
+    record Line(int x1, int y1, int x2, int y2, int argb, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return around(new Coordinate(x1, y1), new Coordinate(x2, y2));
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return new Line(DisplayList.scale(x1, scale), DisplayList.scale(y1, scale),
+                    DisplayList.scale(x2, scale), DisplayList.scale(y2, scale), argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            batch.drawLine(x1, y1, x2, y2, new Color(argb, true));
+        }
+    }
+
+    record Circle(int centerX, int centerY, int radius, boolean filled, int argb, boolean antiAliased)
+            implements Command {
+        @Override
+        public Rectangle bounds() {
+            return new Rectangle(centerX - radius - 1, centerY - radius - 1, 2 * radius + 3, 2 * radius + 3);
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return new Circle(DisplayList.scale(centerX, scale), DisplayList.scale(centerY, scale),
+                    DisplayList.scale(radius, scale), filled, argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            if (filled) {
+                batch.fillCircle(centerX, centerY, radius, new Color(argb, true));
+            } else {
+                batch.drawCircle(centerX, centerY, radius, new Color(argb, true));
+            }
+        }
+
+        @Override
+        public boolean dependsOnAntiAliasing() {
+            return filled;
+        }
+    }
+
+    record Triangle(Coordinate c1, Coordinate c2, Coordinate c3, int argb, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return around(c1, c2, c3);
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return new Triangle(DisplayList.scale(c1, scale), DisplayList.scale(c2, scale),
+                    DisplayList.scale(c3, scale), argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            batch.add(bounds(), image -> image.fillTriangle(c1, c2, c3, new Color(argb, true)));
+        }
+
+        @Override
+        public boolean dependsOnAntiAliasing() {
+            return true;
+        }
+    }
+
+    /**
+     * The curve never leaves the triangle spanned by its control points.
+     */
+    record Bezier(Coordinate start, Coordinate end, Coordinate curve, int steps, boolean filled, int argb,
+                  boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return around(start, end, curve);
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return new Bezier(DisplayList.scale(start, scale), DisplayList.scale(end, scale),
+                    DisplayList.scale(curve, scale), steps, filled, argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            Color color = new Color(argb, true);
+            if (filled) {
+                batch.add(bounds(), image -> image.fillBezierCurve(start, end, curve, color, steps));
+            } else {
+                batch.add(bounds(), image -> image.drawBezierCurve(start, end, curve, color, steps));
+            }
+        }
+    }
+
+    /**
+     * Laid out once when it is recorded, replaying at the recorded size reuses the layout.
+     */
+    record Text(int x, int y, String str, KFont font, int fontSize, FontStyle[] styles, GlyphRun run, int argb,
+                boolean antiAliased) implements Command {
+        Text(int x, int y, String str, KFont font, int fontSize, FontStyle[] styles, int argb, boolean antiAliased) {
+            this(x, y, str, font, fontSize, styles, font.layout(str, fontSize), argb, antiAliased);
+        }
+
+        /**
+         * Styles can draw anywhere, text using them is never culled.
+         */
+        @Override
+        public Rectangle bounds() {
+            if (styles.length > 0) {
+                return EVERYTHING;
+            }
+            Rectangle bounds = run.getInkBounds();
+            bounds.translate(x, y);
+            return bounds;
+        }
+
+        @Override
+        public Command scale(double scale) {
+            return new Text(DisplayList.scale(x, scale), DisplayList.scale(y, scale), str, font,
+                    DisplayList.scale(fontSize, scale), styles, argb, antiAliased);
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            Color color = new Color(argb, true);
+            if (styles.length == 0) {
+                batch.drawText(run, x, y, color);
+            } else {
+                batch.add(bounds(), image -> run.draw(image, x, y, color, styles));
+            }
+        }
+
+        @Override
+        public boolean dependsOnAntiAliasing() {
+            return true;
+        }
+    }
+
+    /**
+     * Scaling resizes the image once, when the list is compiled.
+     */
+    record Image(int x, int y, KImage image, boolean antiAliased) implements Command {
+        @Override
+        public Rectangle bounds() {
+            return new Rectangle(x, y, image.getWidth(), image.getHeight());
+        }
+
+        @Override
+        public Command scale(double scale) {
+            int left = DisplayList.scale(x, scale);
+            int top = DisplayList.scale(y, scale);
+            int width = DisplayList.scale(x + image.getWidth(), scale) - left;
+            int height = DisplayList.scale(y + image.getHeight(), scale) - top;
+            return new Image(left, top, sample(image, width, height), antiAliased);
+        }
+
+        /**
+         * Scales with nearest neighbour sampling, every pixel takes the color of the source pixel its center lies on.
+         */
+        private static KImage sample(KImage image, int width, int height) {
+            SimplePng scaled = new SimplePng(width, height);
+            int[] pixels = scaled.getPixels();
+            for (int row = 0; row < height; row++) {
+                int sourceRow = (int) ((row + 0.5) * image.getHeight() / height);
+                for (int column = 0; column < width; column++) {
+                    int sourceColumn = (int) ((column + 0.5) * image.getWidth() / width);
+                    pixels[row * width + column] = image.getArgb(sourceColumn, sourceRow);
+                }
+            }
+            return new DrawableImage(scaled, new HashMap<>());
+        }
+
+        @Override
+        public void addTo(RenderBatch batch) {
+            batch.add(bounds(), target -> target.draw(x, y, image));
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package org.kurodev.kimage.kimage.draw;
 
+import org.kurodev.kimage.kimage.font.GlyphBitmap;
 import org.kurodev.kimage.kimage.font.KFont;
 import org.kurodev.kimage.kimage.font.enums.HeadTable;
 import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
 import org.kurodev.kimage.kimage.font.glyph.FontStyle;
 import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
 import org.kurodev.kimage.kimage.img.ChunkHandler;
+import org.kurodev.kimage.kimage.img.Composite;
 import org.kurodev.kimage.kimage.img.SimplePng;
 import org.kurodev.kimage.kimage.img.SimplePngDecoder;
 import org.kurodev.kimage.kimage.img.SimplePngEncoder;
 import org.kurodev.kimage.kimage.util.ContourHorizontalIntersects;
+import org.kurodev.kimage.kimage.util.CoverageRasterizer;
+import org.kurodev.kimage.kimage.util.LineRasterizer;
 import org.kurodev.kimage.kimage.util.Transformation;
 import org.kurodev.kimage.kimage.util.Util;
 import org.slf4j.Logger;
@@ -17,6 +21,9 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.*;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.*;
@@ -25,7 +32,22 @@ public class DrawableImage implements KImage {
     private static final Logger logger = LoggerFactory.getLogger(DrawableImage.class);
     private final Map<String, byte[]> customChunks;
     private final SimplePngDecoder decoder = new SimplePngDecoder();
+    private static final ThreadLocal<CoverageRasterizer> COVERAGE_RASTERIZER = ThreadLocal.withInitial(CoverageRasterizer::new);
     private final SimplePng png;
+    private boolean antiAliasing;
+    private Composite composite = Composite.SRC;
+    /**
+     * area drawing is restricted to, left and top inclusive, right and bottom exclusive.
+     * Unbounded unless a clip was pushed or this is a view created by {@link #clipped(int, int, int, int)}
+     */
+    private int clipLeft = Integer.MIN_VALUE;
+    private int clipTop = Integer.MIN_VALUE;
+    private int clipRight = Integer.MAX_VALUE;
+    private int clipBottom = Integer.MAX_VALUE;
+    /**
+     * the clips that were active before each {@link #pushClip(int, int, int, int)}
+     */
+    private final Deque<int[]> clipStack = new ArrayDeque<>();
 
     public DrawableImage(int width, int height) {
         png = new SimplePng(width, height);
@@ -37,6 +59,121 @@ public class DrawableImage implements KImage {
         customChunks = chunks;
     }
 
+    /**
+     * A view onto the same pixels that only draws within the given area. Used to render tiles of an image concurrently.
+     *
+     * @param right  exclusive
+     * @param bottom exclusive
+     */
+    DrawableImage clipped(int left, int top, int right, int bottom) {
+        DrawableImage view = new DrawableImage(png, customChunks);
+        view.antiAliasing = antiAliasing;
+        view.composite = composite;
+        view.clipLeft = Math.max(clipLeft, left);
+        view.clipTop = Math.max(clipTop, top);
+        view.clipRight = Math.min(clipRight, right);
+        view.clipBottom = Math.min(clipBottom, bottom);
+        return view;
+    }
+
+    /**
+     * Restricts all drawing to the given rectangle, within the current clip, until {@link #popClip()} is called.
+     * Primitives are cut to the clip before they are rasterized, drawing outside of it costs next to nothing.
+     *
+     * @param width  width of the rectangle, nothing is drawn if it is not positive
+     * @param height height of the rectangle, nothing is drawn if it is not positive
+     */
+    public DrawableImage pushClip(int x, int y, int width, int height) {
+        clipStack.push(new int[]{clipLeft, clipTop, clipRight, clipBottom});
+        clipLeft = Math.max(clipLeft, x);
+        clipTop = Math.max(clipTop, y);
+        clipRight = (int) Math.min(clipRight, (long) x + Math.max(0, width));
+        clipBottom = (int) Math.min(clipBottom, (long) y + Math.max(0, height));
+        return this;
+    }
+
+    /**
+     * Restores the clip that was active before the last {@link #pushClip(int, int, int, int)}.
+     *
+     * @throws IllegalStateException if no clip was pushed
+     */
+    public DrawableImage popClip() {
+        if (clipStack.isEmpty()) {
+            throw new IllegalStateException("No clip to pop");
+        }
+        int[] previous = clipStack.pop();
+        clipLeft = previous[0];
+        clipTop = previous[1];
+        clipRight = previous[2];
+        clipBottom = previous[3];
+        return this;
+    }
+
+    /*
+     * The clip intersected with the image, everything that is actually drawn lies within.
+     */
+    private int drawLeft() {
+        return Math.max(clipLeft, 0);
+    }
+
+    private int drawTop() {
+        return Math.max(clipTop, 0);
+    }
+
+    private int drawRight() {
+        return Math.min(clipRight, getWidth());
+    }
+
+    private int drawBottom() {
+        return Math.min(clipBottom, getHeight());
+    }
+
+    private boolean isClipped() {
+        return clipLeft != Integer.MIN_VALUE || clipTop != Integer.MIN_VALUE
+                || clipRight != Integer.MAX_VALUE || clipBottom != Integer.MAX_VALUE;
+    }
+
+    private void pixel(int x, int y, int argb) {
+        if (x >= drawLeft() && x < drawRight() && y >= drawTop() && y < drawBottom()) {
+            int[] pixels = png.getPixels();
+            int index = y * getWidth() + x;
+            pixels[index] = composite.blend(argb, pixels[index]);
+        }
+    }
+
+    private void span(int y, int x0, int x1, int argb) {
+        if (y < drawTop() || y >= drawBottom()) {
+            return;
+        }
+        x0 = Math.max(x0, drawLeft());
+        x1 = Math.min(x1, drawRight());
+        if (x0 < x1) {
+            int rowStart = y * getWidth();
+            composite.fillSpan(png.getPixels(), rowStart + x0, rowStart + x1, argb);
+        }
+    }
+
+    private void rect(int x, int y, int dx, int dy, int argb) {
+        int x0 = Math.max(x, drawLeft());
+        int y0 = Math.max(y, drawTop());
+        int x1 = (int) Math.min((long) x + dx, drawRight());
+        int y1 = (int) Math.min((long) y + dy, drawBottom());
+        if (composite == Composite.SRC) {
+            png.fillRect(x0, y0, x1 - x0, y1 - y0, argb);
+            return;
+        }
+        for (int row = y0; row < y1; row++) {
+            span(row, x0, x1, argb);
+        }
+    }
+
+    /**
+     * @return whether any pixel of the rectangle, all edges inclusive, can be drawn to
+     */
+    private boolean touchesClip(int left, int top, int right, int bottom) {
+        return right >= drawLeft() && left < drawRight() && bottom >= drawTop() && top < drawBottom();
+    }
+
     public static DrawableImage ofBytes(byte[] bytes) {
         var out = new DrawableImage(0, 0);
         try {
@@ -47,6 +184,16 @@ public class DrawableImage implements KImage {
         }
     }
 
+    /**
+     * Decodes a PNG file from the stream without reading it into memory first. The stream is not closed.
+     */
+    public static DrawableImage ofStream(InputStream in) throws IOException {
+        var out = new DrawableImage(0, 0);
+        out.decoder.decodePng(in);
+        out.adopt(out.decoder.getImage());
+        return out;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -68,19 +215,33 @@ public class DrawableImage implements KImage {
 
     @Override
     public KImage drawLine(int x1, int y1, int x2, int y2, Color color) {
-        List<Coordinate> points = Util.calculateLinePoints(x1, y1, x2, y2);
-        for (Coordinate point : points) {
-            png.writeColor(point.x(), point.y(), color);
+        if (y1 == y2) {
+            //like the general case, the end point itself is not drawn
+            if (x1 < x2) {
+                span(y1, x1, x2, color.getRGB());
+            } else {
+                span(y1, x2 + 1, x1 + 1, color.getRGB());
+            }
+            return this;
         }
+        LineRasterizer.draw(png.getPixels(), getWidth(), x1, y1, x2, y2,
+                drawLeft(), drawTop(), drawRight(), drawBottom(), color.getRGB(), composite);
         return this;
     }
 
 
     @Override
     public DrawableImage drawRect(int x, int y, int dx, int dy, Color color) {
-        List<Coordinate> points = Util.calculateRectanglePoints(x, y, dx, dy);
-        points.parallelStream().forEach(c -> drawPixel(c, color));
-
+        if (dx < 0 || dy < 0) {
+            List<Coordinate> points = Util.calculateRectanglePoints(x, y, dx, dy);
+            points.forEach(c -> drawPixel(c, color));
+            return this;
+        }
+        int argb = color.getRGB();
+        span(y, x, x + dx, argb);
+        span(y + dy, x, x + dx, argb);
+        rect(x, y, 1, dy, argb);
+        rect(x + dx, y, 1, dy + 1, argb);
         return this;
     }
 
@@ -95,18 +256,25 @@ public class DrawableImage implements KImage {
 
     @Override
     public DrawableImage fillRect(int x, int y, int dx, int dy, Color color) {
-        int xPos = x + dx;
-        int yPos = y + dy;
-        for (int writeX = x; writeX < xPos; writeX++) {
-            for (int writeY = y; writeY < yPos; writeY++) {
-                png.writeColor(writeX, writeY, color);
-            }
-        }
+        rect(x, y, dx, dy, color.getRGB());
+        return this;
+    }
+
+    @Override
+    public DrawableImage fillSpan(int y, int xStart, int xEnd, Color color) {
+        span(y, xStart, xEnd, color.getRGB());
         return this;
     }
 
     @Override
     public DrawableImage fillCircle(int centerX, int centerY, int radius, Color color) {
+        if (!touchesClip(centerX - radius - 1, centerY - radius - 1, centerX + radius + 1, centerY + radius + 1)) {
+            return this;
+        }
+        if (antiAliasing) {
+            circleMask(centerX, centerY, radius).draw(this, 0, 0, color);
+            return this;
+        }
         int x = radius;
         int y = 0;
         int radiusError = 1 - x;
@@ -133,14 +301,14 @@ public class DrawableImage implements KImage {
 
     @Override
     public DrawableImage drawCircle(int centerX, int centerY, int radius, Color color) {
+        if (!touchesClip(centerX - radius, centerY - radius, centerX + radius, centerY + radius)) {
+            return this;
+        }
         double angleIncrement = 1.0 / radius;
         for (double angle = 0; angle < 2 * Math.PI; angle += angleIncrement) {
             int x = (int) Math.round(centerX + radius * Math.cos(angle));
             int y = (int) Math.round(centerY + radius * Math.sin(angle));
-            if (isOOB(x, y)) {
-                continue;
-            }
-            png.writeColor(x, y, color);
+            pixel(x, y, color.getRGB());
         }
         return this;
     }
@@ -160,6 +328,16 @@ public class DrawableImage implements KImage {
         }
     }
 
+    @Override
+    public void encode(OutputStream out) throws IOException {
+        new SimplePngEncoder(png, customChunks).encode(out);
+    }
+
+    @Override
+    public void encode(WritableByteChannel channel) throws IOException {
+        new SimplePngEncoder(png, customChunks).encode(channel);
+    }
+
     /**
      * A adds handler for a specific chunktype in the image file.
      * The handler will be called when the specific chunk is being encountered.
@@ -173,7 +351,10 @@ public class DrawableImage implements KImage {
      */
     private void decode(byte[] png) throws IOException {
         decoder.decodePng(png);
-        var img = decoder.getImage();
+        adopt(decoder.getImage());
+    }
+
+    private void adopt(DrawableImage img) {
         this.png.override(img.png);
         this.customChunks.clear();
         this.customChunks.putAll(img.customChunks);
@@ -207,18 +388,25 @@ public class DrawableImage implements KImage {
      */
     @Override
     public DrawableImage fill(Color color) {
-        fillRect(0, 0, getWidth(), getHeight(), color);
+        if (isClipped() || composite != Composite.SRC) {
+            rect(0, 0, getWidth(), getHeight(), color.getRGB());
+        } else {
+            png.fill(color.getRGB());
+        }
         return this;
     }
 
     @Override
     public DrawableImage drawPixel(int x, int y, Color color) {
-        png.writeColor(x, y, color);
+        pixel(x, y, color.getRGB());
         return this;
     }
 
     @Override
     public DrawableImage drawBezierCurve(Coordinate start, Coordinate end, Coordinate curve, Color color, int steps) {
+        if (!touchesHull(start, end, curve)) {
+            return this;
+        }
         Set<Coordinate> points = Util.calculateBezierCurve(start, end, curve, steps);
         for (Coordinate point : points) {
             drawPixel(point, color);
@@ -228,6 +416,9 @@ public class DrawableImage implements KImage {
 
     @Override
     public DrawableImage fillBezierCurve(Coordinate start, Coordinate end, Coordinate curve, Color color, int steps) {
+        if (!touchesHull(start, end, curve)) {
+            return this;
+        }
         Set<Coordinate> points = Util.calculateBezierCurve(start, end, curve, steps);
         //draw a line to connect the start and end points.
         //otherwise the fill function cannot use ray-intersect properly
@@ -239,10 +430,20 @@ public class DrawableImage implements KImage {
         return this;
     }
 
+    /**
+     * A quadratic curve never leaves the triangle spanned by its control points.
+     */
+    private boolean touchesHull(Coordinate start, Coordinate end, Coordinate curve) {
+        return touchesClip(Math.min(start.x(), Math.min(end.x(), curve.x())),
+                Math.min(start.y(), Math.min(end.y(), curve.y())),
+                Math.max(start.x(), Math.max(end.x(), curve.x())),
+                Math.max(start.y(), Math.max(end.y(), curve.y())));
+    }
+
     public DrawableImage fillArea(Coordinate start, Color color) {
-        final Color colorToOverride = getColor(start.x(), start.y());
-        if (colorToOverride == null) return this;
-        if (colorToOverride.equals(color)) {
+        if (isOOB(start.x(), start.y())) return this;
+        final int colorToOverride = png.getArgb(start.x(), start.y());
+        if (colorToOverride == color.getRGB()) {
             logger.warn("Cannot override color with the same color");
             return this;
         }
@@ -257,33 +458,42 @@ public class DrawableImage implements KImage {
         return this;
     }
 
-    private List<Coordinate> checkSameColourNeighbours(Coordinate point, Color color) {
+    private List<Coordinate> checkSameColourNeighbours(Coordinate point, int argb) {
         List<Coordinate> out = new ArrayList<>();
         Coordinate a = new Coordinate(point.x() + 1, point.y());
         Coordinate b = new Coordinate(point.x() - 1, point.y());
         Coordinate c = new Coordinate(point.x(), point.y() + 1);
         Coordinate d = new Coordinate(point.x(), point.y() - 1);
-        if (color.equals(getColor(a))) {
+        if (hasColor(a, argb)) {
             out.add(a);
         }
-        if (color.equals(getColor(b))) {
+        if (hasColor(b, argb)) {
             out.add(b);
         }
-        if (color.equals(getColor(c))) {
+        if (hasColor(c, argb)) {
             out.add(c);
         }
-        if (color.equals(getColor(d))) {
+        if (hasColor(d, argb)) {
             out.add(d);
         }
         return out;
     }
 
+    private boolean hasColor(Coordinate point, int argb) {
+        return !isOOB(point.x(), point.y()) && png.getArgb(point.x(), point.y()) == argb;
+    }
+
     @Override
     public DrawableImage draw(int x, int y, KImage img) {
-        for (int dx = x; dx < img.getWidth(); dx++) {
-            for (int dy = y; dy < img.getHeight(); dy++) {
-                if (!isOOB(dx, dy))
-                    drawPixel(dx, dy, img.getColor(dx, dy));
+        int[] pixels = png.getPixels();
+        int left = Math.max(x, drawLeft());
+        int right = (int) Math.min((long) x + img.getWidth(), drawRight());
+        int top = Math.max(y, drawTop());
+        int bottom = (int) Math.min((long) y + img.getHeight(), drawBottom());
+        for (int row = top; row < bottom; row++) {
+            for (int column = left; column < right; column++) {
+                int index = row * getWidth() + column;
+                pixels[index] = composite.blend(img.getArgb(column - x, row - y), pixels[index]);
             }
         }
         return this;
@@ -318,18 +528,164 @@ public class DrawableImage implements KImage {
         if (isOOB(x, y)) {
             return null;
         }
-        final int r = 0, g = 1, b = 2, a = 3;
-        var col = png.readColor(x, y);
-        return new Color(col[r], col[g], col[b], col[a]);
+        return new Color(png.getArgb(x, y), true);
+    }
+
+    @Override
+    public int getArgb(int x, int y) {
+        if (isOOB(x, y)) {
+            return 0;
+        }
+        return png.getArgb(x, y);
     }
 
     @Override
     public KImage fillTriangle(Coordinate c1, Coordinate c2, Coordinate c3, Color color) {
-        var points = Util.calculateTrianglePoints(c1, c2, c3);
-        points.forEach(c -> drawPixel(c, color));
+        int minX = Math.min(c1.x(), Math.min(c2.x(), c3.x()));
+        int maxX = Math.max(c1.x(), Math.max(c2.x(), c3.x()));
+        if (!touchesClip(minX - 1, Math.min(c1.y(), Math.min(c2.y(), c3.y())) - 1,
+                maxX + 1, Math.max(c1.y(), Math.max(c2.y(), c3.y())) + 1)) {
+            return this;
+        }
+        if (antiAliasing) {
+            polygonMask(new float[]{
+                    c1.x() + 0.5f, c1.y() + 0.5f,
+                    c2.x() + 0.5f, c2.y() + 0.5f,
+                    c3.x() + 0.5f, c3.y() + 0.5f
+            }).draw(this, 0, 0, color);
+            return this;
+        }
+        //same pixels as Util.calculateTrianglePoints: every row is filled between its outermost edge pixels
+        int minY = Math.min(c1.y(), Math.min(c2.y(), c3.y()));
+        int maxY = Math.max(c1.y(), Math.max(c2.y(), c3.y()));
+        int[] rowMinX = new int[maxY - minY + 1];
+        int[] rowMaxX = new int[rowMinX.length];
+        Arrays.fill(rowMinX, Integer.MAX_VALUE);
+        Arrays.fill(rowMaxX, Integer.MIN_VALUE);
+        for (Coordinate[] edge : new Coordinate[][]{{c1, c2}, {c2, c3}, {c3, c1}}) {
+            for (Coordinate point : Util.calculateLinePoints(edge[0], edge[1])) {
+                int row = point.y() - minY;
+                rowMinX[row] = Math.min(rowMinX[row], point.x());
+                rowMaxX[row] = Math.max(rowMaxX[row], point.x());
+            }
+        }
+        int argb = color.getRGB();
+        for (int row = 0; row < rowMinX.length; row++) {
+            if (rowMinX[row] <= rowMaxX[row]) {
+                span(minY + row, rowMinX[row], rowMaxX[row] + 1, argb);
+            }
+        }
         return this;
     }
 
+    /**
+     * The anti-aliased coverage of a filled circle, positioned relative to the image origin.
+     */
+    static GlyphBitmap circleMask(int centerX, int centerY, int radius) {
+        // the filled area reaches the outer edge of the pixels at distance "radius" from the center pixel
+        double outerRadius = radius + 0.5;
+        int segments = Math.max(8, (int) Math.ceil(Math.PI * outerRadius));
+        float[] polygon = new float[segments * 2];
+        for (int i = 0; i < segments; i++) {
+            double angle = 2 * Math.PI * i / segments;
+            polygon[i * 2] = (float) (centerX + 0.5 + outerRadius * Math.cos(angle));
+            polygon[i * 2 + 1] = (float) (centerY + 0.5 + outerRadius * Math.sin(angle));
+        }
+        return polygonMask(polygon);
+    }
+
+    /**
+     * Rasterizes a closed polygon with exact pixel coverage.
+     *
+     * @param polygon alternating x and y coordinates of the corners
+     * @return the coverage, positioned relative to the image origin
+     */
+    static GlyphBitmap polygonMask(float[] polygon) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < polygon.length; i += 2) {
+            minX = Math.min(minX, polygon[i]);
+            maxX = Math.max(maxX, polygon[i]);
+            minY = Math.min(minY, polygon[i + 1]);
+            maxY = Math.max(maxY, polygon[i + 1]);
+        }
+        int left = (int) Math.floor(minX);
+        int top = (int) Math.floor(minY);
+        CoverageRasterizer rasterizer = COVERAGE_RASTERIZER.get()
+                .reset((int) Math.ceil(maxX) - left, (int) Math.ceil(maxY) - top);
+        rasterizer.moveTo(polygon[0] - left, polygon[1] - top);
+        for (int i = 2; i < polygon.length; i += 2) {
+            rasterizer.lineTo(polygon[i] - left, polygon[i + 1] - top);
+        }
+        rasterizer.closePath();
+        byte[] mask = new byte[rasterizer.getWidth() * rasterizer.getHeight()];
+        rasterizer.accumulate(mask);
+        return new GlyphBitmap(left, top, rasterizer.getWidth(), rasterizer.getHeight(), mask, true);
+    }
+
+    @Override
+    public DrawableImage drawPixel(int x, int y, Color color, int coverage) {
+        if (x < drawLeft() || x >= drawRight() || y < drawTop() || y >= drawBottom()) {
+            return this;
+        }
+        int[] pixels = png.getPixels();
+        int index = y * getWidth() + x;
+        pixels[index] = composite.blend(color.getRGB(), pixels[index], coverage);
+        return this;
+    }
+
+    @Override
+    public DrawableImage fillMask(int y, int xStart, byte[] coverage, int coverageOffset, int length, Color color) {
+        if (y < drawTop() || y >= drawBottom()) {
+            return this;
+        }
+        int from = Math.max(xStart, drawLeft());
+        int to = (int) Math.min((long) xStart + length, drawRight());
+        if (from < to) {
+            composite.fillMask(png.getPixels(), y * getWidth() + from, coverage, coverageOffset + from - xStart,
+                    to - from, color.getRGB());
+        }
+        return this;
+    }
+
+    /**
+     * Sets how everything drawn afterwards is combined with the pixels that are already there.
+     * The default, {@link Composite#SRC}, replaces them. Partially covered pixels along anti-aliased edges are
+     * blended according to the mode as well.
+     */
+    public DrawableImage setComposite(Composite composite) {
+        this.composite = Objects.requireNonNull(composite);
+        return this;
+    }
+
+    public Composite getComposite() {
+        return composite;
+    }
+
+    /**
+     * When enabled, filled circles, triangles and text are drawn with anti-aliased edges
+     * that are blended with the existing image.
+     */
+    @Override
+    public DrawableImage setAntiAliasing(boolean antiAliasing) {
+        this.antiAliasing = antiAliasing;
+        return this;
+    }
+
+    @Override
+    public boolean isAntiAliased() {
+        return antiAliasing;
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        int left = drawLeft();
+        int top = drawTop();
+        int right = drawRight();
+        int bottom = drawBottom();
+        return new Rectangle(left, top, Math.max(0, right - left), Math.max(0, bottom - top));
+    }
+
     public DrawableImage drawString(int x, int y, String str, Color color, KFont font, int fontSize, FontStyle... styles) {
         font.drawString(this, x, y, fontSize, color, str, styles);
         return this;
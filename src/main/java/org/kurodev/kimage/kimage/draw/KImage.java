@@ -7,6 +7,10 @@ import org.kurodev.kimage.kimage.font.glyph.FontStyle;
 import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 
 public interface KImage extends Drawable {
     static KImage empty(int width, int height) {
@@ -17,6 +21,10 @@ public interface KImage extends Drawable {
         return DrawableImage.ofBytes(data);
     }
 
+    static KImage ofStream(InputStream in) throws IOException {
+        return DrawableImage.ofStream(in);
+    }
+
     default KImage drawString(int x, int y, String str) {
         return drawString(x, y, str, 32);
     }
@@ -39,6 +47,11 @@ public interface KImage extends Drawable {
 
     KImage drawLine(int x1, int y1, int x2, int y2, Color color);
 
+    /**
+     * Enables or disables anti-aliasing for filled shapes and text drawn afterwards.
+     */
+    KImage setAntiAliasing(boolean antiAliasing);
+
     default KImage drawLine(int x1, int y1, int x2, int y2, Color color, int thickness) {
         drawLine(x1, y1, x2, y2, color);
         for (int i = 1; i < thickness; i++) {
@@ -87,6 +100,17 @@ public interface KImage extends Drawable {
      */
     byte[] encode();
 
+    /**
+     * Streams the image in PNG format, scanline by scanline, without building the whole file in memory.
+     * The stream is flushed but not closed.
+     */
+    void encode(OutputStream out) throws IOException;
+
+    /**
+     * @see #encode(OutputStream)
+     */
+    void encode(WritableByteChannel channel) throws IOException;
+
     /**
      * Adds a new custom chunk to the image data.
      */
@@ -152,10 +176,17 @@ public interface KImage extends Drawable {
     /**
      * @param x x coordinate of the target
      * @param y y coordinate of the target
-     * @return an int[4] with RGBA values
+     * @return the color of the pixel, or null if it lies outside the image
      */
     Color getColor(int x, int y);
 
+    /**
+     * Reads a pixel without allocating.
+     *
+     * @return the pixel as packed ARGB value ({@code 0xAARRGGBB}), 0 if it lies outside the image
+     */
+    int getArgb(int x, int y);
+
     default Color getColor(Coordinate point) {
         return getColor(point.x(), point.y());
     }
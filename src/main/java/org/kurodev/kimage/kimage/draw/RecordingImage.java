@@ -0,0 +1,231 @@
+package org.kurodev.kimage.kimage.draw;
+
+import org.kurodev.kimage.kimage.font.KFont;
+import org.kurodev.kimage.kimage.font.glyph.FontStyle;
+import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An image that records drawing calls into a {@link DisplayList} instead of drawing them right away.
+ * <p>
+ * {@link #flush()} culls and merges the recorded commands and draws them onto the underlying image, tile by tile.
+ * Anything that reads pixels, like {@link #getArgb(int, int)} or {@link #encode()}, flushes first.
+ * <p>
+ * Recorded commands can be kept and replayed onto other images, at other scales:
+ * <pre>{@code
+ * RecordingImage template = new RecordingImage(800, 600);
+ * drawReportFrame(template);
+ * DisplayList frame = template.getDisplayList().copy();
+ * frame.replay(new DrawableImage(1600, 1200), 2);
+ * }</pre>
+ * Like {@link DrawableImage} this class is not thread safe.
+ */
+public class RecordingImage implements KImage {
+    private final DrawableImage target;
+    private final TileRenderer renderer;
+    private final DisplayList displayList = new DisplayList();
+    private boolean antiAliasing;
+
+    public RecordingImage(int width, int height) {
+        this(new DrawableImage(width, height));
+    }
+
+    public RecordingImage(DrawableImage target) {
+        this(target, new TileRenderer());
+    }
+
+    public RecordingImage(DrawableImage target, TileRenderer renderer) {
+        this.target = target;
+        this.renderer = renderer;
+        this.antiAliasing = target.isAntiAliased();
+    }
+
+    /**
+     * Draws all recorded commands onto the underlying image and forgets them.
+     */
+    public RecordingImage flush() {
+        if (!displayList.isEmpty()) {
+            displayList.replay(target, 1, renderer);
+            displayList.clear();
+        }
+        return this;
+    }
+
+    /**
+     * @return the commands recorded since the last flush. Modifications to the list are visible to this image.
+     */
+    public DisplayList getDisplayList() {
+        return displayList;
+    }
+
+    /**
+     * @return the underlying image, with all recorded commands drawn
+     */
+    public DrawableImage getImage() {
+        return flush().target;
+    }
+
+    private RecordingImage record(DisplayList.Command command) {
+        displayList.add(command);
+        return this;
+    }
+
+    @Override
+    public RecordingImage drawString(int x, int y, String str, Color color, KFont font, int fontSize, FontStyle... styles) {
+        return record(new DisplayList.Text(x, y, str, font, fontSize, styles.clone(), color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage drawPixel(int x, int y, Color color) {
+        return record(new DisplayList.FillRect(x, y, 1, 1, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage drawPixel(int x, int y, Color color, int coverage) {
+        if (coverage >= 255) {
+            return drawPixel(x, y, color);
+        }
+        return record(new DisplayList.Pixel(x, y, 1, 1, color.getRGB(), coverage, antiAliasing));
+    }
+
+    @Override
+    public RecordingImage fillSpan(int y, int xStart, int xEnd, Color color) {
+        return record(new DisplayList.FillRect(xStart, y, xEnd - xStart, 1, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage drawLine(int x1, int y1, int x2, int y2, Color color) {
+        return record(new DisplayList.Line(x1, y1, x2, y2, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage setAntiAliasing(boolean antiAliasing) {
+        this.antiAliasing = antiAliasing;
+        return this;
+    }
+
+    @Override
+    public boolean isAntiAliased() {
+        return antiAliasing;
+    }
+
+    @Override
+    public RecordingImage drawRect(int x, int y, int dx, int dy, Color color) {
+        return record(new DisplayList.DrawRect(x, y, dx, dy, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage fillRect(int x, int y, int dx, int dy, Color color) {
+        return record(new DisplayList.FillRect(x, y, dx, dy, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage fillCircle(int centerX, int centerY, int radius, Color color) {
+        return record(new DisplayList.Circle(centerX, centerY, radius, true, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage drawCircle(int centerX, int centerY, int radius, Color color) {
+        return record(new DisplayList.Circle(centerX, centerY, radius, false, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage fill(Color color) {
+        return record(new DisplayList.Fill(color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage drawBezierCurve(Coordinate start, Coordinate end, Coordinate curve, Color color, int steps) {
+        return record(new DisplayList.Bezier(start, end, curve, steps, false, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage fillBezierCurve(Coordinate start, Coordinate end, Coordinate curve, Color color, int steps) {
+        return record(new DisplayList.Bezier(start, end, curve, steps, true, color.getRGB(), antiAliasing));
+    }
+
+    @Override
+    public RecordingImage fillTriangle(Coordinate c1, Coordinate c2, Coordinate c3, Color color) {
+        return record(new DisplayList.Triangle(c1, c2, c3, color.getRGB(), antiAliasing));
+    }
+
+    /**
+     * Other recording images are flushed right away, so their current content is drawn.
+     */
+    @Override
+    public RecordingImage draw(int x, int y, KImage img) {
+        if (img instanceof RecordingImage recording) {
+            img = recording.getImage();
+        }
+        return record(new DisplayList.Image(x, y, img, antiAliasing));
+    }
+
+    @Override
+    public DrawableImage resize(int width, int height) {
+        return getImage().resize(width, height);
+    }
+
+    @Override
+    public DrawableImage resize(double scale) {
+        return getImage().resize(scale);
+    }
+
+    @Override
+    public int getWidth() {
+        return target.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return target.getHeight();
+    }
+
+    @Override
+    public Color getColor(int x, int y) {
+        return getImage().getColor(x, y);
+    }
+
+    @Override
+    public int getArgb(int x, int y) {
+        return getImage().getArgb(x, y);
+    }
+
+    @Override
+    public byte[] encode() {
+        return getImage().encode();
+    }
+
+    @Override
+    public void encode(OutputStream out) throws IOException {
+        getImage().encode(out);
+    }
+
+    @Override
+    public void encode(WritableByteChannel channel) throws IOException {
+        getImage().encode(channel);
+    }
+
+    @Override
+    public void addCustomChunk(String type, byte[] data) {
+        target.addCustomChunk(type, data);
+    }
+
+    @Override
+    public void addCustomChunk(String type, String data) {
+        target.addCustomChunk(type, data);
+    }
+
+    @Override
+    public String getChunkString(String type) {
+        return target.getChunkString(type);
+    }
+
+    @Override
+    public byte[] getChunk(String type) {
+        return target.getChunk(type);
+    }
+}
@@ -0,0 +1,145 @@
+package org.kurodev.kimage.kimage.draw;
+
+import org.kurodev.kimage.kimage.font.GlyphBitmap;
+import org.kurodev.kimage.kimage.font.GlyphRun;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An ordered list of drawing operations, each with the area of the image it can touch.
+ * <p>
+ * A batch can be drawn as a whole with {@link #drawTo(DrawableImage)} or split into tiles that are drawn concurrently
+ * by a {@link TileRenderer}. Either way every pixel receives the same operations in the same order, so the results
+ * are identical.
+ * <p>
+ * Batches are not thread safe while they are being filled, but can be rendered by several threads at once.
+ */
+public final class RenderBatch {
+    private static final Rectangle EVERYTHING = new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    private final List<Primitive> primitives = new ArrayList<>();
+
+    public RenderBatch fill(Color color) {
+        return add(EVERYTHING, image -> image.fill(color));
+    }
+
+    public RenderBatch fillRect(int x, int y, int dx, int dy, Color color) {
+        return add(new Rectangle(x, y, Math.max(0, dx), Math.max(0, dy)), image -> image.fillRect(x, y, dx, dy, color));
+    }
+
+    public RenderBatch drawRect(int x, int y, int dx, int dy, Color color) {
+        Rectangle bounds = span(x, y, x + dx, y + dy + 1);
+        return add(bounds, image -> image.drawRect(x, y, dx, dy, color));
+    }
+
+    public RenderBatch drawLine(int x1, int y1, int x2, int y2, Color color) {
+        return add(span(x1, y1, x2, y2), image -> image.drawLine(x1, y1, x2, y2, color));
+    }
+
+    public RenderBatch drawCircle(int centerX, int centerY, int radius, Color color) {
+        Rectangle bounds = span(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+        return add(bounds, image -> image.drawCircle(centerX, centerY, radius, color));
+    }
+
+    /**
+     * Anti-aliased circles are rasterized once, no matter how many tiles they cover.
+     */
+    public RenderBatch fillCircle(int centerX, int centerY, int radius, Color color) {
+        //one more pixel in every direction for the anti-aliased edge
+        Rectangle bounds = span(centerX - radius - 1, centerY - radius - 1, centerX + radius + 1, centerY + radius + 1);
+        CircleMask mask = new CircleMask(centerX, centerY, radius);
+        return add(bounds, image -> {
+            if (image.isAntiAliased()) {
+                mask.get().draw(image, 0, 0, color);
+            } else {
+                image.fillCircle(centerX, centerY, radius, color);
+            }
+        });
+    }
+
+    /**
+     * @param x pen position of the first line
+     * @param y baseline of the first line
+     */
+    public RenderBatch drawText(GlyphRun run, int x, int y, Color color) {
+        Rectangle bounds = run.getInkBounds();
+        bounds.translate(x, y);
+        return add(bounds, image -> run.draw(image, x, y, color));
+    }
+
+    /**
+     * Adds any other drawing operation.
+     *
+     * @param bounds  every pixel the operation may draw to. Pixels outside of it are not guaranteed to be drawn.
+     * @param drawing draws onto the image it is given, which may be a view that only covers part of the target
+     */
+    public RenderBatch add(Rectangle bounds, Consumer<DrawableImage> drawing) {
+        primitives.add(new Primitive(new Rectangle(bounds), drawing));
+        return this;
+    }
+
+    /**
+     * Draws every operation in order, on the calling thread.
+     */
+    public DrawableImage drawTo(DrawableImage target) {
+        for (Primitive primitive : primitives) {
+            primitive.drawing().accept(target);
+        }
+        return target;
+    }
+
+    public int size() {
+        return primitives.size();
+    }
+
+    public void clear() {
+        primitives.clear();
+    }
+
+    Rectangle getBounds(int index) {
+        return primitives.get(index).bounds();
+    }
+
+    void draw(int index, DrawableImage target) {
+        primitives.get(index).drawing().accept(target);
+    }
+
+    /**
+     * @return the rectangle covering both points, inclusive
+     */
+    private static Rectangle span(int x1, int y1, int x2, int y2) {
+        int left = Math.min(x1, x2);
+        int top = Math.min(y1, y2);
+        return new Rectangle(left, top, Math.max(x1, x2) - left + 1, Math.max(y1, y2) - top + 1);
+    }
+
+    private record Primitive(Rectangle bounds, Consumer<DrawableImage> drawing) {
+    }
+
+    /**
+     * Computed by whichever tile needs it first. Tiles racing for it compute the same mask, so no lock is needed.
+     */
+    private static final class CircleMask {
+        private final int centerX;
+        private final int centerY;
+        private final int radius;
+        private volatile GlyphBitmap mask;
+
+        CircleMask(int centerX, int centerY, int radius) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.radius = radius;
+        }
+
+        GlyphBitmap get() {
+            GlyphBitmap result = mask;
+            if (result == null) {
+                result = DrawableImage.circleMask(centerX, centerY, radius);
+                mask = result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.kurodev.kimage.kimage.draw;
+
+import java.awt.*;
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders a {@link RenderBatch} by splitting the image into square tiles that are drawn concurrently.
+ * <p>
+ * Every operation is binned into the tiles its bounds intersect. Each tile then draws its operations in the order they
+ * were added, through a view of the image that drops everything outside the tile. Tiles never share a pixel, so no
+ * locking is needed and the result is identical to {@link RenderBatch#drawTo(DrawableImage)}.
+ * <p>
+ * Instances hold no state besides their configuration and can be shared between threads.
+ */
+public final class TileRenderer {
+    public static final int DEFAULT_TILE_SIZE = 128;
+    private final ForkJoinPool pool;
+    private final int tileSize;
+
+    /**
+     * @param pool     runs the tiles
+     * @param tileSize edge length of a tile in pixels. Smaller tiles balance better but draw operations that span
+     *                 several tiles more often.
+     */
+    public TileRenderer(ForkJoinPool pool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Uses the common fork join pool.
+     */
+    public TileRenderer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    public DrawableImage render(RenderBatch batch, DrawableImage target) {
+        int columns = (target.getWidth() + tileSize - 1) / tileSize;
+        int rows = (target.getHeight() + tileSize - 1) / tileSize;
+        if (columns == 0 || rows == 0 || batch.size() == 0) {
+            return target;
+        }
+        int[][] bins = bin(batch, columns, rows, target.getWidth(), target.getHeight());
+        pool.invoke(new TileRange(target, batch, bins, columns, 0, bins.length));
+        return target;
+    }
+
+    /**
+     * @return the indices of the operations touching every tile, in the order they were added
+     */
+    private int[][] bin(RenderBatch batch, int columns, int rows, int width, int height) {
+        int[][] bins = new int[columns * rows][];
+        int[] sizes = new int[bins.length];
+        Rectangle canvas = new Rectangle(0, 0, width, height);
+        for (int i = 0; i < batch.size(); i++) {
+            Rectangle bounds = batch.getBounds(i).intersection(canvas);
+            if (bounds.isEmpty()) {
+                continue; //entirely off-canvas
+            }
+            int firstColumn = bounds.x / tileSize;
+            int lastColumn = (bounds.x + bounds.width - 1) / tileSize;
+            int firstRow = bounds.y / tileSize;
+            int lastRow = (bounds.y + bounds.height - 1) / tileSize;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int tile = row * columns + column;
+                    if (bins[tile] == null) {
+                        bins[tile] = new int[8];
+                    } else if (sizes[tile] == bins[tile].length) {
+                        bins[tile] = Arrays.copyOf(bins[tile], sizes[tile] * 2);
+                    }
+                    bins[tile][sizes[tile]++] = i;
+                }
+            }
+        }
+        for (int tile = 0; tile < bins.length; tile++) {
+            if (bins[tile] != null) {
+                bins[tile] = Arrays.copyOf(bins[tile], sizes[tile]);
+            }
+        }
+        return bins;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Splits the tiles in halves until a single tile is left, which is then drawn.
+     */
+    private class TileRange extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        //tasks never leave the pool they run in, so they are never actually serialized
+        private final transient DrawableImage target;
+        private final transient RenderBatch batch;
+        private final transient int[][] bins;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        TileRange(DrawableImage target, RenderBatch batch, int[][] bins, int columns, int from, int to) {
+            this.target = target;
+            this.batch = batch;
+            this.bins = bins;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileRange(target, batch, bins, columns, from, middle),
+                        new TileRange(target, batch, bins, columns, middle, to));
+                return;
+            }
+            int[] bin = bins[from];
+            if (bin == null) {
+                return;
+            }
+            int left = (from % columns) * tileSize;
+            int top = (from / columns) * tileSize;
+            DrawableImage tile = target.clipped(left, top, left + tileSize, top + tileSize);
+            for (int index : bin) {
+                batch.draw(index, tile);
+            }
+        }
+    }
+}
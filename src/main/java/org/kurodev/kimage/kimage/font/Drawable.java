@@ -11,4 +11,64 @@ public interface Drawable {
         return drawPixel(point.x(), point.y(), color);
     }
 
+    /**
+     * Draws a partially covered pixel, as produced by anti-aliased rasterization.
+     * Targets that cannot blend simply draw pixels that are covered at least halfway.
+     *
+     * @param coverage how much of the pixel is covered, 0 (not at all) to 255 (entirely)
+     */
+    default Drawable drawPixel(int x, int y, Color color, int coverage) {
+        if (coverage >= 128) {
+            drawPixel(x, y, color);
+        }
+        return this;
+    }
+
+    /**
+     * Draws a row of partially covered pixels, as produced by anti-aliased rasterization.
+     *
+     * @param y              the row to draw
+     * @param xStart         first pixel of the row
+     * @param coverage       how much of each pixel is covered, 0 (not at all) to 255 (entirely) as unsigned bytes
+     * @param coverageOffset index of the coverage of the first pixel
+     * @param length         number of pixels
+     */
+    default Drawable fillMask(int y, int xStart, byte[] coverage, int coverageOffset, int length, Color color) {
+        for (int i = 0; i < length; i++) {
+            int covered = coverage[coverageOffset + i] & 0xFF;
+            if (covered != 0) {
+                drawPixel(xStart + i, y, color, covered);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return whether shapes and text drawn onto this target should be anti-aliased
+     */
+    default boolean isAntiAliased() {
+        return false;
+    }
+
+    /**
+     * @return the area pixels may be drawn to, anything outside of it is dropped anyway. {@code null} if unknown
+     */
+    default Rectangle getClipBounds() {
+        return null;
+    }
+
+    /**
+     * Fills a horizontal run of pixels.
+     *
+     * @param y      the row to fill
+     * @param xStart first pixel of the span (inclusive)
+     * @param xEnd   end of the span (exclusive)
+     */
+    default Drawable fillSpan(int y, int xStart, int xEnd, Color color) {
+        for (int x = xStart; x < xEnd; x++) {
+            drawPixel(x, y, color);
+        }
+        return this;
+    }
+
 }
@@ -4,62 +4,153 @@ import org.kurodev.kimage.kimage.font.enums.FontTableEntry;
 import org.kurodev.kimage.kimage.font.enums.HeadTable;
 import org.kurodev.kimage.kimage.font.enums.HheaTable;
 import org.kurodev.kimage.kimage.font.enums.MaxpTable;
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
 import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
 import org.kurodev.kimage.kimage.font.glyph.FontStyle;
 import org.kurodev.kimage.kimage.font.glyph.GlyphFactory;
-import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+import org.kurodev.kimage.kimage.font.glyph.GridFitter;
 import org.kurodev.kimage.kimage.font.table.CmapTable;
-import org.kurodev.kimage.kimage.util.ContourHorizontalIntersects;
-import org.kurodev.kimage.kimage.util.Transformation;
+import org.kurodev.kimage.kimage.util.CoverageRasterizer;
+import org.kurodev.kimage.kimage.util.ScanlineRasterizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.*;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 public class FontReader implements KFont {
     private static final Logger logger = LoggerFactory.getLogger(FontReader.class);
-    private byte[] data;
-    private int sfntVersion;
-    private int numTables;
-    private int searchRange;
-    private int entrySelector;
-    private int rangeShift;
-    private TableEntry[] tableEntries;
-
-    public void load(InputStream in) throws IOException {
-        data = in.readAllBytes();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
-        // Read the offset table
-        sfntVersion = dis.readInt();
-        numTables = dis.readUnsignedShort();
-        searchRange = dis.readUnsignedShort();
-        entrySelector = dis.readUnsignedShort();
-        rangeShift = dis.readUnsignedShort();
-
-        // Read the table directory entries
-        tableEntries = new TableEntry[numTables];
-        for (int i = 0; i < numTables; i++) {
-            byte[] tagBytes = new byte[4];
-            dis.readFully(tagBytes);
-            String tag = new String(tagBytes, StandardCharsets.UTF_8);
-            int checkSum = dis.readInt();
-            int offset = dis.readInt();
-            int length = dis.readInt();
-            tableEntries[i] = new TableEntry(tag, checkSum, offset, length);
+    private static final ThreadLocal<ScanlineRasterizer> SCANLINE_RASTERIZER = ThreadLocal.withInitial(ScanlineRasterizer::new);
+    private static final ThreadLocal<CoverageRasterizer> COVERAGE_RASTERIZER = ThreadLocal.withInitial(CoverageRasterizer::new);
+    private final GlyphCache glyphCache;
+    private final GlyphRasterCache rasterCache;
+    private final ByteBuffer data;
+    private final int sfntVersion;
+    private final int numTables;
+    private final int searchRange;
+    private final int entrySelector;
+    private final int rangeShift;
+    private final TableEntry[] tableEntries;
+    /**
+     * Read-only views over {@link #data}, one per table. They are shared by all threads, so only absolute reads
+     * may ever be used on them.
+     */
+    private final Map<String, ByteBuffer> tables;
+    private final CmapTable cmap;
+    private final int indexToLocFormat;
+    private final int numberOfHMetrics;
+    private final GridFitter gridFitter;
+
+    /**
+     * @param data the entire font file, from its position to its limit
+     */
+    private FontReader(ByteBuffer data) throws IOException {
+        this.data = data.slice().asReadOnlyBuffer();
+        try {
+            // Read the offset table
+            sfntVersion = this.data.getInt(0);
+            numTables = this.data.getShort(4) & 0xFFFF;
+            searchRange = this.data.getShort(6) & 0xFFFF;
+            entrySelector = this.data.getShort(8) & 0xFFFF;
+            rangeShift = this.data.getShort(10) & 0xFFFF;
+
+            // Read the table directory entries
+            tableEntries = new TableEntry[numTables];
+            Map<String, ByteBuffer> tables = new HashMap<>(numTables * 2);
+            for (int i = 0; i < numTables; i++) {
+                int entry = 12 + i * 16;
+                byte[] tagBytes = new byte[4];
+                this.data.get(entry, tagBytes);
+                String tag = new String(tagBytes, StandardCharsets.UTF_8);
+                int checkSum = this.data.getInt(entry + 4);
+                int offset = this.data.getInt(entry + 8);
+                int length = this.data.getInt(entry + 12);
+                tableEntries[i] = new TableEntry(tag, checkSum, offset, length);
+                tables.put(tag, this.data.slice(offset, length));
+            }
+            this.tables = Collections.unmodifiableMap(tables);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid font file, table directory out of bounds", e);
         }
         logger.debug("loading tables: {}", numTables);
         Arrays.stream(tableEntries).forEach(entry -> logger.trace("{}", entry));
+        glyphCache = new GlyphCache();
+        rasterCache = new GlyphRasterCache(GlyphRasterCache.DEFAULT_MAX_BYTES);
+        indexToLocFormat = getTableValue(HeadTable.INDEX_TO_LOC_FORMAT);
+        numberOfHMetrics = getTableValue(HheaTable.NUM_OF_LONG_HOR_METRICS);
+        cmap = new CmapTable(getTableView("cmap"));
+        gridFitter = createGridFitter();
+    }
+
+    /**
+     * Shares everything but the raster cache with {@code font}.
+     */
+    private FontReader(FontReader font, GlyphRasterCache rasterCache) {
+        this.glyphCache = font.glyphCache;
+        this.rasterCache = rasterCache;
+        this.data = font.data;
+        this.sfntVersion = font.sfntVersion;
+        this.numTables = font.numTables;
+        this.searchRange = font.searchRange;
+        this.entrySelector = font.entrySelector;
+        this.rangeShift = font.rangeShift;
+        this.tableEntries = font.tableEntries;
+        this.tables = font.tables;
+        this.cmap = font.cmap;
+        this.indexToLocFormat = font.indexToLocFormat;
+        this.numberOfHMetrics = font.numberOfHMetrics;
+        this.gridFitter = font.gridFitter;
+    }
+
+    /**
+     * Measures the blue zones on the glyphs that define them: baseline, x-height ("x"), cap height ("H")
+     * and descender ("p"). Zones whose glyph is missing are left out.
+     */
+    private GridFitter createGridFitter() {
+        float[] zones = new float[4];
+        int count = 0;
+        zones[count++] = 0;
+        //decoded without the glyph cache, nobody asked for these glyphs yet
+        for (char character : new char[]{'x', 'H', 'p'}) {
+            int glyphIndex = getGlyphIndex(character);
+            if (glyphIndex == 0) {
+                continue;
+            }
+            FlattenedOutline outline = loadGlyph(glyphIndex, character).getFlattenedOutline(1);
+            if (!outline.isEmpty()) {
+                zones[count++] = character == 'p' ? outline.getMaxY() : outline.getMinY();
+            }
+        }
+        float tolerance = getTableValue(HeadTable.UNITS_PER_EM) / 50f;
+        return new GridFitter(Arrays.copyOf(zones, count), tolerance);
+    }
+
+    /**
+     * Reads the entire font into memory.
+     *
+     * @see #read(ByteBuffer)
+     */
+    public static FontReader read(InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    /**
+     * Reads the font straight from the buffer, which may be a memory mapped file.
+     * The tables are read-only views into the buffer, nothing is copied.
+     * <p>
+     * The returned font is immutable and only ever uses absolute reads on the buffer,
+     * so a single instance can be used by any number of threads at once.
+     *
+     * @param data the entire font file, from its position to its limit. Must not be modified afterwards.
+     * @throws IOException if the table directory is cut short or points outside the buffer
+     */
+    public static FontReader read(ByteBuffer data) throws IOException {
+        return new FontReader(data);
     }
 
     private Optional<TableEntry> getTableEntry(String tag) {
@@ -71,55 +162,46 @@ public class FontReader implements KFont {
         return Optional.empty();
     }
 
-    private Optional<ByteBuffer> getTableData(String tag) {
-        var optional = getTableEntry(tag);
-        if (optional.isPresent()) {
-            var entry = optional.get();
-            byte[] data = new byte[entry.length];
-            System.arraycopy(this.data, entry.offset, data, 0, entry.length);
-            ByteBuffer buf = ByteBuffer.wrap(data);
-            buf.order(ByteOrder.BIG_ENDIAN);
-            return Optional.of(buf);
-        }
-        return Optional.empty();
-    }
-
     /**
      * Tables that must always exist:
      * "cmap", "glyf", "head", "hhea", "hmtx", "loca", "maxp", "name", "post"
      * Some of these have been converted to Enum maps for better accessibility
      *
+     * @return the shared read-only view of the table. Only ever use absolute reads on it.
      * @see HeadTable
      * @see HheaTable
      * @see MaxpTable
      */
-    private ByteBuffer getTableDataUnsafe(String tag) {
-        var optional = getTableEntry(tag);
-        if (optional.isPresent()) {
-            var entry = optional.get();
-            byte[] data = new byte[entry.length];
-            System.arraycopy(this.data, entry.offset, data, 0, entry.length);
-            ByteBuffer buf = ByteBuffer.wrap(data);
-            buf.order(ByteOrder.BIG_ENDIAN);
-            return buf;
+    private ByteBuffer getTableView(String tag) {
+        ByteBuffer table = tables.get(tag);
+        if (table == null) {
+            throw new IllegalStateException("Required table " + tag + " not present in file");
         }
-        throw new IllegalStateException("Required table " + tag + " not present in file");
+        return table;
     }
 
     /**
      * <a href="https://developer.apple.com/fonts/TrueType-Reference-Manual/RM07/appendixB.html">Documentation</a>
      */
     public int getGlyphIndex(char character) {
-        return new CmapTable(getTableDataUnsafe("cmap")).getGlyphIndex(character);
+        return cmap.getGlyphIndex(character);
+    }
+
+    /**
+     * @return the glyph index of any unicode code point, 0 (.notdef) if the font does not contain it
+     */
+    public int getGlyphIndexByCodePoint(int codePoint) {
+        return cmap.getGlyphIndex(codePoint);
+    }
+
+    public CmapTable getCmapTable() {
+        return cmap;
     }
 
     @Override
     public List<FontGlyph> getGlyphs(String str) {
         List<FontGlyph> glyphs = new ArrayList<>(str.length());
-        for (int i = 0; i < str.length(); i++) {
-            char c = str.charAt(i);
-            glyphs.add(getGlyph(c));
-        }
+        str.codePoints().forEach(codePoint -> glyphs.add(getGlyphByCodePoint(codePoint)));
         return glyphs;
     }
 
@@ -129,68 +211,64 @@ public class FontReader implements KFont {
         return getTableValue(HeadTable.LOWEST_RECOMMENDED_PPEM);
     }
 
+    /**
+     * Glyphs are cached by their index, a glyph shared by several characters reports the character it was first decoded for.
+     */
+    @Override
     public FontGlyph getGlyph(char character) {
-        long start = System.currentTimeMillis();
-        CmapTable cmapTable = new CmapTable(getTableDataUnsafe("cmap"));
-        int glyphIndex = cmapTable.getGlyphIndex(character);
-        ByteBuffer glyf = getTableDataUnsafe("glyf");
-        ByteBuffer loca = getTableDataUnsafe("loca");
-
-        int indexToLocFormat = getTableValue(HeadTable.INDEX_TO_LOC_FORMAT);
-        int glyphOffset;
-        int nextGlyphOffset;
-
-        if (indexToLocFormat == 0) {
-            //The actual local offset divided by 2 is stored.
-            glyphOffset = loca.getShort(glyphIndex * Short.BYTES) * 2;
-            nextGlyphOffset = loca.getShort((glyphIndex + 1) * 2) * 2;
-        } else {
-            glyphOffset = loca.getInt(glyphIndex * Integer.BYTES);
-            nextGlyphOffset = loca.getInt((glyphIndex + 1) * 4);
-        }
+        return getGlyphByCodePoint(character);
+    }
 
-        glyf.position(glyphOffset);
-        return loadGlyph(glyphIndex, glyf, glyphOffset, nextGlyphOffset, character, start);
+    /**
+     * @see #getGlyph(char)
+     */
+    @Override
+    public FontGlyph getGlyphByCodePoint(int codePoint) {
+        int glyphIndex = getGlyphIndexByCodePoint(codePoint);
+        return glyphCache.get(glyphIndex, index -> loadGlyph(index, codePoint));
     }
 
     @Override
     public FontGlyph getGlyph(int glyphIndex) {
+        return glyphCache.get(glyphIndex, index -> loadGlyph(index, cmap.getCodePoint(index).orElse(' ')));
+    }
+
+    /**
+     * @return the cache holding all glyphs decoded so far, mostly interesting for its hit and miss counters.
+     */
+    public GlyphCache getGlyphCache() {
+        return glyphCache;
+    }
+
+    private FontGlyph loadGlyph(int glyphIndex, int codePoint) {
         long start = System.currentTimeMillis();
-        CmapTable cmap = new CmapTable(getTableDataUnsafe("cmap"));
-        ByteBuffer glyf = getTableDataUnsafe("glyf");
-        ByteBuffer loca = getTableDataUnsafe("loca");
-        char character = cmap.getCharacter(glyphIndex).orElse(' ');
-        int indexToLocFormat = getTableValue(HeadTable.INDEX_TO_LOC_FORMAT);
+        ByteBuffer loca = getTableView("loca");
         int glyphOffset;
         int nextGlyphOffset;
 
         if (indexToLocFormat == 0) {
-            glyphOffset = loca.getShort(glyphIndex * 2) * 2;
-            nextGlyphOffset = loca.getShort((glyphIndex + 1) * 2) * 2;
+            //The actual local offset divided by 2 is stored.
+            glyphOffset = (loca.getShort(glyphIndex * Short.BYTES) & 0xFFFF) * 2;
+            nextGlyphOffset = (loca.getShort((glyphIndex + 1) * Short.BYTES) & 0xFFFF) * 2;
         } else {
-            glyphOffset = loca.getInt(glyphIndex * 4);
-            nextGlyphOffset = loca.getInt((glyphIndex + 1) * 4);
+            glyphOffset = loca.getInt(glyphIndex * Integer.BYTES);
+            nextGlyphOffset = loca.getInt((glyphIndex + 1) * Integer.BYTES);
         }
-        return loadGlyph(glyphIndex, glyf, glyphOffset, nextGlyphOffset, character, start);
-    }
-
-    private FontGlyph loadGlyph(int glyphIndex, ByteBuffer glyf, int glyphOffset, int nextGlyphOffset, char character, long start) {
-        glyf.position(glyphOffset);
-        short numberOfContours = glyf.getShort();
+        ByteBuffer glyf = getTableView("glyf");
         FontGlyph out;
         String type; //just a marker for the log messages
         if (glyphOffset == nextGlyphOffset) {
-            out = GlyphFactory.createWhitespace(character, getAdvanceWidth(glyphIndex)); // This glyph has no outline data.
+            out = GlyphFactory.createWhitespace(codePoint, getAdvanceWidth(glyphIndex)); // This glyph has no outline data.
             type = "SimpleGlyph  ";
-        } else if (numberOfContours < 0) {
-            out = GlyphFactory.readCompoundGlyph(glyf, character, getAdvanceWidth(glyphIndex), this);
+        } else if (glyf.getShort(glyphOffset) < 0) { //negative numberOfContours
+            out = GlyphFactory.readCompoundGlyph(glyf, glyphOffset, codePoint, getAdvanceWidth(glyphIndex), this);
             type = "CompoundGlyph";
         } else {
-            out = GlyphFactory.readSimpleGlyph(glyf, numberOfContours, character, getAdvanceWidth(glyphIndex));
+            out = GlyphFactory.readSimpleGlyph(glyf, glyphOffset, codePoint, getAdvanceWidth(glyphIndex));
             type = "SimpleGlyph  ";
         }
         long end = System.currentTimeMillis();
-        logger.debug("Loading {} '{}' (index: {}) took {}ms", type, character, glyphIndex, end - start);
+        logger.debug("Loading {} '{}' (index: {}) took {}ms", type, Character.toString(codePoint), glyphIndex, end - start);
         return out;
     }
 
@@ -199,9 +277,7 @@ public class FontReader implements KFont {
      * @return The advanceWidth as an unsigned short value
      */
     public int getAdvanceWidth(int glyphIndex) {
-        ByteBuffer hmtx = getTableDataUnsafe("hmtx");
-        int numberOfHMetrics = getTableValue(HheaTable.NUM_OF_LONG_HOR_METRICS);
-
+        ByteBuffer hmtx = getTableView("hmtx");
         if (glyphIndex < numberOfHMetrics) {
             return hmtx.getShort(glyphIndex * 4) & 0xFFFF;
         } else {
@@ -218,27 +294,26 @@ public class FontReader implements KFont {
      * @see HheaTable
      * @see HeadTable
      * @see MaxpTable
-     * @see #getTableDataUnsafe(String)
      */
     public int getTableValue(FontTableEntry val) {
-        ByteBuffer table = getTableDataUnsafe(val.getTable());
-        table.position(val.getPosition());
+        ByteBuffer table = getTableView(val.getTable());
+        int position = val.getPosition();
         switch (val.getBytes()) {
             case 1 -> {
-                return table.get() & 0xFF;
+                return table.get(position) & 0xFF;
             }
             case 2 -> {
                 if (val.isSigned()) {
-                    return table.getShort();
+                    return table.getShort(position);
                 } else {
-                    return table.getShort() & 0xFFFF;
+                    return table.getShort(position) & 0xFFFF;
                 }
             }
             case 4 -> {
                 if (val.isSigned()) {
-                    return table.getInt();
+                    return table.getInt(position);
                 } else {
-                    return (int) (table.getInt() & 0xFFFFFFFFL);
+                    return (int) (table.getInt(position) & 0xFFFFFFFFL);
                 }
             }
             default -> throw new RuntimeException("unsupported length");
@@ -247,62 +322,142 @@ public class FontReader implements KFont {
 
     @Override
     public void drawString(Drawable drawable, int x, int y, int fontSize, Color color, String str, FontStyle... styles) {
-        int lowestPPEM = this.getLowestRecommendedPPEM();
-        if (fontSize < lowestPPEM) {
-            logger.debug("Provided fontSize {} pixels is less than the lowest recommended height {} pixels." +
-                    " This may result in poor rendering quality.", fontSize, lowestPPEM);
-        }
-        if (fontSize % lowestPPEM != 0) {
-            int lowerRecommendation = ((int) Math.floor(((double) fontSize / lowestPPEM)) * lowestPPEM);
-            int higherRecommendation = ((int) Math.ceil(((double) fontSize / lowestPPEM)) * lowestPPEM);
-            logger.debug("fontsize is not a multiple of the lowest PPEM, and might look wrong. " +
-                    "Recommended alternative sizes to {}: {} or {}", fontSize, lowerRecommendation, higherRecommendation);
-            logger.debug("Enforcing fontsize: {}px", lowerRecommendation);
-            fontSize = lowerRecommendation;
-        }
-        int maxHeight = this.getTableValue(HeadTable.Y_MAX) - this.getTableValue(HeadTable.Y_MIN);
-        if (maxHeight == 0) {
-            return;
-        }
-        // Calculate the scale factor based on the target height
-        double scale = (double) fontSize / maxHeight;
-        drawString(drawable, x, y, scale, color, str, styles);
+        layout(str, fontSize).draw(drawable, x, y, color, styles);
     }
 
     @Override
     public void drawString(Drawable drawable, int x, int y, double scale, Color color, String str, FontStyle... styles) {
+        layout(str, scale).draw(drawable, x, y, color, styles);
+    }
+
+    /**
+     * Any size can be used, outlines are fitted to the pixel grid when they are rasterized.
+     */
+    @Override
+    public GlyphRun layout(String str, int fontSize) {
         int maxHeight = this.getTableValue(HeadTable.Y_MAX) - this.getTableValue(HeadTable.Y_MIN);
+        // Calculate the scale factor based on the target height
+        double scale = maxHeight == 0 ? 0 : (double) fontSize / maxHeight;
+        return layout(str, scale);
+    }
+
+    @Override
+    public GlyphRun layout(String str, double scale) {
+        int yMax = this.getTableValue(HeadTable.Y_MAX);
+        int yMin = this.getTableValue(HeadTable.Y_MIN);
+        int maxHeight = yMax - yMin;
+        int lineHeight = (int) (maxHeight * scale);
+        int ascent = (int) Math.ceil(yMax * scale);
+        int descent = (int) Math.ceil(-yMin * scale);
         if (maxHeight == 0) {
-            return;
+            //nothing can be drawn with this font
+            str = "";
         }
-        int originalX = x;
+        int lines = 1;
         for (int i = 0; i < str.length(); i++) {
-            char character = str.charAt(i);
-
-            if (character == '\n') {
-                y += (int) (maxHeight * scale);
-                x = originalX;
+            if (str.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        int count = str.codePointCount(0, str.length()) - (lines - 1);
+        FontGlyph[] glyphs = new FontGlyph[count];
+        int[] glyphIndices = new int[count];
+        int[] xPositions = new int[count];
+        int[] yPositions = new int[count];
+        int[] lineStarts = new int[lines];
+        int glyph = 0;
+        int line = 0;
+        int x = 0;
+        int y = 0;
+        int width = 0;
+        for (int i = 0; i < str.length(); ) {
+            //surrogate pairs are combined into one code point, unpaired surrogates are looked up as they are
+            int codePoint = str.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint == '\n') {
+                width = Math.max(width, x);
+                y += lineHeight;
+                x = 0;
+                lineStarts[++line] = glyph;
                 continue;
             }
-            FontGlyph glyph = this.getGlyph(character);
-            drawGlyph(drawable, x, y, glyph, color, scale);
-            for (FontStyle style : styles) {
-                style.apply(x, y, scale, glyph, drawable, this, color);
+            int glyphIndex = getGlyphIndexByCodePoint(codePoint);
+            glyphIndices[glyph] = glyphIndex;
+            glyphs[glyph] = glyphCache.get(glyphIndex, index -> loadGlyph(index, codePoint));
+            xPositions[glyph] = x;
+            yPositions[glyph] = y;
+            x += (int) Math.ceil(glyphs[glyph].getAdvanceWidth() * scale);
+            glyph++;
+        }
+        width = Math.max(width, x);
+        return new GlyphRun(this, scale, glyphs, glyphIndices, xPositions, yPositions, lineStarts, width, ascent, descent, lineHeight);
+    }
+
+    void drawGlyph(Drawable drawable, int x, int y, FontGlyph glyph, int glyphIndex, Color color, double scale) {
+        boolean antiAliased = drawable.isAntiAliased();
+        GlyphBitmap bitmap = rasterCache.get(this, glyphIndex, scale, antiAliased, () -> rasterize(glyph, scale, antiAliased));
+        bitmap.draw(drawable, x, y, color);
+    }
+
+    /**
+     * Renders a glyph into a coverage mask positioned relative to the pen position.
+     */
+    private GlyphBitmap rasterize(FontGlyph glyph, double scale, boolean antiAliased) {
+        FlattenedOutline outline = gridFitter.fit(glyph.getFlattenedOutline(scale), scale);
+        if (outline.isEmpty()) {
+            return GlyphBitmap.EMPTY; //no outline, e.g. whitespace
+        }
+        int left = (int) Math.floor(outline.getMinX() * scale);
+        int top = (int) Math.floor(outline.getMinY() * scale);
+        int width = (int) Math.ceil(outline.getMaxX() * scale) - left;
+        int height = (int) Math.ceil(outline.getMaxY() * scale) - top;
+        byte[] mask = new byte[width * height];
+        if (antiAliased) {
+            //exact pixel coverage at full precision, in a single pass
+            CoverageRasterizer rasterizer = COVERAGE_RASTERIZER.get().reset(width, height);
+            for (int contour = 0; contour < outline.getContourCount(); contour++) {
+                int start = outline.getContourStart(contour);
+                rasterizer.moveTo((float) (outline.getX(start) * scale - left), (float) (outline.getY(start) * scale - top));
+                for (int i = start + 1; i < outline.getContourEnd(contour); i++) {
+                    rasterizer.lineTo((float) (outline.getX(i) * scale - left), (float) (outline.getY(i) * scale - top));
+                }
+            }
+            rasterizer.closePath();
+            rasterizer.accumulate(mask);
+        } else {
+            ScanlineRasterizer rasterizer = SCANLINE_RASTERIZER.get().reset();
+            for (int contour = 0; contour < outline.getContourCount(); contour++) {
+                int start = outline.getContourStart(contour);
+                rasterizer.moveTo((float) (outline.getX(start) * scale - left), (float) (outline.getY(start) * scale - top));
+                for (int i = start + 1; i < outline.getContourEnd(contour); i++) {
+                    rasterizer.lineTo((float) (outline.getX(i) * scale - left), (float) (outline.getY(i) * scale - top));
+                }
             }
-            int nextX = (int) Math.ceil(glyph.getAdvanceWidth() * scale);
-            x += nextX;
+            rasterizer.fill(ScanlineRasterizer.FillRule.NON_ZERO, (row, xStart, xEnd) -> {
+                if (row >= 0 && row < height) {
+                    Arrays.fill(mask, row * width + Math.max(0, xStart), row * width + Math.min(width, xEnd), (byte) 0xFF);
+                }
+            });
         }
+        return new GlyphBitmap(left, top, width, height, mask, antiAliased);
+    }
+
+    GridFitter getGridFitter() {
+        return gridFitter;
     }
 
-    private void drawGlyph(Drawable drawable, int x, int y, FontGlyph glyph, Color color, double scale) {
-        Coordinate[][] glyphCoords = glyph.getCoordinates();
-        Coordinate[][] scaledCoords = Arrays.stream(glyphCoords).map(
-                contour -> Arrays.stream(contour).map(
-                        coord -> Transformation.SCALE.transform(coord, scale, scale)
-                ).toArray(Coordinate[]::new)
-        ).toArray(Coordinate[][]::new);
-        var intersectionSegments = ContourHorizontalIntersects.makeFromContour(scaledCoords);
-        intersectionSegments.drawPixels(drawable, x, y, color);
+    /**
+     * @return the cache rasterized glyphs of this font are kept in, owned by this font unless it was given another one
+     */
+    public GlyphRasterCache getRasterCache() {
+        return rasterCache;
+    }
+
+    /**
+     * @return a font sharing all parsed data and decoded glyphs with this one, but keeping its bitmaps in {@code rasterCache}
+     */
+    public FontReader withRasterCache(GlyphRasterCache rasterCache) {
+        return new FontReader(this, Objects.requireNonNull(rasterCache));
     }
 
     public record TableEntry(String tag, int checkSum, int offset, int length) {
@@ -2,21 +2,30 @@ package org.kurodev.kimage.kimage.font;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 public class FontReaders {
-    private static KFont defaultFontReader;
+    /**
+     * Memory mappings of font files, shared by every font loaded from the same file.
+     * A mapping is released once no font uses it anymore.
+     */
+    private static final Map<MappingKey, WeakReference<ByteBuffer>> MAPPINGS = new HashMap<>();
 
+    /**
+     * The font used when none is given. Loaded on first use, the class initialization makes this thread safe.
+     */
     public static KFont getDefaultFontReader() {
-        if (defaultFontReader == null) {
-            try (InputStream in = FontReaders.class.getResourceAsStream("/kimage/Pixellettersfull.ttf")) {
-                defaultFontReader = loadFont(in);
-            } catch (IOException e) {
-                //should never happen
-                throw new RuntimeException(e);
-            }
-        }
-        return defaultFontReader;
+        return DefaultFontHolder.FONT;
     }
 
     /**
@@ -26,8 +35,55 @@ public class FontReaders {
      */
     public static KFont loadFont(InputStream in) throws IOException {
         Objects.requireNonNull(in);
-        FontReader reader = new FontReader();
-        reader.load(in);
-        return reader;
+        return FontReader.read(in);
+    }
+
+    /**
+     * Memory maps the font file instead of reading it onto the heap, all table reads go straight to the mapping.
+     * Fonts loaded from the same, unchanged file share one mapping.
+     *
+     * @param file non-null path of a .TTF file
+     * @throws IOException          when an I/O error occurs
+     * @throws NullPointerException if {@code file} is null
+     */
+    public static KFont loadFont(Path file) throws IOException {
+        Objects.requireNonNull(file);
+        return FontReader.read(map(file));
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        Path realPath = file.toRealPath();
+        MappingKey key = new MappingKey(realPath, Files.size(realPath), Files.getLastModifiedTime(realPath));
+        synchronized (MAPPINGS) {
+            WeakReference<ByteBuffer> reference = MAPPINGS.get(key);
+            ByteBuffer mapping = reference == null ? null : reference.get();
+            if (mapping == null) {
+                try (FileChannel channel = FileChannel.open(realPath, StandardOpenOption.READ)) {
+                    mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                MAPPINGS.values().removeIf(stale -> stale.get() == null);
+                MAPPINGS.put(key, new WeakReference<>(mapping));
+            }
+            return mapping;
+        }
+    }
+
+    private static class DefaultFontHolder {
+        private static final KFont FONT = loadDefaultFont();
+
+        private static KFont loadDefaultFont() {
+            try (InputStream in = FontReaders.class.getResourceAsStream("/kimage/Pixellettersfull.ttf")) {
+                return loadFont(in);
+            } catch (IOException e) {
+                //should never happen
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Size and modification time make sure a file that was replaced gets mapped anew.
+     */
+    private record MappingKey(Path file, long size, FileTime lastModified) {
     }
 }
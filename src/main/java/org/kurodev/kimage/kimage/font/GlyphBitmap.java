@@ -0,0 +1,145 @@
+package org.kurodev.kimage.kimage.font;
+
+import java.awt.*;
+
+/**
+ * A rasterized glyph: a coverage mask plus the offset of its top left corner relative to the pen position.
+ * <p>
+ * Masks of glyphs rendered without anti-aliasing only contain the values 0 and 255.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class GlyphBitmap {
+    public static final GlyphBitmap EMPTY = new GlyphBitmap(0, 0, 0, 0, new byte[0], false);
+    /**
+     * Rough per entry overhead of the object and its array header, used to weigh entries in {@link GlyphRasterCache}.
+     */
+    private static final int OVERHEAD_BYTES = 48;
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+    private final byte[] coverage;
+    private final boolean antiAliased;
+
+    /**
+     * @param left        horizontal offset of the mask relative to the pen position
+     * @param top         vertical offset of the mask relative to the pen position, usually negative
+     * @param coverage    {@code width * height} coverage values, row by row
+     * @param antiAliased whether the mask holds partial coverage that has to be blended
+     */
+    public GlyphBitmap(int left, int top, int width, int height, byte[] coverage, boolean antiAliased) {
+        if (coverage.length != width * height) {
+            throw new IllegalArgumentException("coverage mask does not match the bitmap size");
+        }
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        this.coverage = coverage;
+        this.antiAliased = antiAliased;
+    }
+
+    /**
+     * Blits the mask onto the target. Masks without anti-aliasing are filled as spans, anti-aliased masks are handed to
+     * the target a row at a time to be blended.
+     *
+     * @param x pen position
+     * @param y pen position (baseline)
+     */
+    public void draw(Drawable drawable, int x, int y, Color color) {
+        int originX = x + left;
+        int originY = y + top;
+        //only the part of the mask within the clip is visited
+        int firstRow = 0, lastRow = height;
+        int firstColumn = 0, lastColumn = width;
+        Rectangle clip = drawable.getClipBounds();
+        if (clip != null) {
+            firstRow = Math.max(0, clip.y - originY);
+            lastRow = Math.min(height, clip.y + clip.height - originY);
+            firstColumn = Math.max(0, clip.x - originX);
+            lastColumn = Math.min(width, clip.x + clip.width - originX);
+        }
+        for (int row = firstRow; row < lastRow; row++) {
+            int rowStart = row * width;
+            int targetY = originY + row;
+            if (antiAliased) {
+                int start = firstColumn, end = lastColumn;
+                while (start < end && coverage[rowStart + start] == 0) {
+                    start++;
+                }
+                while (end > start && coverage[rowStart + end - 1] == 0) {
+                    end--;
+                }
+                if (start < end) {
+                    drawable.fillMask(targetY, originX + start, coverage, rowStart + start, end - start, color);
+                }
+                continue;
+            }
+            int column = firstColumn;
+            while (column < lastColumn) {
+                int value = coverage[rowStart + column] & 0xFF;
+                if (value == 0) {
+                    column++;
+                } else if (value == 255) {
+                    int runStart = column;
+                    while (column < lastColumn && coverage[rowStart + column] != 0) {
+                        column++;
+                    }
+                    drawable.fillSpan(targetY, originX + runStart, originX + column, color);
+                } else {
+                    drawable.drawPixel(originX + column, targetY, color, value);
+                    column++;
+                }
+            }
+        }
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return coverage of a single pixel of the mask, 0 (empty) to 255 (fully covered)
+     */
+    public int getCoverage(int x, int y) {
+        return coverage[y * width + x] & 0xFF;
+    }
+
+    public boolean isAntiAliased() {
+        return antiAliased;
+    }
+
+    public boolean isEmpty() {
+        return coverage.length == 0;
+    }
+
+    /**
+     * @return approximate amount of heap memory this bitmap occupies
+     */
+    public int getByteSize() {
+        return coverage.length + OVERHEAD_BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "GlyphBitmap{" +
+                "left=" + left +
+                ", top=" + top +
+                ", width=" + width +
+                ", height=" + height +
+                ", antiAliased=" + antiAliased +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+package org.kurodev.kimage.kimage.font;
+
+import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded LRU cache of decoded glyphs, keyed by their glyph index.
+ * <p>
+ * Glyphs are immutable once decoded, so a cached instance can be handed out to any number of callers.
+ * Loading happens outside the lock, this is required because compound glyphs recursively request their components
+ * from the same cache while they are being decoded.
+ */
+public class GlyphCache {
+    public static final int DEFAULT_CAPACITY = 512;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final int capacity;
+    private final Map<Integer, FontGlyph> glyphs;
+
+    public GlyphCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.glyphs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FontGlyph> eldest) {
+                return size() > GlyphCache.this.capacity;
+            }
+        };
+    }
+
+    public GlyphCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the cached glyph, or loads and caches it if it is not present.
+     * If two threads load the same glyph concurrently the first one to finish wins and both receive the same instance.
+     */
+    public FontGlyph get(int glyphIndex, IntFunction<FontGlyph> loader) {
+        FontGlyph glyph;
+        synchronized (glyphs) {
+            glyph = glyphs.get(glyphIndex);
+        }
+        if (glyph != null) {
+            hits.increment();
+            return glyph;
+        }
+        misses.increment();
+        FontGlyph loaded = loader.apply(glyphIndex);
+        synchronized (glyphs) {
+            FontGlyph existing = glyphs.putIfAbsent(glyphIndex, loaded);
+            return existing == null ? loaded : existing;
+        }
+    }
+
+    public void clear() {
+        synchronized (glyphs) {
+            glyphs.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (glyphs) {
+            return glyphs.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the amount of lookups that could be served without decoding the glyph
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the amount of lookups that required the glyph to be decoded
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "GlyphCache{" +
+                "size=" + size() +
+                ", capacity=" + capacity +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                '}';
+    }
+}
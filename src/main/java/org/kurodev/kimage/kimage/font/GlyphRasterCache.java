@@ -0,0 +1,158 @@
+package org.kurodev.kimage.kimage.font;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of rasterized glyphs, keyed by font, glyph index, scale and whether the glyph was anti-aliased.
+ * <p>
+ * The cache is bounded by the memory its masks occupy rather than by the number of entries,
+ * the least recently drawn glyphs are evicted first.
+ * Every font owns its own cache by default, so dropping a font releases its bitmaps along with it. Fonts can share
+ * a cache on purpose, see {@link FontReader#withRasterCache(GlyphRasterCache)}. Entries then keep their font reachable
+ * until they are evicted or {@link #invalidate(Object)} is called.
+ */
+public class GlyphRasterCache {
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final long maxBytes;
+    private final Map<Key, GlyphBitmap> bitmaps = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    public GlyphRasterCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached bitmap, or rasterizes and caches it if it is not present.
+     * Rasterization happens outside the lock, if two threads rasterize the same glyph the first one to finish wins.
+     *
+     * @param font the font the glyph belongs to, compared by identity
+     */
+    public GlyphBitmap get(Object font, int glyphIndex, double scale, boolean antiAliased, Supplier<GlyphBitmap> rasterizer) {
+        Key key = new Key(font, glyphIndex, Double.doubleToLongBits(scale), antiAliased);
+        GlyphBitmap bitmap;
+        synchronized (bitmaps) {
+            bitmap = bitmaps.get(key);
+        }
+        if (bitmap != null) {
+            hits.increment();
+            return bitmap;
+        }
+        misses.increment();
+        GlyphBitmap rendered = rasterizer.get();
+        if (rendered.getByteSize() > maxBytes) {
+            return rendered; //would evict everything else and still not fit
+        }
+        synchronized (bitmaps) {
+            GlyphBitmap existing = bitmaps.putIfAbsent(key, rendered);
+            if (existing != null) {
+                return existing;
+            }
+            bytes += rendered.getByteSize();
+            evict();
+        }
+        return rendered;
+    }
+
+    private void evict() {
+        Iterator<GlyphBitmap> eldest = bitmaps.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getByteSize();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops every bitmap rendered from the given font.
+     */
+    public void invalidate(Object font) {
+        synchronized (bitmaps) {
+            Iterator<Map.Entry<Key, GlyphBitmap>> entries = bitmaps.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Key, GlyphBitmap> entry = entries.next();
+                if (entry.getKey().font == font) {
+                    bytes -= entry.getValue().getByteSize();
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (bitmaps) {
+            bitmaps.clear();
+            bytes = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (bitmaps) {
+            return bitmaps.size();
+        }
+    }
+
+    /**
+     * @return approximate amount of memory occupied by all cached bitmaps
+     */
+    public long getBytes() {
+        synchronized (bitmaps) {
+            return bytes;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the amount of lookups that could be served without rasterizing the glyph
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the amount of lookups that required the glyph to be rasterized
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "GlyphRasterCache{" +
+                "size=" + size() +
+                ", bytes=" + getBytes() +
+                ", maxBytes=" + maxBytes +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                '}';
+    }
+
+    private record Key(Object font, int glyphIndex, long scaleBits, boolean antiAliased) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other
+                    && font == other.font
+                    && glyphIndex == other.glyphIndex
+                    && scaleBits == other.scaleBits
+                    && antiAliased == other.antiAliased;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(font);
+            result = 31 * result + glyphIndex;
+            result = 31 * result + Long.hashCode(scaleBits);
+            return 31 * result + (antiAliased ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.kurodev.kimage.kimage.font;
+
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
+import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.FontStyle;
+
+import java.awt.*;
+
+/**
+ * A string laid out with one font at one size: which glyphs to draw and where, relative to the pen position of the
+ * first line. Created by {@link KFont#layout(String, double)}.
+ * <p>
+ * Laying out text looks up and decodes every glyph but rasterizes nothing, so a run can be measured for free and then
+ * drawn any number of times at any position. Runs are immutable and can be shared between threads.
+ */
+public final class GlyphRun {
+    private final FontReader font;
+    private final double scale;
+    private final FontGlyph[] glyphs;
+    private final int[] glyphIndices;
+    private final int[] xPositions;
+    private final int[] yPositions;
+    /**
+     * index of the first glyph of every line, a line can be empty
+     */
+    private final int[] lineStarts;
+    private final int width;
+    private final int ascent;
+    private final int descent;
+    private final int lineHeight;
+    private final int inkLeft;
+    private final int inkTop;
+    private final int inkRight;
+    private final int inkBottom;
+
+    GlyphRun(FontReader font, double scale, FontGlyph[] glyphs, int[] glyphIndices, int[] xPositions, int[] yPositions,
+             int[] lineStarts, int width, int ascent, int descent, int lineHeight) {
+        this.font = font;
+        this.scale = scale;
+        this.glyphs = glyphs;
+        this.glyphIndices = glyphIndices;
+        this.xPositions = xPositions;
+        this.yPositions = yPositions;
+        this.lineStarts = lineStarts;
+        this.width = width;
+        this.ascent = ascent;
+        this.descent = descent;
+        this.lineHeight = lineHeight;
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < glyphs.length; i++) {
+            //the outline is what gets rasterized, and unlike the glyph header its y-axis always points down
+            FlattenedOutline outline = glyphs[i].getFlattenedOutline(scale);
+            if (outline.isEmpty()) {
+                continue;
+            }
+            //grid fitting moves no point by more than a pixel when the glyph is rasterized, see GridFitter
+            left = Math.min(left, xPositions[i] + (int) Math.floor(outline.getMinX() * scale) - 1);
+            right = Math.max(right, xPositions[i] + (int) Math.ceil(outline.getMaxX() * scale) + 1);
+            top = Math.min(top, yPositions[i] + (int) Math.floor(outline.getMinY() * scale) - 1);
+            bottom = Math.max(bottom, yPositions[i] + (int) Math.ceil(outline.getMaxY() * scale) + 1);
+        }
+        if (left > right) {
+            left = top = right = bottom = 0;
+        }
+        this.inkLeft = left;
+        this.inkTop = top;
+        this.inkRight = right;
+        this.inkBottom = bottom;
+    }
+
+    /**
+     * Draws the run with the pen position of its first line at x, y.
+     */
+    public void draw(Drawable drawable, int x, int y, Color color, FontStyle... styles) {
+        for (int i = 0; i < glyphs.length; i++) {
+            int glyphX = x + xPositions[i];
+            int glyphY = y + yPositions[i];
+            font.drawGlyph(drawable, glyphX, glyphY, glyphs[i], glyphIndices[i], color, scale);
+            for (FontStyle style : styles) {
+                style.apply(glyphX, glyphY, scale, glyphs[i], drawable, font, color);
+            }
+        }
+    }
+
+    public KFont getFont() {
+        return font;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public int getGlyphCount() {
+        return glyphs.length;
+    }
+
+    public FontGlyph getGlyph(int i) {
+        return glyphs[i];
+    }
+
+    public int getGlyphIndex(int i) {
+        return glyphIndices[i];
+    }
+
+    /**
+     * @return the pen position of the i-th glyph, relative to the pen position of the first line
+     */
+    public int getX(int i) {
+        return xPositions[i];
+    }
+
+    /**
+     * @return the baseline of the i-th glyph, relative to the baseline of the first line
+     */
+    public int getY(int i) {
+        return yPositions[i];
+    }
+
+    public int getLineCount() {
+        return lineStarts.length;
+    }
+
+    /**
+     * @return the index of the first glyph of the line, an empty line starts where the next one does
+     */
+    public int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    /**
+     * @return the advance width of the longest line
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the distance from the top of the first line to the bottom of the last one
+     */
+    public int getHeight() {
+        return ascent + descent + (lineStarts.length - 1) * lineHeight;
+    }
+
+    /**
+     * @return how far the font reaches above the baseline
+     */
+    public int getAscent() {
+        return ascent;
+    }
+
+    /**
+     * @return how far the font reaches below the baseline
+     */
+    public int getDescent() {
+        return descent;
+    }
+
+    /**
+     * @return the distance between the baselines of two lines
+     */
+    public int getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * @return the box around all pixels the run can cover, relative to the pen position of the first line.
+     * Empty if the run has no visible glyphs.
+     */
+    public Rectangle getInkBounds() {
+        return new Rectangle(inkLeft, inkTop, inkRight - inkLeft, inkBottom - inkTop);
+    }
+}
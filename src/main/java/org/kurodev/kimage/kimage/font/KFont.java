@@ -10,6 +10,7 @@ import org.kurodev.kimage.kimage.font.glyph.FontStyle;
 import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface KFont {
@@ -23,10 +24,23 @@ public interface KFont {
         return FontReaders.loadFont(in);
     }
 
+    /**
+     * @see FontReaders#loadFont(Path)
+     */
+    static KFont getFont(Path file) throws IOException {
+        return FontReaders.loadFont(file);
+    }
+
     int getLowestRecommendedPPEM();
 
     FontGlyph getGlyph(char character);
 
+    /**
+     * Looks up the glyph of any unicode code point, including those outside the basic multilingual plane.
+     * Use {@link String#codePoints()} to iterate over the code points of a string.
+     */
+    FontGlyph getGlyphByCodePoint(int codePoint);
+
     FontGlyph getGlyph(int index);
 
     /**
@@ -78,4 +92,18 @@ public interface KFont {
     void drawString(Drawable drawable, int x, int y, int fontSizePx, Color color, String str, FontStyle... styles);
 
     void drawString(Drawable drawable, int x, int y, double scale, Color color, String str, FontStyle... styles);
+
+    /**
+     * Lays the string out for the given pixel height, without drawing anything.
+     *
+     * @see #drawString(Drawable, int, int, int, Color, String, FontStyle...)
+     */
+    GlyphRun layout(String str, int fontSizePx);
+
+    /**
+     * Lays the string out at the given scale, without drawing anything. Line breaks start a new line.
+     *
+     * @param scale pixels per font unit
+     */
+    GlyphRun layout(String str, double scale);
 }
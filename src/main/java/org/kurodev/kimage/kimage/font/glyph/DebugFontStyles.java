@@ -1,10 +1,6 @@
 package org.kurodev.kimage.kimage.font.glyph;
 
-import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
-import org.kurodev.kimage.kimage.util.Util;
-
 import java.awt.*;
-import java.util.List;
 
 public class DebugFontStyles {
     /**
@@ -14,11 +10,9 @@ public class DebugFontStyles {
      */
     public static FontStyle debugDrawEdges(Color color) {
         return (x, y, scale, glyph, img, font, _ignored) -> {
-            Coordinate[][] outline = glyph.getCoordinates();
-            for (Coordinate[] contour : outline) {
-                for (Coordinate p : contour) {
-                    img.drawPixel((int) (Math.floor(x + p.x() * scale)), (int) (Math.round(y + p.y() * scale)), color);
-                }
+            GlyphOutline outline = glyph.getOutline();
+            for (int i = 0; i < outline.getPointCount(); i++) {
+                img.drawPixel((int) (Math.floor(x + outline.getX(i) * scale)), (int) (Math.round(y + outline.getY(i) * scale)), color);
             }
         };
     }
@@ -33,21 +27,19 @@ public class DebugFontStyles {
 
     public static FontStyle debugDrawBoundingBox(Color color) {
         return (x, y, scale, glyph, img, font, fallBack) -> {
-            Coordinate[][] coordinates = glyph.getCoordinates();
+            GlyphOutline outline = glyph.getOutline();
             double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
-            double maxX = Double.MIN_VALUE, maxY = Double.MIN_VALUE;
-            if (coordinates.length == 0) {
+            double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            if (outline.isEmpty()) {
                 return;
             }
-            for (Coordinate[] contour : coordinates) {
-                for (Coordinate point : contour) {
-                    double px = point.x() * scale;
-                    double py = point.y() * scale;
-                    if (px < minX) minX = px;
-                    if (px > maxX) maxX = px;
-                    if (py < minY) minY = py;
-                    if (py > maxY) maxY = py;
-                }
+            for (int i = 0; i < outline.getPointCount(); i++) {
+                double px = outline.getX(i) * scale;
+                double py = outline.getY(i) * scale;
+                if (px < minX) minX = px;
+                if (px > maxX) maxX = px;
+                if (py < minY) minY = py;
+                if (py > maxY) maxY = py;
             }
 
             int rectX = (int) Math.floor(x + minX);
@@ -55,8 +47,14 @@ public class DebugFontStyles {
             int rectWidth = (int) Math.ceil(maxX - minX);
             int rectHeight = (int) Math.ceil(maxY - minY);
             Color drawColor = color == null ? fallBack : color;
-            Util.calculateRectanglePoints(rectX - 1, rectY - 1, rectWidth + 2, rectHeight + 2)
-                    .forEach(c -> img.drawPixel(c, drawColor));
+            int left = rectX - 1, top = rectY - 1;
+            int right = rectX + rectWidth + 1, bottom = rectY + rectHeight + 1;
+            img.fillSpan(top, left, right + 1, drawColor);
+            img.fillSpan(bottom, left, right + 1, drawColor);
+            for (int py = top + 1; py < bottom; py++) {
+                img.drawPixel(left, py, drawColor);
+                img.drawPixel(right, py, drawColor);
+            }
         };
     }
 }
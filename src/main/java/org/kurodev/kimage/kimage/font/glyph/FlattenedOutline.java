@@ -0,0 +1,142 @@
+package org.kurodev.kimage.kimage.font.glyph;
+
+import java.util.List;
+
+/**
+ * A glyph outline where all curves have been replaced by straight lines.
+ * Points are stored in font units with the y-axis pointing down, each contour is implicitly closed.
+ * <p>
+ * Instances are immutable.
+ */
+public final class FlattenedOutline {
+    public static final FlattenedOutline EMPTY = new FlattenedOutline(new float[0], new float[0], new int[0]);
+    private final float[] xs;
+    private final float[] ys;
+    /**
+     * exclusive end index of every contour
+     */
+    private final int[] contourEnds;
+
+    public FlattenedOutline(float[] xs, float[] ys, int[] contourEnds) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("x and y coordinates differ in length");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.contourEnds = contourEnds;
+    }
+
+    /**
+     * Joins several outlines into one, keeping their contours separate.
+     */
+    public static FlattenedOutline concat(List<FlattenedOutline> outlines) {
+        int points = 0;
+        int contours = 0;
+        for (FlattenedOutline outline : outlines) {
+            points += outline.getPointCount();
+            contours += outline.getContourCount();
+        }
+        float[] xs = new float[points];
+        float[] ys = new float[points];
+        int[] contourEnds = new int[contours];
+        int pointOffset = 0;
+        int contourOffset = 0;
+        for (FlattenedOutline outline : outlines) {
+            System.arraycopy(outline.xs, 0, xs, pointOffset, outline.xs.length);
+            System.arraycopy(outline.ys, 0, ys, pointOffset, outline.ys.length);
+            for (int end : outline.contourEnds) {
+                contourEnds[contourOffset++] = end + pointOffset;
+            }
+            pointOffset += outline.xs.length;
+        }
+        return new FlattenedOutline(xs, ys, contourEnds);
+    }
+
+    /**
+     * @return a copy of this outline with every point mapped through the affine transformation
+     * {@code x' = a * x + b * y + dx, y' = c * x + d * y + dy}
+     */
+    public FlattenedOutline transform(double a, double b, double c, double d, double dx, double dy) {
+        float[] newXs = new float[xs.length];
+        float[] newYs = new float[ys.length];
+        for (int i = 0; i < xs.length; i++) {
+            newXs[i] = (float) (a * xs[i] + b * ys[i] + dx);
+            newYs[i] = (float) (c * xs[i] + d * ys[i] + dy);
+        }
+        return new FlattenedOutline(newXs, newYs, contourEnds);
+    }
+
+    public int getPointCount() {
+        return xs.length;
+    }
+
+    public int getContourCount() {
+        return contourEnds.length;
+    }
+
+    /**
+     * @return index of the first point of the contour
+     */
+    public int getContourStart(int contour) {
+        return contour == 0 ? 0 : contourEnds[contour - 1];
+    }
+
+    /**
+     * @return index after the last point of the contour
+     */
+    public int getContourEnd(int contour) {
+        return contourEnds[contour];
+    }
+
+    public float getX(int point) {
+        return xs[point];
+    }
+
+    public float getY(int point) {
+        return ys[point];
+    }
+
+    public boolean isEmpty() {
+        return xs.length == 0;
+    }
+
+    public float getMinX() {
+        float min = Float.MAX_VALUE;
+        for (float x : xs) {
+            min = Math.min(min, x);
+        }
+        return min;
+    }
+
+    public float getMaxX() {
+        float max = -Float.MAX_VALUE;
+        for (float x : xs) {
+            max = Math.max(max, x);
+        }
+        return max;
+    }
+
+    public float getMinY() {
+        float min = Float.MAX_VALUE;
+        for (float y : ys) {
+            min = Math.min(min, y);
+        }
+        return min;
+    }
+
+    public float getMaxY() {
+        float max = -Float.MAX_VALUE;
+        for (float y : ys) {
+            max = Math.max(max, y);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "FlattenedOutline{" +
+                "points=" + xs.length +
+                ", contours=" + contourEnds.length +
+                '}';
+    }
+}
@@ -4,12 +4,51 @@ import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
 
 public interface FontGlyph {
 
-    char getCharacter();
+    /**
+     * @return the code point this glyph was looked up for
+     */
+    int getCodePoint();
+
+    /**
+     * @return the code point as a char, only meaningful for the basic multilingual plane
+     * @see #getCodePoint()
+     */
+    default char getCharacter() {
+        return (char) getCodePoint();
+    }
+
+    /**
+     * @return the outline in font units with the y-axis pointing down. Read-only, {@link GlyphOutline#copy()} it to
+     * transform it.
+     */
+    GlyphOutline getOutline();
 
     /**
      * @return a 2D array representing the contours and the different (absolute) points in them
+     * @deprecated allocates an object per point, use {@link #getOutline()}
+     */
+    @Deprecated
+    default Coordinate[][] getCoordinates() {
+        GlyphOutline outline = getOutline();
+        Coordinate[][] coordinates = new Coordinate[outline.getContourCount()][];
+        for (int contour = 0; contour < coordinates.length; contour++) {
+            int start = outline.getContourStart(contour);
+            coordinates[contour] = new Coordinate[outline.getContourEnd(contour) - start];
+            for (int i = 0; i < coordinates[contour].length; i++) {
+                coordinates[contour][i] = new Coordinate(Math.round(outline.getX(start + i)), Math.round(outline.getY(start + i)));
+            }
+        }
+        return coordinates;
+    }
+
+    /**
+     * The outline with all curves turned into straight lines.
+     * The result is cached per size bucket, see {@link OutlineFlattener#sizeBucket(double)}.
+     *
+     * @param scale the scale the glyph is going to be drawn at, decides how finely curves are subdivided.
+     * @return the outline in font units with the y-axis pointing down, just like {@link #getOutline()}
      */
-    Coordinate[][] getCoordinates();
+    FlattenedOutline getFlattenedOutline(double scale);
 
     int getXMin();
     int getXMax();
@@ -12,29 +12,40 @@ import java.util.List;
 public class GlyphFactory {
 
 
-    public static SimpleFontGlyph readSimpleGlyph(ByteBuffer glyph, short numberOfContours, char character, int advanceWidth) {
-        short xMin = glyph.getShort();
-        short yMin = glyph.getShort();
-        short xMax = glyph.getShort();
-        short yMax = glyph.getShort();
+    /**
+     * Reads a glyph with absolute reads only, the position of {@code glyf} is never touched.
+     *
+     * @param glyf   the "glyf" table
+     * @param offset start of the glyph within the table
+     */
+    public static SimpleFontGlyph readSimpleGlyph(ByteBuffer glyf, int offset, int codePoint, int advanceWidth) {
+        short numberOfContours = glyf.getShort(offset);
+        short xMin = glyf.getShort(offset + 2);
+        short yMin = glyf.getShort(offset + 4);
+        short xMax = glyf.getShort(offset + 6);
+        short yMax = glyf.getShort(offset + 8);
+        int position = offset + 10;
 
         int[] endPtsOfContours = new int[numberOfContours];
         for (int i = 0; i < numberOfContours; i++) {
-            endPtsOfContours[i] = glyph.getShort() & 0xFFFF;
+            endPtsOfContours[i] = glyf.getShort(position) & 0xFFFF;
+            position += 2;
         }
 
-        int instructionLength = glyph.getShort() & 0xFFFF;
+        int instructionLength = glyf.getShort(position) & 0xFFFF;
+        position += 2;
         byte[] instructions = new byte[instructionLength];
-        glyph.get(instructions);
+        glyf.get(position, instructions);
+        position += instructionLength;
 
         int numPoints = (numberOfContours == 0) ? 0 : (endPtsOfContours[numberOfContours - 1] + 1);
         byte[] flags = new byte[numPoints];
         int flagCount = 0;
         while (flagCount < numPoints) {
-            byte flag = glyph.get();
+            byte flag = glyf.get(position++);
             flags[flagCount++] = flag;
             if ((flag & 8) != 0) {
-                int repeatCount = glyph.get() & 0xFF;
+                int repeatCount = glyf.get(position++) & 0xFF;
                 for (int i = 0; i < repeatCount; i++) {
                     flags[flagCount++] = flag;
                 }
@@ -44,20 +55,22 @@ public class GlyphFactory {
         int[] xCoordinates = new int[numPoints];
         for (int i = 0; i < numPoints; i++) {
             if ((flags[i] & 2) != 0) {
-                int value = glyph.get() & 0xFF;
+                int value = glyf.get(position++) & 0xFF;
                 xCoordinates[i] = (flags[i] & 16) != 0 ? value : -value;
             } else if ((flags[i] & 16) == 0) {
-                xCoordinates[i] = glyph.getShort();
+                xCoordinates[i] = glyf.getShort(position);
+                position += 2;
             }
         }
 
         int[] yCoordinates = new int[numPoints];
         for (int i = 0; i < numPoints; i++) {
             if ((flags[i] & 4) != 0) {
-                int value = glyph.get() & 0xFF;
+                int value = glyf.get(position++) & 0xFF;
                 yCoordinates[i] = (flags[i] & 32) != 0 ? value : -value;
             } else if ((flags[i] & 32) == 0) {
-                yCoordinates[i] = glyph.getShort();
+                yCoordinates[i] = glyf.getShort(position);
+                position += 2;
             }
         }
 
@@ -72,60 +85,83 @@ public class GlyphFactory {
                 .setyCoordinates(yCoordinates)
                 .setFlags(flags)
                 .setInstructions(yCoordinates)
-                .setCharacter(character)
+                .setCodePoint(codePoint)
                 .setAdvanceWidth(advanceWidth)
                 .createSimpleFontGlyph();
     }
 
-    public static CompoundGlyph readCompoundGlyph(ByteBuffer glyph, char character, int advanceWidth, KFont font) {
-        int xMin = glyph.getShort();
-        int yMin = glyph.getShort();
-        int xMax = glyph.getShort();
-        int yMax = glyph.getShort();
+    /**
+     * Reads a compound glyph with absolute reads only, the position of {@code glyf} is never touched.
+     *
+     * @param glyf   the "glyf" table
+     * @param offset start of the glyph within the table
+     */
+    public static CompoundGlyph readCompoundGlyph(ByteBuffer glyf, int offset, int codePoint, int advanceWidth, KFont font) {
+        int xMin = glyf.getShort(offset + 2);
+        int yMin = glyf.getShort(offset + 4);
+        int xMax = glyf.getShort(offset + 6);
+        int yMax = glyf.getShort(offset + 8);
         List<GlyphWithFlags> glyphs = new ArrayList<>();
+        int position = offset + 10;
         do {
-            glyphs.add(readCompoundSimpleGlyph(glyph, font));
+            position = readCompoundSimpleGlyph(glyf, position, font, glyphs);
         } while (glyphs.getLast().contains(CompoundGlyphFlag.MORE_COMPONENTS));
-        return new CompoundGlyph(character, advanceWidth, xMin, yMin, xMax, yMax, glyphs);
+        return new CompoundGlyph(codePoint, advanceWidth, xMin, yMin, xMax, yMax, glyphs);
     }
 
-    public static FontGlyph createWhitespace(char character, int advanceWidth) {
+    public static FontGlyph createWhitespace(int codePoint, int advanceWidth) {
         return new SimpleFontGlyphBuilder()
                 .setNumberOfContours(0)
                 .setxMin(0)
                 .setyMin(0)
                 .setxMax(0)
                 .setyMax(0)
-                .setCharacter(character)
+                .setCodePoint(codePoint)
                 .setAdvanceWidth(advanceWidth)
                 .createSimpleFontGlyph();
     }
 
-    private static GlyphWithFlags readCompoundSimpleGlyph(ByteBuffer glyphBuffer, KFont font) {
-        int bitmapFlags = glyphBuffer.getShort() & 0xFFFF;
-        int glyphIndex = glyphBuffer.getShort() & 0xFFFF;
+    /**
+     * Reads one component and adds it to {@code components}.
+     * The component is looked up through the font, so it comes out of the font's glyph cache and may be a compound itself.
+     *
+     * @return the offset of the data following the component
+     */
+    private static int readCompoundSimpleGlyph(ByteBuffer glyf, int position, KFont font, List<GlyphWithFlags> components) {
+        int bitmapFlags = glyf.getShort(position) & 0xFFFF;
+        int glyphIndex = glyf.getShort(position + 2) & 0xFFFF;
+        position += 4;
         List<CompoundGlyphFlag> flags = CompoundGlyphFlag.identify(bitmapFlags);
-        SimpleFontGlyph glyph = (SimpleFontGlyph) font.getGlyph(glyphIndex);
+        FontGlyph glyph = font.getGlyph(glyphIndex);
 //        assert !flags.contains(CompoundGlyphFlag.OBSOLETE) : "obsolete flag should never be set";
-        GlyphWithFlagsBuilder builder = new GlyphWithFlagsBuilder();
-        int arg1, arg2;
+        boolean signed = flags.contains(CompoundGlyphFlag.ARGS_ARE_XY_VALUES);
+        int scales = 0;
+        if (flags.contains(CompoundGlyphFlag.WE_HAVE_A_SCALE)) {
+            scales = 1;
+        } else if (flags.contains(CompoundGlyphFlag.WE_HAVE_AN_X_AND_Y_SCALE)) {
+            scales = 2;
+        } else if (flags.contains(CompoundGlyphFlag.WE_HAVE_A_TWO_BY_TWO)) {
+            scales = 4;
+        }
+        int[] params = new int[2 + scales];
         if (flags.contains(CompoundGlyphFlag.ARG_1_AND_2_ARE_WORDS)) {
-            arg1 = glyphBuffer.getShort() & 0xFFFF;
-            arg2 = glyphBuffer.getShort() & 0xFFFF;
+            params[0] = signed ? glyf.getShort(position) : glyf.getShort(position) & 0xFFFF;
+            params[1] = signed ? glyf.getShort(position + 2) : glyf.getShort(position + 2) & 0xFFFF;
+            position += 4;
         } else {
-            arg1 = glyphBuffer.get() & 0xFF;
-            arg2 = glyphBuffer.get() & 0xFF;
+            params[0] = signed ? glyf.get(position) : glyf.get(position) & 0xFF;
+            params[1] = signed ? glyf.get(position + 1) : glyf.get(position + 1) & 0xFF;
+            position += 2;
         }
-        if (flags.contains(CompoundGlyphFlag.ARGS_ARE_XY_VALUES)) {
-            //arg 1 and 2 are direct coordinates
-            builder.setFlags(new FlagsWithParams(flags, arg1, arg2));
-        } else {
-            //arg1 and arg2 are indizes
-            int x = glyph.getxCoordinates()[arg1];
-            int y = glyph.getyCoordinates()[arg2];
-            builder.setFlags(new FlagsWithParams(flags, x, y));
+        //either offsets or point indices, CompoundGlyph resolves the latter once all components are known
+        for (int i = 0; i < scales; i++) {
+            params[2 + i] = glyf.getShort(position); //2.14 fixed point
+            position += 2;
         }
-        builder.setGlyph(glyph);
-        return builder.createGlyphWithFlags();
+        components.add(new GlyphWithFlagsBuilder()
+                .setGlyph(glyph)
+                .setFlags(new FlagsWithParams(flags, params))
+                .createGlyphWithFlags());
+        return position;
     }
 }
@@ -0,0 +1,159 @@
+package org.kurodev.kimage.kimage.font.glyph;
+
+import java.util.List;
+
+/**
+ * The outline of a glyph as it is stored in the font: on-curve points and quadratic off-curve control points.
+ * Points are stored in font units with the y-axis pointing down, each contour is implicitly closed.
+ * <p>
+ * All points live in packed arrays, reading an outline allocates nothing.
+ * Outlines can be transformed in place, except for read-only ones such as those handed out by
+ * {@link FontGlyph#getOutline()}, which have to be {@link #copy() copied} first.
+ *
+ * @see FlattenedOutline for the same outline with all curves turned into lines
+ */
+public final class GlyphOutline {
+    private final float[] xs;
+    private final float[] ys;
+    private final boolean[] onCurve;
+    /**
+     * exclusive end index of every contour
+     */
+    private final int[] contourEnds;
+    private final boolean readOnly;
+
+    public GlyphOutline(float[] xs, float[] ys, boolean[] onCurve, int[] contourEnds) {
+        this(xs, ys, onCurve, contourEnds, false);
+    }
+
+    private GlyphOutline(float[] xs, float[] ys, boolean[] onCurve, int[] contourEnds, boolean readOnly) {
+        if (xs.length != ys.length || xs.length != onCurve.length) {
+            throw new IllegalArgumentException("points and flags differ in length");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.onCurve = onCurve;
+        this.contourEnds = contourEnds;
+        this.readOnly = readOnly;
+    }
+
+    public static GlyphOutline empty() {
+        return new GlyphOutline(new float[0], new float[0], new boolean[0], new int[0]);
+    }
+
+    /**
+     * Joins several outlines into one, keeping their contours separate.
+     */
+    public static GlyphOutline concat(List<GlyphOutline> outlines) {
+        int points = 0;
+        int contours = 0;
+        for (GlyphOutline outline : outlines) {
+            points += outline.getPointCount();
+            contours += outline.getContourCount();
+        }
+        float[] xs = new float[points];
+        float[] ys = new float[points];
+        boolean[] onCurve = new boolean[points];
+        int[] contourEnds = new int[contours];
+        int pointOffset = 0;
+        int contourOffset = 0;
+        for (GlyphOutline outline : outlines) {
+            System.arraycopy(outline.xs, 0, xs, pointOffset, outline.xs.length);
+            System.arraycopy(outline.ys, 0, ys, pointOffset, outline.ys.length);
+            System.arraycopy(outline.onCurve, 0, onCurve, pointOffset, outline.onCurve.length);
+            for (int end : outline.contourEnds) {
+                contourEnds[contourOffset++] = end + pointOffset;
+            }
+            pointOffset += outline.xs.length;
+        }
+        return new GlyphOutline(xs, ys, onCurve, contourEnds);
+    }
+
+    /**
+     * Maps every point through the affine transformation {@code x' = a * x + b * y + dx, y' = c * x + d * y + dy}.
+     *
+     * @return this outline
+     */
+    public GlyphOutline transform(double a, double b, double c, double d, double dx, double dy) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("the outline is read-only, transform a copy() of it");
+        }
+        for (int i = 0; i < xs.length; i++) {
+            float x = xs[i];
+            float y = ys[i];
+            xs[i] = (float) (a * x + b * y + dx);
+            ys[i] = (float) (c * x + d * y + dy);
+        }
+        return this;
+    }
+
+    /**
+     * @return this outline
+     */
+    public GlyphOutline translate(double dx, double dy) {
+        return transform(1, 0, 0, 1, dx, dy);
+    }
+
+    /**
+     * @return an outline with its own points that can be transformed, even if this one is read-only
+     */
+    public GlyphOutline copy() {
+        return new GlyphOutline(xs.clone(), ys.clone(), onCurve.clone(), contourEnds);
+    }
+
+    /**
+     * @return a view onto the same points that cannot be transformed, this outline if it is read-only already
+     */
+    public GlyphOutline asReadOnly() {
+        return readOnly ? this : new GlyphOutline(xs, ys, onCurve, contourEnds, true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @param scale the scale the outline is going to be drawn at, decides how finely curves are subdivided.
+     */
+    public FlattenedOutline flatten(double scale) {
+        return OutlineFlattener.flatten(this, scale);
+    }
+
+    public int getPointCount() {
+        return xs.length;
+    }
+
+    public int getContourCount() {
+        return contourEnds.length;
+    }
+
+    /**
+     * @return index of the first point of the contour
+     */
+    public int getContourStart(int contour) {
+        return contour == 0 ? 0 : contourEnds[contour - 1];
+    }
+
+    /**
+     * @return index after the last point of the contour
+     */
+    public int getContourEnd(int contour) {
+        return contourEnds[contour];
+    }
+
+    public float getX(int point) {
+        return xs[point];
+    }
+
+    public float getY(int point) {
+        return ys[point];
+    }
+
+    public boolean isOnCurve(int point) {
+        return onCurve[point];
+    }
+
+    public boolean isEmpty() {
+        return xs.length == 0;
+    }
+}
@@ -0,0 +1,279 @@
+package org.kurodev.kimage.kimage.font.glyph;
+
+import java.util.Arrays;
+
+/**
+ * Aligns flattened outlines to the pixel grid before rasterization, without interpreting any TrueType instructions.
+ * <p>
+ * Straight horizontal and vertical segments of the outline are edges, such as the sides of stems or the top of an "x".
+ * Every edge is moved to the nearest pixel border, with edges on the font's blue zones (baseline, x-height, cap height
+ * and descender) snapped to the rounded zone, so small overshoots of round letters vanish. The two sides of a stem
+ * that would end up on the same pixel border are pushed one pixel apart, so thin stems never disappear. No edge
+ * moves by more than a pixel, and edges that would end up out of order with the zones and stems around them are
+ * not fitted at all. The remaining points are interpolated between the edges around them, so the outline keeps its
+ * shape and never folds over itself.
+ * <p>
+ * Instances are immutable.
+ */
+public final class GridFitter {
+    /**
+     * a segment counts as horizontal or vertical if it deviates by less than this fraction of its length
+     */
+    private static final float EDGE_SLOPE = 0.05f;
+    /**
+     * minimum length of an edge in pixels
+     */
+    private static final double MIN_EDGE_LENGTH = 0.5;
+    /**
+     * the sides of a stem at least this many pixels apart never end up on the same pixel border
+     */
+    private static final double MIN_STEM_DISTANCE = 0.1;
+    /**
+     * how far an edge may be moved from its original position, in pixels
+     */
+    private static final double MAX_MOVEMENT = 1;
+    private final float[] blueZones;
+    private final float zoneTolerance;
+
+    /**
+     * @param blueZones     heights in font units with the y-axis pointing down, like the outlines
+     * @param zoneTolerance how far from a zone an edge may be to be snapped onto it, in font units
+     */
+    public GridFitter(float[] blueZones, float zoneTolerance) {
+        this.blueZones = blueZones.clone();
+        this.zoneTolerance = zoneTolerance;
+    }
+
+    /**
+     * @param scale pixels per font unit the outline is going to be rasterized at
+     * @return the fitted outline, still in font units
+     */
+    public FlattenedOutline fit(FlattenedOutline outline, double scale) {
+        if (outline.isEmpty()) {
+            return outline;
+        }
+        int points = outline.getPointCount();
+        float[] xs = new float[points];
+        float[] ys = new float[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = outline.getX(i);
+            ys[i] = outline.getY(i);
+        }
+        float[] fittedXs = fitAxis(outline, xs, ys, scale, false);
+        float[] fittedYs = fitAxis(outline, ys, xs, scale, true);
+        int[] contourEnds = new int[outline.getContourCount()];
+        for (int contour = 0; contour < contourEnds.length; contour++) {
+            contourEnds[contour] = outline.getContourEnd(contour);
+        }
+        return new FlattenedOutline(fittedXs, fittedYs, contourEnds);
+    }
+
+    /**
+     * @param along  the coordinates to fit
+     * @param across the other coordinates, an edge runs along them
+     */
+    private float[] fitAxis(FlattenedOutline outline, float[] along, float[] across, double scale, boolean vertical) {
+        //every point adds at most one anchor
+        double[] originals = new double[outline.getPointCount()];
+        double[] targets = new double[originals.length];
+        boolean[] zoned = new boolean[originals.length];
+        int[] inkSides = new int[originals.length];
+        int anchors = 0;
+        double minLength = MIN_EDGE_LENGTH / scale;
+        for (int contour = 0; contour < outline.getContourCount(); contour++) {
+            int start = outline.getContourStart(contour);
+            int end = outline.getContourEnd(contour);
+            for (int i = start; i < end; i++) {
+                int next = i + 1 == end ? start : i + 1;
+                int previous = i == start ? end - 1 : i - 1;
+                if (vertical && isExtremum(along[previous], along[i], along[next]) && isNearZone(along[i])) {
+                    //the top or bottom of a curve, usually too short to be an edge
+                    originals[anchors] = along[i] * scale;
+                    zoned[anchors] = findZone(along[i], scale) >= 0;
+                    targets[anchors] = Math.round(snapToZone(along[i], scale));
+                    anchors++;
+                    continue;
+                }
+                float length = Math.abs(across[next] - across[i]);
+                float deviation = Math.abs(along[next] - along[i]);
+                if (length < minLength || deviation > length * EDGE_SLOPE) {
+                    continue;
+                }
+                double position = (along[i] + along[next]) / 2.0;
+                originals[anchors] = position * scale;
+                zoned[anchors] = vertical && findZone(position, scale) >= 0;
+                targets[anchors] = Math.round(vertical ? snapToZone(position, scale) : position * scale);
+                //outer contours run clockwise with the y-axis pointing up, so ink lies to the right of the direction
+                int direction = (int) Math.signum(across[next] - across[i]);
+                inkSides[anchors] = vertical ? direction : -direction;
+                anchors++;
+            }
+        }
+        if (anchors == 0) {
+            return along;
+        }
+        anchors = sortAndSeparate(originals, targets, zoned, inkSides, anchors);
+        float[] out = new float[along.length];
+        for (int i = 0; i < along.length; i++) {
+            out[i] = (float) (interpolate(along[i] * scale, originals, targets, anchors) / scale);
+        }
+        return out;
+    }
+
+    private static boolean isExtremum(float previous, float current, float next) {
+        return (current <= previous && current <= next) || (current >= previous && current >= next);
+    }
+
+    private boolean isNearZone(double position) {
+        for (float zone : blueZones) {
+            if (Math.abs(position - zone) <= zoneTolerance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the position in pixels, moved onto a blue zone if it lies within one and the overshoot is below half a pixel
+     */
+    private double snapToZone(double position, double scale) {
+        int zone = findZone(position, scale);
+        return zone < 0 ? position * scale : blueZones[zone] * scale;
+    }
+
+    /**
+     * @return the index of the zone the position lies within, if the overshoot is below half a pixel. Otherwise -1.
+     */
+    private int findZone(double position, double scale) {
+        for (int i = 0; i < blueZones.length; i++) {
+            double overshoot = Math.abs(position - blueZones[i]);
+            if (overshoot <= zoneTolerance && overshoot * scale < 0.5) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sorts the anchors by their original position and drops duplicates, pushes apart the sides of stems that would
+     * otherwise collapse onto the same pixel border and finally drops every anchor whose target is out of order,
+     * so positions are mapped monotonically.
+     *
+     * @param inkSides 1 if the ink lies after the edge, -1 if it lies before it, 0 if unknown
+     * @return the remaining amount of anchors
+     */
+    private static int sortAndSeparate(double[] originals, double[] targets, boolean[] zoned, int[] inkSides, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(originals[a], originals[b]));
+        double[] sortedOriginals = new double[count];
+        double[] sortedTargets = new double[count];
+        boolean[] strong = new boolean[count];
+        int[] sortedInkSides = new int[count];
+        int kept = 0;
+        for (int index : order) {
+            if (kept > 0 && originals[index] - sortedOriginals[kept - 1] < 1e-3) {
+                //the same edge twice, a zone wins over plain rounding
+                if (zoned[index] && !strong[kept - 1]) {
+                    sortedTargets[kept - 1] = targets[index];
+                    strong[kept - 1] = true;
+                }
+                if (inkSides[index] != sortedInkSides[kept - 1]) {
+                    sortedInkSides[kept - 1] = 0;
+                }
+                continue;
+            }
+            sortedOriginals[kept] = originals[index];
+            sortedTargets[kept] = targets[index];
+            //zones stay where they are, the baseline must not move
+            strong[kept] = zoned[index];
+            sortedInkSides[kept] = inkSides[index];
+            kept++;
+        }
+        separateStems(sortedOriginals, sortedTargets, strong, sortedInkSides, kept);
+        //strong anchors out of order with the strong ones before them are dropped
+        boolean[] keep = new boolean[kept];
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < kept; i++) {
+            if (strong[i] && sortedTargets[i] >= previous) {
+                keep[i] = true;
+                previous = sortedTargets[i];
+            }
+        }
+        //any other anchor has to fit between the anchors around it
+        double[] upperBounds = new double[kept];
+        double next = Double.POSITIVE_INFINITY;
+        for (int i = kept - 1; i >= 0; i--) {
+            upperBounds[i] = next;
+            if (keep[i]) {
+                next = sortedTargets[i];
+            }
+        }
+        int monotonic = 0;
+        previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < kept; i++) {
+            double target = sortedTargets[i];
+            if (!strong[i] && target >= previous && target <= upperBounds[i]) {
+                keep[i] = true;
+            }
+            if (keep[i]) {
+                originals[monotonic] = sortedOriginals[i];
+                targets[monotonic] = target;
+                previous = target;
+                monotonic++;
+            }
+        }
+        return monotonic;
+    }
+
+    /**
+     * Pushes one side of every stem whose sides are rounded onto the same pixel border to the next border,
+     * whichever side is closer to it. Pushed sides become strong anchors.
+     */
+    private static void separateStems(double[] originals, double[] targets, boolean[] strong, int[] inkSides, int count) {
+        for (int i = 1; i < count; i++) {
+            int before = i - 1;
+            boolean stem = inkSides[before] > 0 && inkSides[i] < 0;
+            if (!stem || targets[i] > targets[before] || originals[i] - originals[before] < MIN_STEM_DISTANCE) {
+                continue;
+            }
+            double pushedAfter = targets[before] + 1;
+            double pushedBefore = targets[i] - 1;
+            double afterMovement = strong[i] ? Double.POSITIVE_INFINITY : Math.abs(pushedAfter - originals[i]);
+            double beforeMovement = strong[before] ? Double.POSITIVE_INFINITY : Math.abs(pushedBefore - originals[before]);
+            if (Math.min(afterMovement, beforeMovement) > MAX_MOVEMENT) {
+                continue;
+            }
+            if (afterMovement <= beforeMovement) {
+                targets[i] = pushedAfter;
+                strong[i] = true;
+            } else {
+                targets[before] = pushedBefore;
+                strong[before] = true;
+            }
+        }
+    }
+
+    /**
+     * Maps a position through the anchors: positions between two anchors are interpolated linearly,
+     * positions outside of all anchors move along with the closest one.
+     */
+    private static double interpolate(double position, double[] originals, double[] targets, int count) {
+        if (position <= originals[0]) {
+            return position + targets[0] - originals[0];
+        }
+        if (position >= originals[count - 1]) {
+            return position + targets[count - 1] - originals[count - 1];
+        }
+        int index = Arrays.binarySearch(originals, 0, count, position);
+        if (index >= 0) {
+            return targets[index];
+        }
+        int upper = -index - 1;
+        int lower = upper - 1;
+        double t = (position - originals[lower]) / (originals[upper] - originals[lower]);
+        return targets[lower] + t * (targets[upper] - targets[lower]);
+    }
+}
@@ -0,0 +1,150 @@
+package org.kurodev.kimage.kimage.font.glyph;
+
+import java.util.Arrays;
+
+/**
+ * Turns TrueType outlines, made of on-curve points and quadratic off-curve control points, into polygons.
+ * <p>
+ * Two consecutive off-curve points imply an on-curve point halfway between them.
+ * Every quadratic segment is split into just enough lines to stay within {@link #TOLERANCE_PX} of the curve
+ * at the size the glyph is drawn at, so small text produces few lines and large text stays smooth.
+ * <p>
+ * Scales are grouped into buckets of a quarter octave, an outline flattened for a bucket can be reused for every
+ * scale within it.
+ */
+public class OutlineFlattener {
+    /**
+     * Maximum distance in pixels between a curve and the lines approximating it.
+     */
+    public static final double TOLERANCE_PX = 0.2;
+    private static final int BUCKETS_PER_OCTAVE = 4;
+    private static final int MAX_SEGMENTS_PER_CURVE = 64;
+
+    private float[] xs = new float[64];
+    private float[] ys = new float[64];
+    private int size;
+
+    private OutlineFlattener() {
+    }
+
+    /**
+     * @return the size bucket a scale belongs to
+     */
+    public static int sizeBucket(double scale) {
+        return (int) Math.ceil(Math.log(scale) / Math.log(2) * BUCKETS_PER_OCTAVE);
+    }
+
+    /**
+     * @return the largest scale within the bucket, curves flattened for it are smooth enough for the entire bucket.
+     */
+    public static double bucketScale(int bucket) {
+        return Math.pow(2, (double) bucket / BUCKETS_PER_OCTAVE);
+    }
+
+    /**
+     * @param outline the outline to flatten, the result keeps its coordinate system
+     * @param scale   scale the outline is going to be drawn at
+     */
+    public static FlattenedOutline flatten(GlyphOutline outline, double scale) {
+        if (outline.getContourCount() == 0) {
+            return FlattenedOutline.EMPTY;
+        }
+        double tolerance = TOLERANCE_PX / scale;
+        OutlineFlattener flattener = new OutlineFlattener();
+        int[] contourEnds = new int[outline.getContourCount()];
+        for (int contour = 0; contour < contourEnds.length; contour++) {
+            flattener.flattenContour(outline, outline.getContourStart(contour), outline.getContourEnd(contour) - 1, tolerance);
+            contourEnds[contour] = flattener.size;
+        }
+        return new FlattenedOutline(Arrays.copyOf(flattener.xs, flattener.size), Arrays.copyOf(flattener.ys, flattener.size), contourEnds);
+    }
+
+    private void flattenContour(GlyphOutline outline, int start, int end, double tolerance) {
+        int count = end - start + 1;
+        if (count <= 0) {
+            return;
+        }
+        int first = -1;
+        for (int i = start; i <= end; i++) {
+            if (outline.isOnCurve(i)) {
+                first = i;
+                break;
+            }
+        }
+        double startX, startY;
+        int remaining;
+        if (first == -1) {
+            //only control points, the contour starts at the implied point between the last and the first one.
+            startX = (outline.getX(end) + outline.getX(start)) / 2.0;
+            startY = (outline.getY(end) + outline.getY(start)) / 2.0;
+            first = end;
+            remaining = count;
+        } else {
+            startX = outline.getX(first);
+            startY = outline.getY(first);
+            remaining = count - 1;
+        }
+        add(startX, startY);
+        double currentX = startX, currentY = startY;
+        boolean hasControl = false;
+        double controlX = 0, controlY = 0;
+        for (int i = 1; i <= remaining; i++) {
+            int point = start + (first - start + i) % count;
+            double x = outline.getX(point);
+            double y = outline.getY(point);
+            if (outline.isOnCurve(point)) {
+                if (hasControl) {
+                    quadTo(currentX, currentY, controlX, controlY, x, y, tolerance);
+                } else {
+                    add(x, y);
+                }
+                currentX = x;
+                currentY = y;
+                hasControl = false;
+            } else {
+                if (hasControl) {
+                    double midX = (controlX + x) / 2;
+                    double midY = (controlY + y) / 2;
+                    quadTo(currentX, currentY, controlX, controlY, midX, midY, tolerance);
+                    currentX = midX;
+                    currentY = midY;
+                }
+                controlX = x;
+                controlY = y;
+                hasControl = true;
+            }
+        }
+        if (hasControl) {
+            quadTo(currentX, currentY, controlX, controlY, startX, startY, tolerance);
+            size--; //the contour is closed implicitly, the start point must not be repeated
+        }
+    }
+
+    /**
+     * Adds the points of a quadratic curve, excluding its start point.
+     */
+    private void quadTo(double x0, double y0, double cx, double cy, double x2, double y2, double tolerance) {
+        //the distance between a curve and its chord over a parameter range h is |p0 - 2c + p2| * h² / 4
+        double ddx = x0 - 2 * cx + x2;
+        double ddy = y0 - 2 * cy + y2;
+        double deviation = Math.sqrt(ddx * ddx + ddy * ddy);
+        int segments = (int) Math.ceil(Math.sqrt(deviation / (4 * tolerance)));
+        segments = Math.max(1, Math.min(MAX_SEGMENTS_PER_CURVE, segments));
+        for (int i = 1; i <= segments; i++) {
+            double t = (double) i / segments;
+            double mt = 1 - t;
+            add(mt * mt * x0 + 2 * mt * t * cx + t * t * x2,
+                    mt * mt * y0 + 2 * mt * t * cy + t * t * y2);
+        }
+    }
+
+    private void add(double x, double y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = (float) x;
+        ys[size] = (float) y;
+        size++;
+    }
+}
@@ -1,16 +1,23 @@
 package org.kurodev.kimage.kimage.font.glyph.compound;
 
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
 import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
-import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
-import org.kurodev.kimage.kimage.util.Transformation;
-import org.kurodev.kimage.kimage.util.Util;
+import org.kurodev.kimage.kimage.font.glyph.GlyphOutline;
+import org.kurodev.kimage.kimage.font.glyph.OutlineFlattener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * A glyph assembled from other glyphs, each placed with its own transformation.
+ * <p>
+ * Components may be compounds themselves. All of them are transformed once when the glyph is created and the result is
+ * kept as a single point list, so outlines and coordinates never go through the components again.
+ */
 public class CompoundGlyph implements FontGlyph {
     /**
      * The numbers stored as shorts are treated as signed fixed binary point numbers
@@ -20,73 +27,96 @@ public class CompoundGlyph implements FontGlyph {
     private static final Logger logger = LoggerFactory.getLogger(CompoundGlyph.class);
 
     private final List<GlyphWithFlags> components;
-    private final char character;
+    private final int codePoint;
     private final int advanceWidth;
     private final int xMin;
     private final int xMax;
     private final int yMin;
     private final int yMax;
+    /**
+     * all components transformed into place
+     */
+    private final GlyphOutline outline;
+    /**
+     * flattened outlines per size bucket
+     */
+    private final Map<Integer, FlattenedOutline> flattenedOutlines = new ConcurrentHashMap<>();
 
 
-    public CompoundGlyph(char character, int advanceWidth, int xMin, int yMin, int xMax, int yMax, List<GlyphWithFlags> components) {
+    public CompoundGlyph(int codePoint, int advanceWidth, int xMin, int yMin, int xMax, int yMax, List<GlyphWithFlags> components) {
         this.components = components;
-        this.character = character;
+        this.codePoint = codePoint;
         this.advanceWidth = advanceWidth;
         this.xMin = xMin;
         this.xMax = xMax;
         this.yMin = yMin;
         this.yMax = yMax;
+        this.outline = assemble().asReadOnly();
+    }
+
+    /**
+     * Transforms the outline of every component into place and joins them.
+     */
+    private GlyphOutline assemble() {
+        List<GlyphOutline> parts = new ArrayList<>(components.size());
+        for (GlyphWithFlags component : components) {
+            double[] m = componentMatrix(component.flags());
+            GlyphOutline part = component.glyph().getOutline().copy().transform(m[0], m[1], m[2], m[3], 0, 0);
+            int[] params = component.flags().params();
+            if (component.contains(CompoundGlyphFlag.ARGS_ARE_XY_VALUES)) {
+                part.translate(params[0], -params[1]); //inverting Y, same as the points
+            } else {
+                //align a point of the component with a point of the components before it
+                GlyphOutline placed = GlyphOutline.concat(parts);
+                if (params[0] < placed.getPointCount() && params[1] < part.getPointCount()) {
+                    part.translate(placed.getX(params[0]) - part.getX(params[1]), placed.getY(params[0]) - part.getY(params[1]));
+                } else {
+                    logger.warn("Component of '{}' refers to a point that does not exist, leaving it in place", Character.toString(codePoint));
+                }
+            }
+            parts.add(part);
+        }
+        return GlyphOutline.concat(parts);
     }
 
     @Override
-    public char getCharacter() {
-        return character;
+    public int getCodePoint() {
+        return codePoint;
     }
 
     @Override
-    public Coordinate[][] getCoordinates() {
-        // Transform all component glyphs' coordinates
-        List<Coordinate[]> transformedCoords = new ArrayList<>();
-        for (GlyphWithFlags component : components) {
-            Coordinate[][] transformed = transformCoordinates(component);
-            transformedCoords.addAll(Arrays.asList(transformed));
-        }
-        return transformedCoords.toArray(new Coordinate[0][]);
+    public GlyphOutline getOutline() {
+        return outline;
     }
 
-    private Coordinate[][] transformCoordinates(GlyphWithFlags component) {
-        Coordinate[][] coordinates = component.glyph().getCoordinates();
-        FlagsWithParams flagsWithParams = component.flags();
-        Coordinate[][] out = new Coordinate[coordinates.length][];
-        for (int contour = 0; contour < coordinates.length; contour++) {
-            out[contour] = new Coordinate[coordinates[contour].length];
-            for (int i = 0; i < coordinates[contour].length; i++) {
-                Coordinate coord = coordinates[contour][i];
-                int[] params = flagsWithParams.params();
-                if (flagsWithParams.contains(CompoundGlyphFlag.WE_HAVE_A_SCALE)) {
-                    double scale = params[0] / FIXED_POINT_SCALE;
-                    coord = Transformation.SCALE.transform(coord, scale, scale);
-                } else if (flagsWithParams.contains(CompoundGlyphFlag.WE_HAVE_AN_X_AND_Y_SCALE)) {
-                    double scaleX = params[0] / FIXED_POINT_SCALE;
-                    double scaleY = params[1] / FIXED_POINT_SCALE;
-                    coord = Transformation.SCALE.transform(coord, scaleX, scaleY);
-                } else if (flagsWithParams.contains(CompoundGlyphFlag.WE_HAVE_A_TWO_BY_TWO)) {
-                    double scaleX = params[0] / FIXED_POINT_SCALE;
-                    double scale01 = params[1] / FIXED_POINT_SCALE;
-                    double scale10 = params[2] / FIXED_POINT_SCALE;
-                    double scaleY = params[3] / FIXED_POINT_SCALE;
-                    int newX = (int) (coord.x() * scaleX + coord.y() * scale01);
-                    int newY = (int) (coord.x() * scale10 + coord.y() * scaleY);
-                    coord = new Coordinate(newX, newY);
-                }
-                if (params.length > 1) {
-                    out[contour][i] = Transformation.TRANSLATE.transform(coord, params[0], params[1]);
-                } else {
-                    out[contour][i] = coord;
-                }
-            }
+    /**
+     * The linear part of the transformation of a component as {@code [a, b, c, d]},
+     * mapping {@code (x, y)} to {@code (a * x + b * y, c * x + d * y)} with the y-axis pointing down.
+     * <p>
+     * The first two params are the offsets, scale values follow as 2.14 fixed point numbers if the flags announce them.
+     */
+    private static double[] componentMatrix(FlagsWithParams flagsWithParams) {
+        int[] params = flagsWithParams.params();
+        double a = 1, b = 0, c = 0, d = 1;
+        if (flagsWithParams.contains(CompoundGlyphFlag.WE_HAVE_A_SCALE) && params.length > 2) {
+            a = d = params[2] / FIXED_POINT_SCALE;
+        } else if (flagsWithParams.contains(CompoundGlyphFlag.WE_HAVE_AN_X_AND_Y_SCALE) && params.length > 3) {
+            a = params[2] / FIXED_POINT_SCALE;
+            d = params[3] / FIXED_POINT_SCALE;
+        } else if (flagsWithParams.contains(CompoundGlyphFlag.WE_HAVE_A_TWO_BY_TWO) && params.length > 5) {
+            //stored as xscale, scale01, scale10, yscale: x' = xscale * x + scale10 * y, y' = scale01 * x + yscale * y
+            a = params[2] / FIXED_POINT_SCALE;
+            c = -params[3] / FIXED_POINT_SCALE; //mirrored, because y points down
+            b = -params[4] / FIXED_POINT_SCALE;
+            d = params[5] / FIXED_POINT_SCALE;
         }
-        return out;
+        return new double[]{a, b, c, d};
+    }
+
+    @Override
+    public FlattenedOutline getFlattenedOutline(double scale) {
+        return flattenedOutlines.computeIfAbsent(OutlineFlattener.sizeBucket(scale), bucket ->
+                outline.flatten(OutlineFlattener.bucketScale(bucket)));
     }
 
     @Override
@@ -1,14 +1,14 @@
 package org.kurodev.kimage.kimage.font.glyph.compound;
 
-import org.kurodev.kimage.kimage.font.glyph.simple.SimpleFontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
 
 import java.util.Objects;
 
 public final class GlyphWithFlags {
-    private final SimpleFontGlyph glyph;
+    private final FontGlyph glyph;
     private final FlagsWithParams flags;
 
-    public GlyphWithFlags(SimpleFontGlyph glyph, FlagsWithParams flags) {
+    public GlyphWithFlags(FontGlyph glyph, FlagsWithParams flags) {
         this.glyph = glyph;
         this.flags = flags;
     }
@@ -17,7 +17,7 @@ public final class GlyphWithFlags {
         return flags.flags().contains(flag);
     }
 
-    public SimpleFontGlyph glyph() {
+    public FontGlyph glyph() {
         return glyph;
     }
 
@@ -1,14 +1,14 @@
 package org.kurodev.kimage.kimage.font.glyph.compound;
 
-import org.kurodev.kimage.kimage.font.glyph.simple.SimpleFontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
 
 import java.util.List;
 
 public class GlyphWithFlagsBuilder {
-    private SimpleFontGlyph glyph;
+    private FontGlyph glyph;
     private FlagsWithParams flags;
 
-    public GlyphWithFlagsBuilder setGlyph(SimpleFontGlyph glyph) {
+    public GlyphWithFlagsBuilder setGlyph(FontGlyph glyph) {
         this.glyph = glyph;
         return this;
     }
@@ -1,20 +1,25 @@
 package org.kurodev.kimage.kimage.font.glyph.simple;
 
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
 import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.GlyphOutline;
+import org.kurodev.kimage.kimage.font.glyph.OutlineFlattener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SimpleFontGlyph implements FontGlyph {
     private static final Logger logger = LoggerFactory.getLogger(SimpleFontGlyph.class);
     /**
-     * The character this glyph represents
+     * The code point this glyph represents
      */
-    private final char character;
+    private final int codePoint;
 
     /**
      * int16
@@ -41,9 +46,14 @@ public class SimpleFontGlyph implements FontGlyph {
      */
     private final int[] endPtsOfContours;
     private final int advanceWidth;
+    private final GlyphOutline outline;
+    /**
+     * flattened outlines per size bucket
+     */
+    private final Map<Integer, FlattenedOutline> flattenedOutlines = new ConcurrentHashMap<>();
 
-    public SimpleFontGlyph(char character, int numberOfContours, int xMin, int yMin, int xMax, int yMax, int[] xCoordinates, int[] yCoordinates, byte[] flags, int[] instructions, int[] endPtsOfContours, int advanceWidth) {
-        this.character = character;
+    public SimpleFontGlyph(int codePoint, int numberOfContours, int xMin, int yMin, int xMax, int yMax, int[] xCoordinates, int[] yCoordinates, byte[] flags, int[] instructions, int[] endPtsOfContours, int advanceWidth) {
+        this.codePoint = codePoint;
         this.numberOfContours = numberOfContours;
         //swapping ymin and ymax because of the inversion happening below the hood.
         this.xMin = xMin;
@@ -56,6 +66,7 @@ public class SimpleFontGlyph implements FontGlyph {
         this.instructions = instructions;
         this.endPtsOfContours = endPtsOfContours;
         this.advanceWidth = advanceWidth;
+        this.outline = createOutline().asReadOnly();
     }
 
     @Override
@@ -88,6 +99,20 @@ public class SimpleFontGlyph implements FontGlyph {
         return yCoordinates;
     }
 
+    /**
+     * @return the flags of every point, bit 0 marks points on the curve
+     */
+    public byte[] getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return the index of the last point of every contour
+     */
+    public int[] getEndPtsOfContours() {
+        return endPtsOfContours;
+    }
+
     /**
      * int maxX = Arrays.stream(contour).map(Coordinate::x).max(Integer::compareTo).get();
      * int maxY = Arrays.stream(contour).map(Coordinate::y).max(Integer::compareTo).get();
@@ -103,7 +128,7 @@ public class SimpleFontGlyph implements FontGlyph {
     @Override
     public String toString() {
         return "SimpleFontGlyph{" +
-                "character=" + character +
+                "codePoint=" + codePoint +
                 ", numberOfContours=" + numberOfContours +
                 ", advanceWidth=" + advanceWidth +
                 '}';
@@ -116,36 +141,42 @@ public class SimpleFontGlyph implements FontGlyph {
     }
 
     @Override
-    public char getCharacter() {
-        return character;
+    public int getCodePoint() {
+        return codePoint;
     }
 
     @Override
-    public Coordinate[][] getCoordinates() {
-        int currentX = 0;
-        int currentY = 0;
-        Coordinate[][] coordinates = new Coordinate[numberOfContours][];
-
-        int pointIndex = 0;
-
-        for (int contourIndex = 0; contourIndex < numberOfContours; contourIndex++) {
-            int contourSize = (contourIndex == 0) ? endPtsOfContours[contourIndex] + 1
-                    : endPtsOfContours[contourIndex] - endPtsOfContours[contourIndex - 1];
-
-            Coordinate[] contour = new Coordinate[contourSize];
-
-            for (int i = 0; i < contourSize; i++) {
-                currentX += xCoordinates[pointIndex];
-                currentY += yCoordinates[pointIndex] * -1; //inverting Y to make the glyph draw upwards instead of downwards.
-
-                contour[i] = new Coordinate(currentX, currentY);
+    public GlyphOutline getOutline() {
+        return outline;
+    }
 
-                pointIndex++;
-            }
+    @Override
+    public FlattenedOutline getFlattenedOutline(double scale) {
+        return flattenedOutlines.computeIfAbsent(OutlineFlattener.sizeBucket(scale),
+                bucket -> outline.flatten(OutlineFlattener.bucketScale(bucket)));
+    }
 
-            coordinates[contourIndex] = contour;
+    /**
+     * Resolves the relative coordinates of the font file into absolute points.
+     */
+    private GlyphOutline createOutline() {
+        int numPoints = numberOfContours == 0 ? 0 : endPtsOfContours[numberOfContours - 1] + 1;
+        float[] xs = new float[numPoints];
+        float[] ys = new float[numPoints];
+        boolean[] onCurve = new boolean[numPoints];
+        int currentX = 0;
+        int currentY = 0;
+        for (int i = 0; i < numPoints; i++) {
+            currentX += xCoordinates[i];
+            currentY -= yCoordinates[i]; //inverting Y to make the glyph draw upwards instead of downwards.
+            xs[i] = currentX;
+            ys[i] = currentY;
+            onCurve[i] = GlyphFlag.ON_CURVE.check(flags[i]);
         }
-
-        return coordinates;
+        int[] contourEnds = new int[numberOfContours];
+        for (int contour = 0; contour < numberOfContours; contour++) {
+            contourEnds[contour] = endPtsOfContours[contour] + 1;
+        }
+        return new GlyphOutline(xs, ys, onCurve, contourEnds);
     }
 }
@@ -1,7 +1,7 @@
 package org.kurodev.kimage.kimage.font.glyph.simple;
 
 public class SimpleFontGlyphBuilder {
-    private char character;
+    private int codePoint;
     private int numberOfContours;
     private int xMin;
     private int yMin;
@@ -14,11 +14,15 @@ public class SimpleFontGlyphBuilder {
     private int[] endPtsOfContours;
     private int advanceWidth;
 
-    public SimpleFontGlyphBuilder setCharacter(char character) {
-        this.character = character;
+    public SimpleFontGlyphBuilder setCodePoint(int codePoint) {
+        this.codePoint = codePoint;
         return this;
     }
 
+    public SimpleFontGlyphBuilder setCharacter(char character) {
+        return setCodePoint(character);
+    }
+
     public SimpleFontGlyphBuilder setNumberOfContours(int numberOfContours) {
         this.numberOfContours = numberOfContours;
         return this;
@@ -74,6 +78,6 @@ public class SimpleFontGlyphBuilder {
     }
 
     public SimpleFontGlyph createSimpleFontGlyph() {
-        return new SimpleFontGlyph(character, numberOfContours, xMin, yMin, xMax, yMax, xCoordinates, yCoordinates, flags, instructions, endPtsOfContours, advanceWidth);
+        return new SimpleFontGlyph(codePoint, numberOfContours, xMin, yMin, xMax, yMax, xCoordinates, yCoordinates, flags, instructions, endPtsOfContours, advanceWidth);
     }
 }
\ No newline at end of file
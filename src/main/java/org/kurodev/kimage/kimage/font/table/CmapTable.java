@@ -6,252 +6,253 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
- * This class is NOT thread safe
+ * Decodes the unicode subtable of the "cmap" table once into primitive arrays.
+ * <p>
+ * Characters of the basic multilingual plane are resolved through a dense lookup array,
+ * everything else is found with a binary search over the decoded segments (format 4) or groups (format 12).
+ * The reverse mapping from glyph index to character is precomputed as well.
+ * <p>
+ * Instances are immutable after construction and therefore thread safe.
  */
 public class CmapTable {
     private static final Logger logger = LoggerFactory.getLogger(CmapTable.class);
-    private ByteBuffer cmapBuffer;
-    private int unicodeCmapOffset = -1;
+    private static final int BMP_SIZE = 0x1_0000;
+    private static final int NO_CODE_POINT = -1;
+    private final int format;
+    /**
+     * format 4: endCode, startCode, idDelta and idRangeOffset per segment.
+     * format 12: endCharCode, startCharCode and startGlyphID per group, idDelta and idRangeOffset stay empty.
+     */
+    private int[] endCodes = new int[0];
+    private int[] startCodes = new int[0];
+    private int[] idDeltas = new int[0];
+    private int[] idRangeOffsets = new int[0];
+    private int[] startGlyphIds = new int[0];
+    private int[] glyphIdArray = new int[0];
+    /**
+     * glyph index for every character in the basic multilingual plane
+     */
+    private final char[] bmpGlyphIndices = new char[BMP_SIZE];
+    /**
+     * lowest code point that maps to a glyph index, or {@link #NO_CODE_POINT}
+     */
+    private final int[] codePoints;
 
     public CmapTable(ByteBuffer cmapBuffer) {
-        this.cmapBuffer = cmapBuffer;
-        findUnicodeCmapSubtable();
+        int unicodeCmapOffset = findUnicodeCmapSubtable(cmapBuffer);
+        format = cmapBuffer.getShort(unicodeCmapOffset) & 0xFFFF;
+        logger.trace("cmap format: {}", format);
+        switch (format) {
+            case 4 -> decodeFormat4(cmapBuffer, unicodeCmapOffset);
+            case 12 -> decodeFormat12(cmapBuffer, unicodeCmapOffset);
+            default -> logger.error("Unsupported cmap format {}", format);
+        }
+        fillBmpGlyphIndices();
+        codePoints = createCodePoints();
     }
 
-    private void findUnicodeCmapSubtable() {
-        int version = cmapBuffer.getShort() & 0xFFFF;
+    private static int findUnicodeCmapSubtable(ByteBuffer cmapBuffer) {
+        int version = cmapBuffer.getShort(0) & 0xFFFF;
         logger.trace("Found Unicode Cmap Subtable version {}", version);
-        int numTables = cmapBuffer.getShort() & 0xFFFF;
+        int numTables = cmapBuffer.getShort(2) & 0xFFFF;
         logger.trace("Found {} tables", numTables);
 
-        tryFindEncoding(numTables, CmapEncodingID.UNICODE_2_0_FULL_REPERTIORE, CmapPlatformID.UNICODE, CmapPlatformID.MICROSOFT);
-        tryFindEncoding(numTables, CmapEncodingID.UNICODE_FULL_REPERTIORE, CmapPlatformID.UNICODE, CmapPlatformID.MICROSOFT);
-        tryFindEncoding(numTables, CmapEncodingID.UNICODE_BMP, CmapPlatformID.UNICODE, CmapPlatformID.MICROSOFT);
-        tryFindEncoding(numTables, CmapEncodingID.UNICODE_2_0_BMP, CmapPlatformID.UNICODE, CmapPlatformID.MICROSOFT);
-        if (unicodeCmapOffset == -1) {
-            logger.error("Suitable cmap subtable not found");
-            throw new IllegalStateException("Suitable cmap subtable not found");
+        CmapEncodingID[] preferred = {
+                CmapEncodingID.UNICODE_2_0_FULL_REPERTIORE,
+                CmapEncodingID.UNICODE_FULL_REPERTIORE,
+                CmapEncodingID.UNICODE_BMP,
+                CmapEncodingID.UNICODE_2_0_BMP
+        };
+        for (CmapEncodingID search : preferred) {
+            int offset = tryFindEncoding(cmapBuffer, numTables, search);
+            if (offset != -1) {
+                return offset;
+            }
         }
-
+        logger.error("Suitable cmap subtable not found");
+        throw new IllegalStateException("Suitable cmap subtable not found");
     }
 
-    private void tryFindEncoding(int numTables, CmapEncodingID search, CmapPlatformID platform, CmapPlatformID... platforms) {
-        if (unicodeCmapOffset != -1) {
-            return;
-        }
-        int bufferPosition = cmapBuffer.position();
+    private static int tryFindEncoding(ByteBuffer cmapBuffer, int numTables, CmapEncodingID search) {
         for (int i = 0; i < numTables; i++) {
-            int platformID = cmapBuffer.getShort() & 0xFFFF;
-            int encodingID = cmapBuffer.getShort() & 0xFFFF;
-            int offset = cmapBuffer.getInt();
-            int pos = cmapBuffer.position();
-            int format = getFormat(offset);
-            logger.trace("platformID: {}, encodingID: {}, offset: {}, format: {}", platformID, encodingID, offset, format);
-            cmapBuffer.position(pos);
+            int record = 4 + i * 8;
+            int platformID = cmapBuffer.getShort(record) & 0xFFFF;
+            int encodingID = cmapBuffer.getShort(record + 2) & 0xFFFF;
+            int offset = cmapBuffer.getInt(record + 4);
             CmapEncodingID encoding = CmapEncodingID.fromValue(encodingID);
-            CmapPlatformID encodingPlatform = CmapPlatformID.fromValue(platformID);
-            if (List.of(platform, platforms).contains(encodingPlatform) && encoding == search) {
-                unicodeCmapOffset = offset;
-                logger.trace("encoding: {}", encoding);
-                logger.trace("Found suitable cmap subtable with offset {} and format {}", offset, format);
-                return;
+            CmapPlatformID platform = CmapPlatformID.fromValue(platformID);
+            logger.trace("platformID: {}, encodingID: {}, offset: {}", platformID, encodingID, offset);
+            if ((platform == CmapPlatformID.UNICODE || platform == CmapPlatformID.MICROSOFT) && encoding == search) {
+                logger.trace("Found suitable cmap subtable with offset {} and encoding {}", offset, encoding);
+                return offset;
             }
         }
-        cmapBuffer.position(bufferPosition);
+        return -1;
     }
 
-    public int getGlyphIndex(char character) {
-        int format = getFormat(unicodeCmapOffset);
-        logger.trace("cmap format: {}", format);
-
-        switch (format) {
-            case 4:
-                return getGlyphIndexFormat4(character);
-            case 12:
-                return getGlyphIndexFormat12(character);
-            default:
-                logger.error("Unsupported cmap format {}", format);
-                return -1;
-        }
-    }
-
-    private int getGlyphIndexFormat4(char character) {
-        int length = cmapBuffer.getShort(); // length
-        int language = cmapBuffer.getShort(); // language
-        int segCountX2 = cmapBuffer.getShort();
-        int segCount = segCountX2 / 2;
-        int searchRange = cmapBuffer.getShort(); // searchRange
-        int entrySelector = cmapBuffer.getShort(); // entrySelector
-        int rangeShift = cmapBuffer.getShort(); // rangeShift
-
-        logger.trace("length: {}, language: {}, segCount: {}, searchRange: {}, entrySelector: {}, rangeShift: {}",
-                length, language, segCount, searchRange, entrySelector, rangeShift);
-
-        int[] endCode = new int[segCount];
-        for (int i = 0; i < segCount; i++) {
-            endCode[i] = cmapBuffer.getShort();
-        }
-
-         cmapBuffer.getShort(); // reservedPad, just ignore it, it's not used as of now.
-
-        int[] startCode = new int[segCount];
-        int[] idDelta = new int[segCount];
-        int[] idRangeOffset = new int[segCount];
+    private void decodeFormat4(ByteBuffer cmapBuffer, int offset) {
+        int length = cmapBuffer.getShort(offset + 2) & 0xFFFF;
+        int segCount = (cmapBuffer.getShort(offset + 6) & 0xFFFF) / 2;
+        logger.trace("length: {}, segCount: {}", length, segCount);
+
+        int endCodeStart = offset + 14;
+        int startCodeStart = endCodeStart + segCount * 2 + 2; // +2 for reservedPad
+        int idDeltaStart = startCodeStart + segCount * 2;
+        int idRangeOffsetStart = idDeltaStart + segCount * 2;
+        int glyphIdArrayStart = idRangeOffsetStart + segCount * 2;
+
+        endCodes = new int[segCount];
+        startCodes = new int[segCount];
+        idDeltas = new int[segCount];
+        idRangeOffsets = new int[segCount];
         for (int i = 0; i < segCount; i++) {
-            startCode[i] = cmapBuffer.getShort();
+            endCodes[i] = cmapBuffer.getShort(endCodeStart + i * 2) & 0xFFFF;
+            startCodes[i] = cmapBuffer.getShort(startCodeStart + i * 2) & 0xFFFF;
+            idDeltas[i] = cmapBuffer.getShort(idDeltaStart + i * 2);
+            idRangeOffsets[i] = cmapBuffer.getShort(idRangeOffsetStart + i * 2) & 0xFFFF;
         }
-        for (int i = 0; i < segCount; i++) {
-            idDelta[i] = cmapBuffer.getShort();
-        }
-        for (int i = 0; i < segCount; i++) {
-            idRangeOffset[i] = cmapBuffer.getShort();
+        int glyphIdCount = Math.max(0, (Math.min(offset + length, cmapBuffer.limit()) - glyphIdArrayStart) / 2);
+        glyphIdArray = new int[glyphIdCount];
+        for (int i = 0; i < glyphIdCount; i++) {
+            glyphIdArray[i] = cmapBuffer.getShort(glyphIdArrayStart + i * 2) & 0xFFFF;
         }
-
-        for (int i = 0; i < segCount; i++) {
-            if (character >= startCode[i] && character <= endCode[i]) {
-                int index;
-                if (idRangeOffset[i] == 0) {
-                    index = (character + idDelta[i]) & 0xFFFF;
-                } else {
-                    int glyphIndexOffset = (idRangeOffset[i] / 2 + (character - startCode[i]) - (segCount - i));
-                    int glyphPosition = unicodeCmapOffset + 14 + segCount * 8 + glyphIndexOffset * 2;
-                    cmapBuffer.position(glyphPosition);
-                    index = cmapBuffer.getShort() & 0xFFFF;
-                    if (index != 0) { // Ensure it's not the missing glyph
-                        index = (index + idDelta[i]) & 0xFFFF;
-                    }
-                    logger.trace("Character '{}' found in segment {}: glyphIndexOffset: {}, glyphPosition: {}, index: {}",
-                            character, i, glyphIndexOffset, glyphPosition, index);
-                }
-                logger.trace("Character '{}' -> Glyph Index: {}", character, index);
-                return index;
-            }
-        }
-
-        return 0; // not found, returning .notdef index
     }
 
-    private int getGlyphIndexFormat12(char character) {
-        int reserved = cmapBuffer.getShort(); // reserved
-        int length = cmapBuffer.getInt(); // length
-        int language = cmapBuffer.getInt(); // language
-        int numGroups = cmapBuffer.getInt(); // numGroups
-
-        logger.trace("reserved: {}, length: {}, language: {}, numGroups: {}", reserved, length, language, numGroups);
-
-        // Read each group
+    private void decodeFormat12(ByteBuffer cmapBuffer, int offset) {
+        int numGroups = cmapBuffer.getInt(offset + 12);
+        logger.trace("numGroups: {}", numGroups);
+        startCodes = new int[numGroups];
+        endCodes = new int[numGroups];
+        startGlyphIds = new int[numGroups];
         for (int i = 0; i < numGroups; i++) {
-            int startCharCode = cmapBuffer.getInt();
-            int endCharCode = cmapBuffer.getInt();
-            int startGlyphID = cmapBuffer.getInt();
-
-            logger.trace("Group {}: startCharCode: {}, endCharCode: {}, startGlyphID: {}", i, startCharCode, endCharCode, startGlyphID);
-
-            if (character >= startCharCode && character <= endCharCode) {
-                int glyphIndex = startGlyphID + (character - startCharCode);
-                logger.trace("Character '{}' found in group {}: glyphIndex: {}", character, i, glyphIndex);
-                return glyphIndex;
-            }
+            int group = offset + 16 + i * 12;
+            startCodes[i] = cmapBuffer.getInt(group);
+            endCodes[i] = cmapBuffer.getInt(group + 4);
+            startGlyphIds[i] = cmapBuffer.getInt(group + 8);
         }
-
-        logger.trace("Character '{}' not found, returning .notdef index", character);
-        return 0; // not found, returning .notdef index
     }
 
-    private int getFormat(int offset) {
-        cmapBuffer.position(offset);
-        return cmapBuffer.getShort() & 0xFFFF;
+    private void fillBmpGlyphIndices() {
+        for (int segment = 0; segment < endCodes.length; segment++) {
+            int end = Math.min(endCodes[segment], BMP_SIZE - 1);
+            for (int codePoint = startCodes[segment]; codePoint <= end; codePoint++) {
+                bmpGlyphIndices[codePoint] = (char) glyphIndexInSegment(segment, codePoint);
+            }
+        }
     }
 
-    public Optional<Character> getCharacter(int glyphIndex) {
-        int format = getFormat(unicodeCmapOffset);
-
-        switch (format) {
-            case 4:
-                return getCharacterFormat4(glyphIndex);
-            case 12:
-                return getCharacterFormat12(glyphIndex);
-            default:
-                logger.error("Unsupported cmap format {}", format);
-                return Optional.empty();
+    private int[] createCodePoints() {
+        int maxGlyphIndex = 0;
+        for (char glyphIndex : bmpGlyphIndices) {
+            maxGlyphIndex = Math.max(maxGlyphIndex, glyphIndex);
+        }
+        for (int group = 0; group < startGlyphIds.length; group++) {
+            maxGlyphIndex = Math.max(maxGlyphIndex, startGlyphIds[group] + endCodes[group] - startCodes[group]);
+        }
+        int[] out = new int[maxGlyphIndex + 1];
+        Arrays.fill(out, NO_CODE_POINT);
+        //segments and groups are sorted ascending, so the first code point we encounter is the lowest one.
+        for (int segment = 0; segment < endCodes.length; segment++) {
+            for (int codePoint = startCodes[segment]; codePoint <= endCodes[segment]; codePoint++) {
+                int glyphIndex = codePoint < BMP_SIZE ? bmpGlyphIndices[codePoint] : glyphIndexInSegment(segment, codePoint);
+                if (glyphIndex != 0 && out[glyphIndex] == NO_CODE_POINT) {
+                    out[glyphIndex] = codePoint;
+                }
+            }
         }
+        return out;
     }
 
-    private Optional<Character> getCharacterFormat4(int glyphIndex) {
-        int length = cmapBuffer.getShort(); // length
-        int language = cmapBuffer.getShort(); // language
-        int segCountX2 = cmapBuffer.getShort();
-        int segCount = segCountX2 / 2;
-        int searchRange = cmapBuffer.getShort(); // searchRange
-        int entrySelector = cmapBuffer.getShort(); // entrySelector
-        int rangeShift = cmapBuffer.getShort(); // rangeShift
-
-        logger.trace("length: {}, language: {}, segCount: {}, searchRange: {}, entrySelector: {}, rangeShift: {}",
-                length, language, segCount, searchRange, entrySelector, rangeShift);
-
-        int[] endCode = new int[segCount];
-        for (int i = 0; i < segCount; i++) {
-            endCode[i] = cmapBuffer.getShort();
+    /**
+     * @param segment   the format 4 segment or format 12 group containing the code point
+     * @param codePoint a code point that lies within the segment
+     */
+    private int glyphIndexInSegment(int segment, int codePoint) {
+        if (format == 12) {
+            return startGlyphIds[segment] + (codePoint - startCodes[segment]);
         }
-
-       cmapBuffer.getShort(); // reservedPad
-
-        int[] startCode = new int[segCount];
-        int[] idDelta = new int[segCount];
-        int[] idRangeOffset = new int[segCount];
-        for (int i = 0; i < segCount; i++) {
-            startCode[i] = cmapBuffer.getShort();
+        if (idRangeOffsets[segment] == 0) {
+            return (codePoint + idDeltas[segment]) & 0xFFFF;
         }
-        for (int i = 0; i < segCount; i++) {
-            idDelta[i] = cmapBuffer.getShort();
+        int segCount = endCodes.length;
+        int glyphIndexOffset = idRangeOffsets[segment] / 2 + (codePoint - startCodes[segment]) - (segCount - segment);
+        if (glyphIndexOffset < 0 || glyphIndexOffset >= glyphIdArray.length) {
+            return 0;
         }
-        for (int i = 0; i < segCount; i++) {
-            idRangeOffset[i] = cmapBuffer.getShort();
+        int index = glyphIdArray[glyphIndexOffset];
+        if (index != 0) { // Ensure it's not the missing glyph
+            index = (index + idDeltas[segment]) & 0xFFFF;
         }
+        return index;
+    }
 
-        for (int i = 0; i < segCount; i++) {
-            if (glyphIndex >= idDelta[i] && glyphIndex <= idDelta[i] + endCode[i] - startCode[i]) {
-                int glyphIdArrayIndex = idRangeOffset[i] / 2 + (glyphIndex - idDelta[i]) - (segCount - i);
-                int charCode = startCode[i] + glyphIdArrayIndex;
-                logger.trace("Glyph index '{}' corresponds to character '{}'", glyphIndex, (char) charCode);
-                return Optional.of((char) charCode);
+    /**
+     * @return the index of the first segment whose end code is not below the code point, -1 if there is none.
+     */
+    private int findSegment(int codePoint) {
+        int low = 0;
+        int high = endCodes.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (endCodes[mid] >= codePoint) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
             }
         }
-
-        logger.trace("Glyph index '{}' does not correspond to any character", glyphIndex);
-        return Optional.empty();
+        return found;
     }
 
-    private Optional<Character> getCharacterFormat12(int glyphIndex) {
-        int reserved = cmapBuffer.getShort(); // reserved
-        int length = cmapBuffer.getInt(); // length
-        int language = cmapBuffer.getInt(); // language
-        int numGroups = cmapBuffer.getInt(); // numGroups
-
-        logger.trace("reserved: {}, length: {}, language: {}, numGroups: {}", reserved, length, language, numGroups);
-
-        // Read each group
-        for (int i = 0; i < numGroups; i++) {
-            int startCharCode = cmapBuffer.getInt();
-            int endCharCode = cmapBuffer.getInt();
-            int startGlyphID = cmapBuffer.getInt();
+    public int getGlyphIndex(char character) {
+        return bmpGlyphIndices[character];
+    }
 
-            logger.trace("Group {}: startCharCode: {}, endCharCode: {}, startGlyphID: {}", i, startCharCode, endCharCode, startGlyphID);
+    /**
+     * @return the glyph index of the code point, or 0 (.notdef) if the font does not contain it.
+     */
+    public int getGlyphIndex(int codePoint) {
+        if (codePoint >= 0 && codePoint < BMP_SIZE) {
+            return bmpGlyphIndices[codePoint];
+        }
+        int segment = findSegment(codePoint);
+        if (segment == -1 || startCodes[segment] > codePoint) {
+            logger.trace("Code point '{}' not found, returning .notdef index", codePoint);
+            return 0; // not found, returning .notdef index
+        }
+        return glyphIndexInSegment(segment, codePoint);
+    }
 
-            if (glyphIndex >= startGlyphID && glyphIndex <= startGlyphID + (endCharCode - startCharCode)) {
-                int charCode = startCharCode + (glyphIndex - startGlyphID);
-                logger.trace("Glyph index '{}' corresponds to character '{}'", glyphIndex, (char) charCode);
-                return Optional.of((char) charCode);
-            }
+    /**
+     * @return the lowest code point that maps to the glyph index
+     */
+    public OptionalInt getCodePoint(int glyphIndex) {
+        if (glyphIndex < 0 || glyphIndex >= codePoints.length || codePoints[glyphIndex] == NO_CODE_POINT) {
+            logger.trace("Glyph index '{}' does not correspond to any code point", glyphIndex);
+            return OptionalInt.empty();
         }
+        return OptionalInt.of(codePoints[glyphIndex]);
+    }
 
-        logger.trace("Glyph index '{}' does not correspond to any character", glyphIndex);
-        return Optional.empty();
+    /**
+     * @return the lowest code point that maps to the glyph index, if it lies within the basic multilingual plane
+     * @see #getCodePoint(int)
+     */
+    public Optional<Character> getCharacter(int glyphIndex) {
+        OptionalInt codePoint = getCodePoint(glyphIndex);
+        if (codePoint.isEmpty() || codePoint.getAsInt() >= BMP_SIZE) {
+            return Optional.empty();
+        }
+        return Optional.of((char) codePoint.getAsInt());
     }
 
+    public int getFormat() {
+        return format;
+    }
 }
-
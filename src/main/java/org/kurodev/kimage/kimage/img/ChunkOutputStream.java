@@ -0,0 +1,95 @@
+package org.kurodev.kimage.kimage.img;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Splits everything written to it into PNG chunks of one type, each holding at most a fixed amount of data.
+ * Used for the compressed image data, which PNG allows to spread over any number of consecutive IDAT chunks.
+ * <p>
+ * Closing the stream writes the last, partially filled chunk but leaves the underlying stream open.
+ */
+class ChunkOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final byte[] type;
+    private final byte[] buffer;
+    private int count;
+    private boolean closed;
+
+    /**
+     * @param chunkSize maximum amount of data per chunk
+     */
+    ChunkOutputStream(OutputStream out, String type, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.out = out;
+        this.type = type.getBytes(StandardCharsets.US_ASCII);
+        this.buffer = new byte[chunkSize];
+    }
+
+    /**
+     * Writes a complete chunk: length, type, data and the CRC over type and data.
+     */
+    static void writeChunk(OutputStream out, byte[] type, byte[] data, int offset, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data, offset, length);
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        System.arraycopy(type, 0, header, 4, 4);
+        out.write(header);
+        out.write(data, offset, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            writeBufferedChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeBufferedChunk();
+            }
+            int copied = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, copied);
+            count += copied;
+            off += copied;
+            len -= copied;
+        }
+    }
+
+    private void writeBufferedChunk() throws IOException {
+        writeChunk(out, type, buffer, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (count > 0) {
+            writeBufferedChunk();
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,285 @@
+package org.kurodev.kimage.kimage.img;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Porter-Duff operators and separable blend modes that combine a source color with the pixels of an image.
+ * <p>
+ * All colors are packed, non-premultiplied ARGB ints ({@code 0xAARRGGBB}) as stored by {@link SimplePng}. The math is
+ * done with integers on channels from 0 to 255. Operators work on whole spans of pixels and on rows of coverage
+ * values, so the mode is looked at once per row instead of once per pixel, and opaque or fully transparent sources
+ * skip the blending math entirely.
+ * <p>
+ * Partial coverage, as produced by anti-aliasing, scales the alpha of the source for modes that leave the image
+ * untouched where the source is transparent. {@link #SRC} and {@link #DST_IN} interpolate between the image and the
+ * full result instead.
+ */
+public enum Composite {
+    /**
+     * Replaces the pixel with the source, including its alpha.
+     */
+    SRC(false) {
+        @Override
+        public int blend(int src, int dst) {
+            return src;
+        }
+
+        @Override
+        public int blend(int src, int dst, int coverage) {
+            return coverage >= 255 ? src : lerp(dst, src, coverage);
+        }
+
+        @Override
+        public void fillSpan(int[] pixels, int from, int to, int src) {
+            PixelKernels.get().fill(pixels, from, to, src);
+        }
+    },
+    /**
+     * Draws the source on top of the pixel, the usual way of painting translucent colors.
+     */
+    SRC_OVER(true) {
+        @Override
+        public int blend(int src, int dst) {
+            int alpha = src >>> 24;
+            if (alpha == 255) {
+                return src;
+            }
+            if (alpha == 0) {
+                return dst;
+            }
+            int dstAlpha = dst >>> 24;
+            // alpha of the destination that remains visible, scaled to 0-255*255
+            int remaining = dstAlpha * (255 - alpha);
+            int outAlpha255 = alpha * 255 + remaining;
+            int outRed = (red(src) * alpha * 255 + red(dst) * remaining + outAlpha255 / 2) / outAlpha255;
+            int outGreen = (green(src) * alpha * 255 + green(dst) * remaining + outAlpha255 / 2) / outAlpha255;
+            int outBlue = (blue(src) * alpha * 255 + blue(dst) * remaining + outAlpha255 / 2) / outAlpha255;
+            return pack(outRed, outGreen, outBlue, (outAlpha255 + 127) / 255);
+        }
+
+        @Override
+        public void fillSpan(int[] pixels, int from, int to, int src) {
+            if (src >>> 24 == 255) {
+                PixelKernels.get().fill(pixels, from, to, src);
+            } else {
+                super.fillSpan(pixels, from, to, src);
+            }
+        }
+
+        @Override
+        public void fillMask(int[] pixels, int offset, byte[] coverage, int coverageOffset, int length, int src) {
+            PixelKernels.get().srcOverMask(pixels, offset, coverage, coverageOffset, length, src);
+        }
+    },
+    /**
+     * Keeps the pixel only where the source is opaque, the color of the source is ignored. Useful as a mask.
+     */
+    DST_IN(false) {
+        @Override
+        public int blend(int src, int dst) {
+            int alpha = div255((src >>> 24) * (dst >>> 24));
+            return alpha == 0 ? 0 : (alpha << 24) | (dst & 0xFFFFFF);
+        }
+
+        @Override
+        public int blend(int src, int dst, int coverage) {
+            return coverage >= 255 ? blend(src, dst) : lerp(dst, blend(src, dst), coverage);
+        }
+
+        @Override
+        public void fillSpan(int[] pixels, int from, int to, int src) {
+            int alpha = src >>> 24;
+            if (alpha == 255) {
+                return;
+            }
+            if (alpha == 0) {
+                Arrays.fill(pixels, from, to, 0);
+                return;
+            }
+            super.fillSpan(pixels, from, to, src);
+        }
+    },
+    /**
+     * Multiplies the colors, the result is never brighter than either of them.
+     */
+    MULTIPLY(true) {
+        @Override
+        public int blend(int src, int dst) {
+            return blendSeparable(src, dst, (dstChannel, srcChannel) -> div255(dstChannel * srcChannel));
+        }
+    },
+    /**
+     * Multiplies the inverted colors, the result is never darker than either of them.
+     */
+    SCREEN(true) {
+        @Override
+        public int blend(int src, int dst) {
+            return blendSeparable(src, dst,
+                    (dstChannel, srcChannel) -> dstChannel + srcChannel - div255(dstChannel * srcChannel));
+        }
+    },
+    /**
+     * Adds the premultiplied colors and alphas, clamping at white and fully opaque.
+     */
+    ADD(true) {
+        @Override
+        public int blend(int src, int dst) {
+            int alpha = src >>> 24;
+            if (alpha == 0) {
+                return dst;
+            }
+            int dstAlpha = dst >>> 24;
+            if ((alpha & dstAlpha) == 255) {
+                return pack(Math.min(255, red(src) + red(dst)), Math.min(255, green(src) + green(dst)),
+                        Math.min(255, blue(src) + blue(dst)), 255);
+            }
+            int outAlpha = Math.min(255, alpha + dstAlpha);
+            return pack(add(red(src), alpha, red(dst), dstAlpha, outAlpha),
+                    add(green(src), alpha, green(dst), dstAlpha, outAlpha),
+                    add(blue(src), alpha, blue(dst), dstAlpha, outAlpha),
+                    outAlpha);
+        }
+
+        private static int add(int src, int alpha, int dst, int dstAlpha, int outAlpha) {
+            int premultiplied255 = Math.min(255 * 255, src * alpha + dst * dstAlpha);
+            return (premultiplied255 + outAlpha / 2) / outAlpha;
+        }
+    };
+
+    /**
+     * Whether a transparent source leaves the pixel as it is
+     */
+    private final boolean transparentIsNoop;
+
+    Composite(boolean transparentIsNoop) {
+        this.transparentIsNoop = transparentIsNoop;
+    }
+
+    /**
+     * Combines a source color with a fully covered pixel.
+     *
+     * @return the new value of the pixel
+     */
+    public abstract int blend(int src, int dst);
+
+    /**
+     * Combines a source color with a partially covered pixel.
+     *
+     * @param coverage how much of the pixel is covered, 0 (not at all) to 255 (entirely)
+     */
+    public int blend(int src, int dst, int coverage) {
+        if (coverage >= 255) {
+            return blend(src, dst);
+        }
+        int alpha = div255((src >>> 24) * coverage);
+        return blend((alpha << 24) | (src & 0xFFFFFF), dst);
+    }
+
+    /**
+     * Blends the same color into a run of pixels.
+     *
+     * @param from first index (inclusive)
+     * @param to   last index (exclusive)
+     */
+    public void fillSpan(int[] pixels, int from, int to, int src) {
+        if (transparentIsNoop && src >>> 24 == 0) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            pixels[i] = blend(src, pixels[i]);
+        }
+    }
+
+    /**
+     * Blends the same color into a run of pixels, each covered by its own amount.
+     *
+     * @param offset         index of the first pixel
+     * @param coverage       0 (not covered) to 255 (covered entirely) as unsigned bytes
+     * @param coverageOffset index of the coverage of the first pixel
+     * @param length         number of pixels
+     */
+    public void fillMask(int[] pixels, int offset, byte[] coverage, int coverageOffset, int length, int src) {
+        if (transparentIsNoop && src >>> 24 == 0) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            int covered = coverage[coverageOffset + i] & 0xFF;
+            if (covered != 0) {
+                pixels[offset + i] = blend(src, pixels[offset + i], covered);
+            }
+        }
+    }
+
+    /**
+     * Combines two colors with a separable blend mode, composited on top of the pixel like source over.
+     *
+     * @param channel the blend function of the mode, for two opaque channels: (dst, src) to result
+     */
+    private static int blendSeparable(int src, int dst, IntBinaryOperator channel) {
+        int alpha = src >>> 24;
+        if (alpha == 0) {
+            return dst;
+        }
+        int dstAlpha = dst >>> 24;
+        if ((alpha & dstAlpha) == 255) {
+            return pack(channel.applyAsInt(red(dst), red(src)), channel.applyAsInt(green(dst), green(src)),
+                    channel.applyAsInt(blue(dst), blue(src)), 255);
+        }
+        //the general formula for separable blend modes on top of source over, scaled to 0-255^3
+        int srcOnly = alpha * (255 - dstAlpha);
+        int dstOnly = dstAlpha * (255 - alpha);
+        int both = alpha * dstAlpha;
+        int outAlpha255 = alpha * 255 + dstOnly;
+        return pack(
+                mix(red(src), red(dst), srcOnly, dstOnly, both, outAlpha255, channel),
+                mix(green(src), green(dst), srcOnly, dstOnly, both, outAlpha255, channel),
+                mix(blue(src), blue(dst), srcOnly, dstOnly, both, outAlpha255, channel),
+                (outAlpha255 + 127) / 255);
+    }
+
+    private static int mix(int src, int dst, int srcOnly, int dstOnly, int both, int outAlpha255,
+                           IntBinaryOperator channel) {
+        int value = src * srcOnly + dst * dstOnly + channel.applyAsInt(dst, src) * both;
+        return (value + outAlpha255 / 2) / outAlpha255;
+    }
+
+    /**
+     * Interpolates between two colors in premultiplied space.
+     *
+     * @param amount 0 for only {@code from}, 255 for only {@code to}
+     */
+    static int lerp(int from, int to, int amount) {
+        int fromWeight = (from >>> 24) * (255 - amount);
+        int toWeight = (to >>> 24) * amount;
+        int outAlpha255 = fromWeight + toWeight;
+        if (outAlpha255 == 0) {
+            return 0;
+        }
+        return pack(
+                (red(from) * fromWeight + red(to) * toWeight + outAlpha255 / 2) / outAlpha255,
+                (green(from) * fromWeight + green(to) * toWeight + outAlpha255 / 2) / outAlpha255,
+                (blue(from) * fromWeight + blue(to) * toWeight + outAlpha255 / 2) / outAlpha255,
+                (outAlpha255 + 127) / 255);
+    }
+
+    private static int div255(int value) {
+        return (value + 127) / 255;
+    }
+
+    private static int red(int argb) {
+        return (argb >> 16) & 0xFF;
+    }
+
+    private static int green(int argb) {
+        return (argb >> 8) & 0xFF;
+    }
+
+    private static int blue(int argb) {
+        return argb & 0xFF;
+    }
+
+    private static int pack(int red, int green, int blue, int alpha) {
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+}
@@ -0,0 +1,37 @@
+package org.kurodev.kimage.kimage.img;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides once which {@link PixelKernels} to use.
+ * <p>
+ * The vectorized kernels are only loaded by name, so the rest of the library never links against
+ * {@code jdk.incubator.vector} and keeps working when the module is missing.
+ */
+final class KernelSelection {
+    private static final Logger logger = LoggerFactory.getLogger(KernelSelection.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNELS = "org.kurodev.kimage.kimage.img.VectorPixelKernels";
+    static final PixelKernels SELECTED = select();
+
+    private KernelSelection() {
+    }
+
+    private static PixelKernels select() {
+        if (Boolean.getBoolean(PixelKernels.SCALAR_PROPERTY)) {
+            return ScalarPixelKernels.INSTANCE;
+        }
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            logger.debug("{} is not available, start the JVM with --add-modules {} to use vectorized kernels",
+                    VECTOR_MODULE, VECTOR_MODULE);
+            return ScalarPixelKernels.INSTANCE;
+        }
+        try {
+            return (PixelKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            logger.debug("Vectorized kernels are not supported, using scalar kernels", e);
+            return ScalarPixelKernels.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.kurodev.kimage.kimage.img;
+
+/**
+ * The innermost loops over packed ARGB pixels ({@code 0xAARRGGBB}, non-premultiplied).
+ * <p>
+ * Two implementations exist: a scalar one that runs everywhere, and one built on the incubating Vector API
+ * ({@code jdk.incubator.vector}) that processes as many pixels per instruction as the CPU allows. {@link #get()}
+ * picks the vectorized kernels if the JVM was started with {@code --add-modules jdk.incubator.vector}, the scalar
+ * ones otherwise. Both produce exactly the same pixels.
+ * <p>
+ * Implementations are stateless and can be shared between threads.
+ */
+public interface PixelKernels {
+    /**
+     * Setting this system property to {@code true} forces the scalar kernels, to compare against them.
+     */
+    String SCALAR_PROPERTY = "kimage.scalarKernels";
+
+    /**
+     * @return the fastest kernels available in this JVM
+     */
+    static PixelKernels get() {
+        return KernelSelection.SELECTED;
+    }
+
+    /**
+     * @return the kernels that loop over one pixel at a time
+     */
+    static PixelKernels scalar() {
+        return ScalarPixelKernels.INSTANCE;
+    }
+
+    /**
+     * Sets a run of pixels to the same value.
+     *
+     * @param from first index (inclusive)
+     * @param to   last index (exclusive)
+     */
+    void fill(int[] pixels, int from, int to, int argb);
+
+    /**
+     * Blends the same color over a run of pixels, each covered by its own amount. Same result as
+     * {@link Composite#fillMask(int[], int, byte[], int, int, int)} of {@link Composite#SRC_OVER}.
+     *
+     * @param offset         index of the first pixel
+     * @param coverage       0 (not covered) to 255 (covered entirely) as unsigned bytes
+     * @param coverageOffset index of the coverage of the first pixel
+     * @param length         number of pixels
+     */
+    void srcOverMask(int[] pixels, int offset, byte[] coverage, int coverageOffset, int length, int argb);
+
+    /**
+     * Multiplies the color channels with alpha. Source and destination may be the same array.
+     */
+    void premultiply(int[] src, int srcOffset, int[] dst, int dstOffset, int length);
+
+    /**
+     * Converts packed ARGB pixels into RGBA bytes, as PNG stores them.
+     *
+     * @param dstOffset index of the red byte of the first pixel, {@code length * 4} bytes are written
+     */
+    void argbToRgba(int[] src, int srcOffset, byte[] dst, int dstOffset, int length);
+}
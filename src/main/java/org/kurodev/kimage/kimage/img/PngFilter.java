@@ -0,0 +1,177 @@
+package org.kurodev.kimage.kimage.img;
+
+/**
+ * The scanline filters of PNG filter method 0.
+ * <p>
+ * A filter replaces every byte of a scanline by its difference to a prediction made from the bytes left of it ("a"),
+ * above it ("b") and above left of it ("c"). Bytes left of the first pixel and the row above the first scanline
+ * count as 0. All arithmetic is modulo 256.
+ *
+ * <a href="https://www.w3.org/TR/png/#9Filters">Specification</a>
+ */
+public enum PngFilter {
+    /**
+     * Leaves the bytes unchanged.
+     */
+    NONE(0),
+    /**
+     * Predicts the byte to the left.
+     */
+    SUB(1),
+    /**
+     * Predicts the byte above.
+     */
+    UP(2),
+    /**
+     * Predicts the average of the bytes to the left and above.
+     */
+    AVERAGE(3),
+    /**
+     * Predicts whichever of left, above and above left is closest to {@code a + b - c}.
+     */
+    PAETH(4);
+
+    private static final PngFilter[] BY_TYPE = values();
+    private final int type;
+
+    PngFilter(int type) {
+        this.type = type;
+    }
+
+    /**
+     * @param type the filter type byte that precedes every scanline
+     * @throws IllegalArgumentException for unknown filter types
+     */
+    public static PngFilter ofType(int type) {
+        if (type < 0 || type >= BY_TYPE.length) {
+            throw new IllegalArgumentException("Unknown PNG filter type: " + type);
+        }
+        return BY_TYPE[type];
+    }
+
+    static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        if (pb <= pc) {
+            return b;
+        }
+        return c;
+    }
+
+    /**
+     * @return the filter type byte that precedes every scanline
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Filters one scanline.
+     *
+     * @param row       the unfiltered scanline
+     * @param rowOffset index of the first byte of the scanline in {@code row}
+     * @param prior     the unfiltered scanline above, or {@code null} for the first scanline
+     * @param bpp       bytes per complete pixel, at least 1
+     * @param out       receives {@code length} filtered bytes
+     */
+    public void filter(byte[] row, int rowOffset, byte[] prior, int priorOffset, int length, int bpp, byte[] out, int outOffset) {
+        int left = Math.min(bpp, length); //bytes without a left neighbour
+        switch (this) {
+            case NONE -> System.arraycopy(row, rowOffset, out, outOffset, length);
+            case SUB -> {
+                System.arraycopy(row, rowOffset, out, outOffset, left);
+                for (int i = left; i < length; i++) {
+                    out[outOffset + i] = (byte) (row[rowOffset + i] - row[rowOffset + i - bpp]);
+                }
+            }
+            case UP -> {
+                if (prior == null) {
+                    System.arraycopy(row, rowOffset, out, outOffset, length);
+                    return;
+                }
+                for (int i = 0; i < length; i++) {
+                    out[outOffset + i] = (byte) (row[rowOffset + i] - prior[priorOffset + i]);
+                }
+            }
+            case AVERAGE -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? row[rowOffset + i - bpp] & 0xFF : 0;
+                    int b = prior != null ? prior[priorOffset + i] & 0xFF : 0;
+                    out[outOffset + i] = (byte) (row[rowOffset + i] - ((a + b) >>> 1));
+                }
+            }
+            case PAETH -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? row[rowOffset + i - bpp] & 0xFF : 0;
+                    int b = prior != null ? prior[priorOffset + i] & 0xFF : 0;
+                    int c = prior != null && i >= bpp ? prior[priorOffset + i - bpp] & 0xFF : 0;
+                    out[outOffset + i] = (byte) (row[rowOffset + i] - paeth(a, b, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reverses {@link #filter} in place.
+     *
+     * @param row       the filtered scanline, receives the reconstructed bytes
+     * @param rowOffset index of the first byte of the scanline in {@code row}
+     * @param prior     the already reconstructed scanline above, or {@code null} for the first scanline
+     * @param bpp       bytes per complete pixel, at least 1
+     */
+    public void unfilter(byte[] row, int rowOffset, byte[] prior, int priorOffset, int length, int bpp) {
+        switch (this) {
+            case NONE -> {
+            }
+            case SUB -> {
+                for (int i = bpp; i < length; i++) {
+                    row[rowOffset + i] += row[rowOffset + i - bpp];
+                }
+            }
+            case UP -> {
+                if (prior == null) {
+                    return;
+                }
+                for (int i = 0; i < length; i++) {
+                    row[rowOffset + i] += prior[priorOffset + i];
+                }
+            }
+            case AVERAGE -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? row[rowOffset + i - bpp] & 0xFF : 0;
+                    int b = prior != null ? prior[priorOffset + i] & 0xFF : 0;
+                    row[rowOffset + i] += (byte) ((a + b) >>> 1);
+                }
+            }
+            case PAETH -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? row[rowOffset + i - bpp] & 0xFF : 0;
+                    int b = prior != null ? prior[priorOffset + i] & 0xFF : 0;
+                    int c = prior != null && i >= bpp ? prior[priorOffset + i - bpp] & 0xFF : 0;
+                    row[rowOffset + i] += (byte) paeth(a, b, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Filters a scanline and estimates how well the result compresses,
+     * as the sum of the filtered bytes interpreted as signed values.
+     *
+     * @return the sum of absolute differences, lower is better
+     * @see #filter
+     */
+    public long filterAndScore(byte[] row, int rowOffset, byte[] prior, int priorOffset, int length, int bpp, byte[] out, int outOffset) {
+        filter(row, rowOffset, prior, priorOffset, length, bpp, out, outOffset);
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs(out[outOffset + i]);
+        }
+        return sum;
+    }
+}
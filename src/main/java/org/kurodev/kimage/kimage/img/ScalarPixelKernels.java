@@ -0,0 +1,58 @@
+package org.kurodev.kimage.kimage.img;
+
+import java.util.Arrays;
+
+/**
+ * One pixel at a time, the reference all other kernels have to match.
+ */
+final class ScalarPixelKernels implements PixelKernels {
+    static final ScalarPixelKernels INSTANCE = new ScalarPixelKernels();
+
+    private ScalarPixelKernels() {
+    }
+
+    @Override
+    public void fill(int[] pixels, int from, int to, int argb) {
+        Arrays.fill(pixels, from, to, argb);
+    }
+
+    @Override
+    public void srcOverMask(int[] pixels, int offset, byte[] coverage, int coverageOffset, int length, int argb) {
+        if (argb >>> 24 == 0) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            int covered = coverage[coverageOffset + i] & 0xFF;
+            if (covered != 0) {
+                pixels[offset + i] = Composite.SRC_OVER.blend(argb, pixels[offset + i], covered);
+            }
+        }
+    }
+
+    @Override
+    public void premultiply(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = premultiply(src[srcOffset + i]);
+        }
+    }
+
+    static int premultiply(int argb) {
+        int alpha = argb >>> 24;
+        int red = (((argb >> 16) & 0xFF) * alpha + 127) / 255;
+        int green = (((argb >> 8) & 0xFF) * alpha + 127) / 255;
+        int blue = ((argb & 0xFF) * alpha + 127) / 255;
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    @Override
+    public void argbToRgba(int[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int argb = src[srcOffset + i];
+            int out = dstOffset + i * 4;
+            dst[out] = (byte) (argb >> 16);
+            dst[out + 1] = (byte) (argb >> 8);
+            dst[out + 2] = (byte) argb;
+            dst[out + 3] = (byte) (argb >>> 24);
+        }
+    }
+}
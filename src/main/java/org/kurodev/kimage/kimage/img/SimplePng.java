@@ -1,26 +1,25 @@
 package org.kurodev.kimage.kimage.img;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.awt.*;
 import java.util.Arrays;
 import java.util.Objects;
 
+/**
+ * In-memory image with 8 bits per channel.
+ * <p>
+ * Pixels are stored row by row as packed ARGB ints ({@code 0xAARRGGBB}), the same layout {@link Color#getRGB()} uses.
+ */
 public class SimplePng {
-    private static final Logger logger = LoggerFactory.getLogger(SimplePng.class);
     private int height;
     private int width;
-    private byte[] imageData;
-    private byte[] alphaChannel;
+    private int[] pixels;
 
     // Constructor
     public SimplePng(int width, int height) {
         this.width = width;
         this.height = height;
 
-        this.imageData = new byte[width * height * 4];
-        this.alphaChannel = new byte[width * height];
+        this.pixels = new int[width * height];
     }
 
     @Override
@@ -28,8 +27,7 @@ public class SimplePng {
         return "SimplePng{" +
                 "height=" + height +
                 ", width=" + width +
-                ", imageData=" + imageData.length +
-                ", alphaChannel=" + alphaChannel.length +
+                ", pixels=" + pixels.length +
                 '}';
     }
 
@@ -40,15 +38,13 @@ public class SimplePng {
         SimplePng simplePng = (SimplePng) o;
         return height == simplePng.height &&
                 width == simplePng.width &&
-                Arrays.equals(imageData, simplePng.imageData) &&
-                Arrays.equals(alphaChannel, simplePng.alphaChannel);
+                Arrays.equals(pixels, simplePng.pixels);
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hash(height, width);
-        result = 31 * result + Arrays.hashCode(imageData);
-        result = 31 * result + Arrays.hashCode(alphaChannel);
+        result = 31 * result + Arrays.hashCode(pixels);
         return result;
     }
 
@@ -65,60 +61,116 @@ public class SimplePng {
      *              255 = opaque
      */
     public void writeColor(int x, int y, int red, int green, int blue, int alpha) {
+        setArgb(x, y, pack(red, green, blue, alpha));
+    }
+
+    /**
+     * @see #writeColor(int, int, int, int, int, int)
+     */
+    public void writeColor(int x, int y, Color color) {
+        setArgb(x, y, color.getRGB());
+    }
+
+    /**
+     * Writes a pixel as packed ARGB value. Pixels outside the image are ignored, callers drawing shapes are expected to
+     * clip them to the image beforehand.
+     */
+    public void setArgb(int x, int y, int argb) {
         if (x < 0 || y < 0 || x >= width || y >= height) {
-            logger.warn("Attempted to draw out of bounds [{}|{}] for image of size [{}|{}]", x, y, width, height);
             return;
         }
+        pixels[y * width + x] = argb;
+    }
 
-        int index = (y * width + x) * 4; // 4 bytes per pixel (RGBA)
-        imageData[index] = (byte) red;
-        imageData[index + 1] = (byte) green;
-        imageData[index + 2] = (byte) blue;
-        imageData[index + 3] = (byte) alpha;
+    /**
+     * Fills a horizontal run of pixels, clipped to the image.
+     *
+     * @param x0 first pixel of the span (inclusive)
+     * @param x1 end of the span (exclusive)
+     */
+    public void fillSpan(int y, int x0, int x1, int argb) {
+        if (y < 0 || y >= height) {
+            return;
+        }
+        x0 = Math.max(x0, 0);
+        x1 = Math.min(x1, width);
+        if (x0 < x1) {
+            int rowStart = y * width;
+            PixelKernels.get().fill(pixels, rowStart + x0, rowStart + x1, argb);
+        }
+    }
 
-        // Store alpha channel data
-        alphaChannel[y * width + x] = (byte) alpha;
+    /**
+     * Fills a rectangle, clipped to the image.
+     *
+     * @param x      left edge (inclusive)
+     * @param y      top edge (inclusive)
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     */
+    public void fillRect(int x, int y, int width, int height, int argb) {
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = (int) Math.min((long) x + width, this.width);
+        int y1 = (int) Math.min((long) y + height, this.height);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        PixelKernels kernels = PixelKernels.get();
+        if (x0 == 0 && x1 == this.width) {
+            //full rows are contiguous in memory
+            kernels.fill(pixels, y0 * this.width, y1 * this.width, argb);
+            return;
+        }
+        for (int row = y0; row < y1; row++) {
+            int rowStart = row * this.width;
+            kernels.fill(pixels, rowStart + x0, rowStart + x1, argb);
+        }
     }
 
     /**
-     * @see #writeColor(int, int, int, int, int, int)
+     * Sets every pixel of the image to the same value.
      */
-    public void writeColor(int x, int y, Color color) {
-        writeColor(x, y, color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+    public void fill(int argb) {
+        PixelKernels.get().fill(pixels, 0, pixels.length, argb);
     }
 
-    // Read a color from a specific position
-    public int[] readColor(int x, int y) {
+    /**
+     * Reads a pixel as packed ARGB value, without allocating.
+     */
+    public int getArgb(int x, int y) {
         if (x < 0 || y < 0 || x >= width || y >= height) {
             throw new IllegalArgumentException("Coordinates out of bounds");
         }
-
-        int index = (y * width + x) * 4;
-        int red = imageData[index] & 0xFF;
-        int green = imageData[index + 1] & 0xFF;
-        int blue = imageData[index + 2] & 0xFF;
-        int alpha = imageData[index + 3] & 0xFF;
-
-        return new int[]{red, green, blue, alpha};
+        return pixels[y * width + x];
     }
 
-    // Check if the image has an alpha channel
-    boolean hasAlphaChannel() {
-        for (byte pixel : alphaChannel) {
-            if (pixel != (byte) 255) {
-                return true;
-            }
+    /**
+     * Blends a color over the pixel that is already present, see {@link Composite#SRC_OVER}.
+     * Pixels outside the image are ignored.
+     *
+     * @param alpha The Alpha value of the color (0-255), for anti-aliasing this already includes the pixel coverage.
+     * @see #writeColor(int, int, int, int, int, int)
+     */
+    public void blendColor(int x, int y, int red, int green, int blue, int alpha) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
         }
-        return false;
+        int index = y * width + x;
+        pixels[index] = Composite.SRC_OVER.blend(pack(red, green, blue, Math.max(0, Math.min(255, alpha))), pixels[index]);
     }
 
-    // Get the alpha channel data
-    public byte[] getAlphaChannel() {
-        return alphaChannel;
+    /**
+     * @return a new int[4] with RGBA values
+     * @see #getArgb(int, int)
+     */
+    public int[] readColor(int x, int y) {
+        int argb = getArgb(x, y);
+        return new int[]{(argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, argb >>> 24};
     }
 
-    void setAlphaChannel(byte[] alphaChannel) {
-        this.alphaChannel = alphaChannel;
+    private static int pack(int red, int green, int blue, int alpha) {
+        return (alpha & 0xFF) << 24 | (red & 0xFF) << 16 | (green & 0xFF) << 8 | (blue & 0xFF);
     }
 
     // Getters and Setters
@@ -130,17 +182,34 @@ public class SimplePng {
         return height;
     }
 
+    /**
+     * @return the backing array of packed ARGB pixels, row by row. Changes to it are visible in the image.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return a copy of the image as RGBA bytes, row by row
+     */
     public byte[] getImageData() {
+        byte[] imageData = new byte[pixels.length * 4];
+        PixelKernels.get().argbToRgba(pixels, 0, imageData, 0, pixels.length);
         return imageData;
     }
 
-    void setImageData(byte[] imageData) {
-        this.imageData = imageData;
+    /**
+     * Writes one row as RGBA bytes.
+     *
+     * @param out    receives {@code width * 4} bytes
+     * @param offset first index to write to
+     */
+    void getRowRgba(int row, byte[] out, int offset) {
+        PixelKernels.get().argbToRgba(pixels, row * width, out, offset, width);
     }
 
     public void override(SimplePng other) {
-        this.imageData = other.imageData;
-        this.alphaChannel = other.alphaChannel;
+        this.pixels = other.pixels;
         this.height = other.height;
         this.width = other.width;
     }
@@ -1,25 +1,76 @@
 package org.kurodev.kimage.kimage.img;
 
-import org.kurodev.kimage.kimage.util.DeflateCompression;
 import org.kurodev.kimage.kimage.draw.DrawableImage;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
+/**
+ * Decodes PNG images of every standard color type and bit depth, interlaced or not, into a {@link SimplePng}.
+ * <p>
+ * The file is read chunk by chunk. The data of all IDAT chunks is fed into a single {@link Inflater} as it arrives,
+ * every completed scanline is unfiltered and written into the image right away.
+ * Besides the image only the current chunk and two scanlines are held in memory.
+ * The CRC of every chunk is checked before the chunk is handled.
+ */
 public class SimplePngDecoder {
+    private static final int COLOR_TYPE_GRAYSCALE = 0;
+    private static final int COLOR_TYPE_TRUECOLOR = 2;
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int COLOR_TYPE_GRAYSCALE_ALPHA = 4;
+    private static final int COLOR_TYPE_TRUECOLOR_ALPHA = 6;
+    /**
+     * Adam7 passes: first column, first row, column step and row step
+     */
+    private static final int[][] ADAM7 = {
+            {0, 0, 8, 8}, {4, 0, 8, 8}, {0, 4, 4, 8}, {2, 0, 4, 4}, {0, 2, 2, 4}, {1, 0, 2, 2}, {0, 1, 1, 2}
+    };
+    private static final int[][] NOT_INTERLACED = {{0, 0, 1, 1}};
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', (byte) 0xd, (byte) 0xa, (byte) 0x1a, (byte) 0xa};
     private final Map<String, byte[]> otherChunkData = new HashMap<>();
 
     private final Map<String, ChunkHandler> chunkHandlers = new HashMap<>();
+    private final CRC32 crc = new CRC32();
     private SimplePng pngHandler;
+    private int bitDepth;
+    private int colorType;
+    private int interlaceMethod;
+    private int[] palette;
+    /**
+     * tRNS of grayscale and truecolor images: the sample values of the fully transparent color
+     */
+    private int[] transparentColor;
+    private Inflater inflater;
+    private int[][] passes;
+    private int pass;
+    private int passWidth;
+    private int passHeight;
+    private int passRow;
+    private int bitsPerPixel;
+    private int bytesPerPixel;
+    /**
+     * length of one scanline of the current pass, including the filter type byte
+     */
+    private int rowLength;
+    private int rowFill;
+    private byte[] currentRow;
+    private byte[] priorRow;
+    private boolean imageComplete;
 
     public SimplePngDecoder() {
         registerChunkHandler("IHDR", this::handleIHDR);
+        registerChunkHandler("PLTE", this::handlePLTE);
         registerChunkHandler("IDAT", this::handleIDAT);
-        registerChunkHandler("IEND", data -> {
-        });
+        registerChunkHandler("IEND", data -> finishImageData());
         registerChunkHandler("tRNS", this::handleTRNS);
     }
 
@@ -28,72 +79,279 @@ public class SimplePngDecoder {
     }
 
     public void decodePng(byte[] pngData) throws IOException {
-        ByteArrayInputStream stream = new ByteArrayInputStream(pngData);
-
-        // Skip PNG signature (8 bytes)
-        stream.skip(8); //TODO: validate in the future
-
-        while (stream.available() > 0) {
-            // Read chunk length (4 bytes)
-            byte[] lengthBytes = new byte[4];
-            stream.read(lengthBytes);
-            int length = ByteBuffer.wrap(lengthBytes).getInt();
-
-            // Read chunk type (4 bytes)
-            byte[] typeBytes = new byte[4];
-            stream.read(typeBytes);
-            String type = new String(typeBytes);
-
-            // Read chunk data
-            byte[] data = new byte[length];
-            stream.read(data);
-
-            // Skip CRC (4 bytes)
-            stream.skip(4); //TODO: validate in the future
-
-            // Handle the chunk
-            ChunkHandler handler = chunkHandlers.get(type);
-            if (handler != null) {
-                handler.handleChunk(data);
-            } else {
-                otherChunkData.put(type, data);
+        decodePng(new ByteArrayInputStream(pngData));
+    }
+
+    /**
+     * @see #decodePng(InputStream)
+     */
+    public void decodePng(ReadableByteChannel channel) throws IOException {
+        decodePng(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Reads a PNG file up to and including its IEND chunk. The stream is not closed.
+     */
+    public void decodePng(InputStream in) throws IOException {
+        DataInputStream stream = new DataInputStream(in);
+        otherChunkData.clear();
+        pngHandler = null;
+        palette = null;
+        transparentColor = null;
+        imageComplete = false;
+        try {
+            byte[] signature = new byte[SIGNATURE.length];
+            stream.readFully(signature);
+            if (!Arrays.equals(signature, SIGNATURE)) {
+                throw new IOException("Not a PNG file");
+            }
+
+            String type;
+            do {
+                int length = stream.readInt();
+                byte[] typeBytes = new byte[4];
+                stream.readFully(typeBytes);
+                type = new String(typeBytes, StandardCharsets.US_ASCII);
+
+                byte[] data = new byte[length];
+                stream.readFully(data);
+
+                crc.reset();
+                crc.update(typeBytes);
+                crc.update(data);
+                if (stream.readInt() != (int) crc.getValue()) {
+                    throw new IOException("CRC mismatch in " + type + " chunk");
+                }
+
+                // Handle the chunk
+                ChunkHandler handler = chunkHandlers.get(type);
+                if (handler != null) {
+                    handler.handleChunk(data);
+                } else {
+                    otherChunkData.put(type, data);
+                }
+            } while (!type.equals("IEND"));
+        } catch (EOFException e) {
+            throw new IOException("PNG file ended before its IEND chunk", e);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
             }
         }
     }
 
-    private void handleIHDR(byte[] data) {
+    private void handleIHDR(byte[] data) throws IOException {
         ByteBuffer buffer = ByteBuffer.wrap(data);
         int width = buffer.getInt();
         int height = buffer.getInt();
+        bitDepth = buffer.get() & 0xFF;
+        colorType = buffer.get() & 0xFF;
+        int compressionMethod = buffer.get() & 0xFF;
+        int filterMethod = buffer.get() & 0xFF;
+        interlaceMethod = buffer.get() & 0xFF;
+        if (compressionMethod != 0 || filterMethod != 0 || interlaceMethod > 1) {
+            throw new IOException("Unsupported PNG compression, filter or interlace method");
+        }
+        if (channels(colorType) == 0) {
+            throw new IOException("Unsupported PNG color type: " + colorType);
+        }
         pngHandler = new SimplePng(width, height);
     }
 
-    private void handleIDAT(byte[] data) {
+    private void handlePLTE(byte[] data) {
+        palette = new int[data.length / 3];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = 0xFF000000 | (data[i * 3] & 0xFF) << 16 | (data[i * 3 + 1] & 0xFF) << 8 | (data[i * 3 + 2] & 0xFF);
+        }
+    }
+
+    private void handleTRNS(byte[] data) {
+        switch (colorType) {
+            case COLOR_TYPE_INDEXED -> {
+                for (int i = 0; i < data.length && palette != null && i < palette.length; i++) {
+                    palette[i] = (palette[i] & 0x00FFFFFF) | (data[i] & 0xFF) << 24;
+                }
+            }
+            case COLOR_TYPE_GRAYSCALE, COLOR_TYPE_TRUECOLOR -> {
+                transparentColor = new int[data.length / 2];
+                for (int i = 0; i < transparentColor.length; i++) {
+                    transparentColor[i] = (data[i * 2] & 0xFF) << 8 | (data[i * 2 + 1] & 0xFF);
+                }
+            }
+            default -> {
+                // Images with an alpha channel carry their transparency in the pixels and must not have a tRNS chunk.
+                // Older versions of the encoder wrote one anyway, it is dropped so it does not get written back as custom chunk.
+            }
+        }
+    }
+
+    private static int channels(int colorType) {
+        return switch (colorType) {
+            case COLOR_TYPE_GRAYSCALE, COLOR_TYPE_INDEXED -> 1;
+            case COLOR_TYPE_TRUECOLOR -> 3;
+            case COLOR_TYPE_GRAYSCALE_ALPHA -> 2;
+            case COLOR_TYPE_TRUECOLOR_ALPHA -> 4;
+            default -> 0;
+        };
+    }
+
+    private void handleIDAT(byte[] data) throws IOException {
+        if (pngHandler == null) {
+            throw new IOException("IDAT chunk before IHDR chunk");
+        }
+        if (inflater == null) {
+            startImageData();
+        }
+        inflater.setInput(data);
         try {
-            byte[] decompressed = DeflateCompression.decompress(data);
+            while (!imageComplete) {
+                int count = inflater.inflate(currentRow, rowFill, rowLength - rowFill);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new IOException("Image data requires a preset dictionary");
+                    }
+                    if (inflater.needsInput() || inflater.finished()) {
+                        return; //wait for the next IDAT chunk
+                    }
+                }
+                rowFill += count;
+                if (rowFill == rowLength) {
+                    decodeRow();
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Failed to decompress image data", e);
+        }
+    }
 
-            // Process decompressed data to remove filter bytes and store in SimplePng
-            int bytesPerRow = pngHandler.getWidth() * 4; // 4 bytes per pixel (RGBA)
-            byte[] imageData = new byte[pngHandler.getWidth() * pngHandler.getHeight() * 4];
-            int destPos = 0;
+    private void startImageData() {
+        inflater = new Inflater();
+        bitsPerPixel = channels(colorType) * bitDepth;
+        bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+        passes = interlaceMethod == 1 ? ADAM7 : NOT_INTERLACED;
+        //the first pass of an image that is not interlaced is the widest one
+        int maxRowLength = (pngHandler.getWidth() * bitsPerPixel + 7) / 8 + 1;
+        currentRow = new byte[maxRowLength];
+        priorRow = new byte[maxRowLength];
+        pass = -1;
+        nextPass();
+    }
 
-            for (int row = 0; row < pngHandler.getHeight(); row++) {
-                int srcPos = row * (bytesPerRow + 1); // +1 for the filter byte
-                System.arraycopy(decompressed, srcPos + 1, imageData, destPos, bytesPerRow);
-                destPos += bytesPerRow;
+    /**
+     * Moves on to the next pass that contains at least one pixel. Empty passes have no scanlines at all.
+     */
+    private void nextPass() {
+        do {
+            pass++;
+            if (pass == passes.length) {
+                imageComplete = true;
+                return;
             }
+            int[] current = passes[pass];
+            passWidth = (pngHandler.getWidth() - current[0] + current[2] - 1) / current[2];
+            passHeight = (pngHandler.getHeight() - current[1] + current[3] - 1) / current[3];
+        } while (passWidth <= 0 || passHeight <= 0);
+        rowLength = (passWidth * bitsPerPixel + 7) / 8 + 1;
+        passRow = 0;
+        rowFill = 0;
+    }
 
-            pngHandler.setImageData(imageData);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Reverses the filter of the completed scanline in {@link #currentRow} and writes its pixels into the image.
+     */
+    private void decodeRow() {
+        int bytesPerRow = rowLength - 1;
+        PngFilter filter = PngFilter.ofType(currentRow[0] & 0xFF);
+        filter.unfilter(currentRow, 1, passRow == 0 ? null : priorRow, 1, bytesPerRow, bytesPerPixel);
+        int[] current = passes[pass];
+        int y = current[1] + passRow * current[3];
+        for (int column = 0; column < passWidth; column++) {
+            int x = current[0] + column * current[2];
+            pngHandler.setArgb(x, y, readPixel(currentRow, 1, column));
+        }
+        byte[] tmp = priorRow;
+        priorRow = currentRow;
+        currentRow = tmp;
+        rowFill = 0;
+        passRow++;
+        if (passRow == passHeight) {
+            nextPass();
         }
     }
 
-    private void handleTRNS(byte[] data) {
-        // This chunk contains transparency information, such as a transparency palette or alpha channel
-        byte[] alphaData = new byte[data.length];
-        System.arraycopy(data, 0, alphaData, 0, data.length);
-        pngHandler.setAlphaChannel(alphaData);
+    private void finishImageData() throws IOException {
+        if (pngHandler == null) {
+            throw new IOException("PNG file without IHDR chunk");
+        }
+        if (!imageComplete) {
+            throw new IOException("Image data is shorter than the image size requires");
+        }
+    }
+
+    /**
+     * @return the pixel at the given index of an unfiltered scanline as ARGB
+     */
+    private int readPixel(byte[] line, int offset, int index) {
+        switch (colorType) {
+            case COLOR_TYPE_INDEXED -> {
+                int paletteIndex = sample(line, offset, index);
+                return palette != null && paletteIndex < palette.length ? palette[paletteIndex] : 0xFF000000;
+            }
+            case COLOR_TYPE_GRAYSCALE -> {
+                int gray = sample(line, offset, index);
+                int alpha = transparentColor != null && transparentColor[0] == gray ? 0 : 255;
+                int value = to8Bit(gray);
+                return alpha << 24 | value << 16 | value << 8 | value;
+            }
+            case COLOR_TYPE_TRUECOLOR -> {
+                int red = sample(line, offset, index * 3);
+                int green = sample(line, offset, index * 3 + 1);
+                int blue = sample(line, offset, index * 3 + 2);
+                int alpha = transparentColor != null
+                        && transparentColor[0] == red && transparentColor[1] == green && transparentColor[2] == blue ? 0 : 255;
+                return alpha << 24 | to8Bit(red) << 16 | to8Bit(green) << 8 | to8Bit(blue);
+            }
+            case COLOR_TYPE_GRAYSCALE_ALPHA -> {
+                int value = to8Bit(sample(line, offset, index * 2));
+                int alpha = to8Bit(sample(line, offset, index * 2 + 1));
+                return alpha << 24 | value << 16 | value << 8 | value;
+            }
+            default -> {
+                return to8Bit(sample(line, offset, index * 4 + 3)) << 24
+                        | to8Bit(sample(line, offset, index * 4)) << 16
+                        | to8Bit(sample(line, offset, index * 4 + 1)) << 8
+                        | to8Bit(sample(line, offset, index * 4 + 2));
+            }
+        }
+    }
+
+    /**
+     * @param index index of the sample within the scanline, samples are {@link #bitDepth} bits wide
+     * @return the raw sample value
+     */
+    private int sample(byte[] line, int offset, int index) {
+        switch (bitDepth) {
+            case 8 -> {
+                return line[offset + index] & 0xFF;
+            }
+            case 16 -> {
+                return (line[offset + index * 2] & 0xFF) << 8 | (line[offset + index * 2 + 1] & 0xFF);
+            }
+            default -> {
+                int bit = index * bitDepth;
+                int shift = 8 - bitDepth - (bit & 7);
+                return (line[offset + (bit >> 3)] >> shift) & ((1 << bitDepth) - 1);
+            }
+        }
+    }
+
+    private int to8Bit(int sample) {
+        return switch (bitDepth) {
+            case 8 -> sample;
+            case 16 -> sample >> 8;
+            default -> sample * 255 / ((1 << bitDepth) - 1);
+        };
     }
 
     private void registerChunkHandler(String chunkType, ChunkHandler handler) {
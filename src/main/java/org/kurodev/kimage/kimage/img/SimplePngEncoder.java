@@ -1,23 +1,39 @@
 package org.kurodev.kimage.kimage.img;
 
-import org.kurodev.kimage.kimage.util.DeflateCompression;
+import org.kurodev.kimage.kimage.util.ParallelDeflater;
 import org.kurodev.kimage.kimage.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.zip.CRC32;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 public class SimplePngEncoder {
     private static final Logger logger = LoggerFactory.getLogger(SimplePngEncoder.class);
 
     private final Map<String, byte[]> customChunks;
     private final SimplePng simplePng;
+    /**
+     * Maximum amount of compressed data per IDAT chunk
+     */
+    public static final int DEFAULT_IDAT_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFLATE_BUFFER_SIZE = 16 * 1024;
+    private PngFilter filter;
+    private int idatChunkSize = DEFAULT_IDAT_CHUNK_SIZE;
+    private Executor executor = ForkJoinPool.commonPool();
 
     public SimplePngEncoder(SimplePng simplePng, Map<String, byte[]> customChunks) {
         this.simplePng = simplePng;
@@ -28,6 +44,35 @@ public class SimplePngEncoder {
         this(simplePng, new HashMap<>());
     }
 
+    /**
+     * @param filter the filter to apply to every scanline,
+     *               or {@code null} to pick the best filter for each scanline individually (the default).
+     */
+    public SimplePngEncoder setFilter(PngFilter filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * @param executor runs filtering and compression of large images in parallel, the common fork join pool by default
+     */
+    public SimplePngEncoder setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        return this;
+    }
+
+    /**
+     * @param idatChunkSize maximum amount of compressed image data per IDAT chunk,
+     *                      this is also the size of the buffer used while streaming.
+     */
+    public SimplePngEncoder setIdatChunkSize(int idatChunkSize) {
+        if (idatChunkSize <= 0) {
+            throw new IllegalArgumentException("idatChunkSize must be positive");
+        }
+        this.idatChunkSize = idatChunkSize;
+        return this;
+    }
+
     public void addCustomChunk(String type, byte[] data) {
         customChunks.put(type, data);
     }
@@ -36,11 +81,60 @@ public class SimplePngEncoder {
         customChunks.put(type, data.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Encodes the entire image in memory. Filtering and compression of large images run in parallel on the executor.
+     *
+     * @see #encode(OutputStream) to encode large images with little memory
+     */
     public byte[] encodeToPng() throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] idatData = processImageData();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(idatData.length / 4 + 1024);
+        writeHeader(baos);
+        try (ChunkOutputStream idat = new ChunkOutputStream(baos, "IDAT", idatChunkSize)) {
+            new ParallelDeflater(executor).compress(idatData, idat);
+        }
+        logger.debug("Compressed image data from {} to {}",
+                Util.bytesToString(idatData.length),
+                Util.bytesToString(baos.size()));
+        writeChunk(baos, "IEND", new byte[]{});
+        return baos.toByteArray();
+    }
+
+    /**
+     * Streams the image to {@code out} one scanline at a time, on the calling thread.
+     * Besides the image itself only a few rows and one IDAT chunk are held in memory.
+     * The stream is flushed but not closed.
+     */
+    public void encode(OutputStream out) throws IOException {
+        writeHeader(out);
+        int bytesPerRow = simplePng.getWidth() * 4;
+        byte[] row = new byte[bytesPerRow + 1];
+        ScanlineFilter scanlineFilter = new ScanlineFilter(0);
+        ChunkOutputStream idat = new ChunkOutputStream(out, "IDAT", idatChunkSize);
+        Deflater deflater = new Deflater();
+        try (DeflaterOutputStream compressed = new DeflaterOutputStream(idat, deflater, DEFLATE_BUFFER_SIZE)) {
+            for (int y = 0; y < simplePng.getHeight(); y++) {
+                scanlineFilter.filterNext(y, row, 0);
+                compressed.write(row);
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(out, "IEND", new byte[]{});
+        out.flush();
+    }
+
+    /**
+     * @see #encode(OutputStream)
+     */
+    public void encode(WritableByteChannel channel) throws IOException {
+        OutputStream out = Channels.newOutputStream(channel);
+        encode(new BufferedOutputStream(out, DEFLATE_BUFFER_SIZE));
+    }
 
+    private void writeHeader(OutputStream out) throws IOException {
         // Write PNG signature
-        baos.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', (byte) 0xd, (byte) 0xa, (byte) 0x1a, (byte) 0xa});
+        out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', (byte) 0xd, (byte) 0xa, (byte) 0x1a, (byte) 0xa});
 
         // Write IHDR chunk
         ByteBuffer ihdr = ByteBuffer.allocate(13);
@@ -51,58 +145,116 @@ public class SimplePngEncoder {
         ihdr.put((byte) 0); // Compression method
         ihdr.put((byte) 0); // Filter method
         ihdr.put((byte) 0); // Interlace method
-        writeChunk(baos, "IHDR", ihdr.array());
-
-        // Write tRNS chunk if alpha channel is present
-        if (simplePng.hasAlphaChannel()) {
-            byte[] alphaData = simplePng.getAlphaChannel();
-            writeChunk(baos, "tRNS", alphaData);
-        }
+        writeChunk(out, "IHDR", ihdr.array());
 
         // Write custom chunks
         for (Map.Entry<String, byte[]> entry : customChunks.entrySet()) {
-            writeChunk(baos, entry.getKey(), entry.getValue());
+            writeChunk(out, entry.getKey(), entry.getValue());
         }
-
-        // Process and Write IDAT chunk (uncompressed image data with filter bytes)
-        byte[] idatData = processImageData(simplePng.getImageData());
-        byte[] compressedIdatData = DeflateCompression.compress(idatData);
-        writeChunk(baos, "IDAT", compressedIdatData);
-        logger.debug("Compressed image data from {} to {}",
-                Util.bytesToString(idatData.length),
-                Util.bytesToString(compressedIdatData.length));
-
-        // Write IEND chunk
-        writeChunk(baos, "IEND", new byte[]{});
-
-        return baos.toByteArray();
     }
 
-    private byte[] processImageData(byte[] imageData) {
-        ByteArrayOutputStream processedData = new ByteArrayOutputStream();
+    /**
+     * Filters every scanline and prefixes it with its filter type.
+     * Bands of rows are filtered concurrently, each band reads the unfiltered row above it straight from the image.
+     */
+    private byte[] processImageData() throws IOException {
         int bytesPerRow = simplePng.getWidth() * 4; // 4 bytes per pixel (RGBA)
-
-        for (int row = 0; row < simplePng.getHeight(); row++) {
-            processedData.write(0); // Filter type byte for this scanline (None)
-            processedData.write(imageData, row * bytesPerRow, bytesPerRow);
+        int height = simplePng.getHeight();
+        byte[] processedData = new byte[(bytesPerRow + 1) * height];
+        int rowsPerBand = Math.max(1, ParallelDeflater.DEFAULT_BLOCK_SIZE / Math.max(1, bytesPerRow));
+        if (rowsPerBand >= height) {
+            filterRows(0, height, processedData);
+            return processedData;
+        }
+        List<CompletableFuture<Void>> bands = new ArrayList<>();
+        for (int firstRow = 0; firstRow < height; firstRow += rowsPerBand) {
+            int start = firstRow;
+            int end = Math.min(height, firstRow + rowsPerBand);
+            bands.add(CompletableFuture.runAsync(() -> filterRows(start, end, processedData), executor));
         }
+        try {
+            CompletableFuture.allOf(bands.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to filter image data", e.getCause());
+        }
+        return processedData;
+    }
 
-        return processedData.toByteArray();
+    /**
+     * @param firstRow first row to filter (inclusive)
+     * @param lastRow  last row to filter (exclusive)
+     * @param out      receives every row at its final position, preceded by the filter type
+     */
+    private void filterRows(int firstRow, int lastRow, byte[] out) {
+        int bytesPerRow = simplePng.getWidth() * 4;
+        ScanlineFilter scanlineFilter = new ScanlineFilter(firstRow);
+        for (int row = firstRow; row < lastRow; row++) {
+            scanlineFilter.filterNext(row, out, row * (bytesPerRow + 1));
+        }
     }
 
-    private void writeChunk(ByteArrayOutputStream stream, String type, byte[] data) throws IOException {
+    private void writeChunk(OutputStream stream, String type, byte[] data) throws IOException {
         logger.debug("Writing chunk: {}, Length: {}", type, Util.bytesToString(data.length));
+        ChunkOutputStream.writeChunk(stream, type.getBytes(StandardCharsets.US_ASCII), data, 0, data.length);
+    }
 
-        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + data.length + 4);
-        buffer.putInt(data.length);
-        buffer.put(type.getBytes());
-        buffer.put(data);
+    /**
+     * Filters consecutive scanlines, keeping the unfiltered row above as reference.
+     * Without a fixed filter, every row is filtered with all filters and the one with the lowest
+     * sum of absolute differences is kept.
+     */
+    private class ScanlineFilter {
+        private static final int BPP = 4; // 4 bytes per pixel (RGBA)
+        private final int bytesPerRow = simplePng.getWidth() * BPP;
+        private byte[] current = new byte[bytesPerRow];
+        private byte[] prior;
+        private byte[] candidate;
+        private byte[] best;
 
-        CRC32 crc = new CRC32();
-        crc.update(type.getBytes());
-        crc.update(data);
-        buffer.putInt((int) crc.getValue());
+        /**
+         * @param firstRow the first row that is going to be filtered
+         */
+        ScanlineFilter(int firstRow) {
+            if (firstRow > 0) {
+                prior = new byte[bytesPerRow];
+                simplePng.getRowRgba(firstRow - 1, prior, 0);
+            }
+            if (filter == null) {
+                candidate = new byte[bytesPerRow];
+                best = new byte[bytesPerRow];
+            }
+        }
 
-        stream.write(buffer.array());
+        /**
+         * @param row    the row to filter, must directly follow the previously filtered row
+         * @param out    receives the filter type followed by the filtered row
+         * @param offset index of the filter type byte in {@code out}
+         */
+        void filterNext(int row, byte[] out, int offset) {
+            simplePng.getRowRgba(row, current, 0);
+            if (filter != null) {
+                out[offset] = (byte) filter.getType();
+                filter.filter(current, 0, prior, 0, bytesPerRow, BPP, out, offset + 1);
+            } else {
+                PngFilter bestFilter = null;
+                long bestScore = Long.MAX_VALUE;
+                for (PngFilter candidateFilter : PngFilter.values()) {
+                    long score = candidateFilter.filterAndScore(current, 0, prior, 0, bytesPerRow, BPP, candidate, 0);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestFilter = candidateFilter;
+                        byte[] tmp = best;
+                        best = candidate;
+                        candidate = tmp;
+                    }
+                }
+                out[offset] = (byte) bestFilter.getType();
+                System.arraycopy(best, 0, out, offset + 1, bytesPerRow);
+            }
+            //the current row becomes the prior row, the old prior row is reused as buffer
+            byte[] tmp = prior == null ? new byte[bytesPerRow] : prior;
+            prior = current;
+            current = tmp;
+        }
     }
 }
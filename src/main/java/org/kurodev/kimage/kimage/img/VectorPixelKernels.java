@@ -0,0 +1,113 @@
+package org.kurodev.kimage.kimage.img;
+
+import jdk.incubator.vector.*;
+
+/**
+ * Kernels on the Vector API, processing as many pixels at once as the widest vector registers of the CPU hold.
+ * <p>
+ * Only loaded by {@link KernelSelection} when {@code jdk.incubator.vector} is part of the JVM. Needs vectors of at
+ * least 256 bits, so a vector of coverage bytes can be widened to a full vector of ints in one step. The end of a run
+ * that does not fill a whole vector is handed to the {@link ScalarPixelKernels}, as is any part of a mask blend whose
+ * pixels are not opaque, where source over needs a division per channel. Division by 255 is done with the
+ * {@code (x + 1 + (x >>> 8)) >>> 8} identity, which is exact for every value that can occur here, so the results are
+ * the same as those of the scalar kernels down to the last bit.
+ */
+final class VectorPixelKernels implements PixelKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> COVERAGE =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+    private static final int OPAQUE = 0xFF000000;
+    private final ScalarPixelKernels scalar = ScalarPixelKernels.INSTANCE;
+
+    VectorPixelKernels() {
+        if (INTS.vectorBitSize() < 256) {
+            throw new UnsupportedOperationException(INTS.vectorBitSize() + " bit vectors are too narrow");
+        }
+    }
+
+    @Override
+    public void fill(int[] pixels, int from, int to, int argb) {
+        //Arrays.fill is an intrinsic that already uses the widest stores available, broadcasting by hand is no faster
+        scalar.fill(pixels, from, to, argb);
+    }
+
+    @Override
+    public void srcOverMask(int[] pixels, int offset, byte[] coverage, int coverageOffset, int length, int argb) {
+        int srcAlpha = argb >>> 24;
+        if (srcAlpha == 0) {
+            return;
+        }
+        int redBlue = argb & 0xFF00FF;
+        int green = (argb >> 8) & 0xFF;
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector dst = IntVector.fromArray(INTS, pixels, offset + i);
+            if (dst.and(OPAQUE).compare(VectorOperators.NE, OPAQUE).anyTrue()) {
+                scalar.srcOverMask(pixels, offset + i, coverage, coverageOffset + i, INTS.length(), argb);
+                continue;
+            }
+            IntVector covered = (IntVector) ByteVector.fromArray(COVERAGE, coverage, coverageOffset + i)
+                    .convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector alpha = div255(covered.and(0xFF).mul(srcAlpha));
+            IntVector remaining = alpha.neg().add(255);
+            //red and blue are blended together in the two halves of every lane, neither half exceeds 255 * 255
+            IntVector outRedBlue = div255Pairs(dst.and(0xFF00FF).mul(remaining).add(alpha.mul(redBlue)));
+            IntVector outGreen = div255(dst.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(remaining).add(alpha.mul(green)));
+            outRedBlue.or(outGreen.lanewise(VectorOperators.LSHL, 8))
+                    .or(OPAQUE)
+                    .intoArray(pixels, offset + i);
+        }
+        scalar.srcOverMask(pixels, offset + i, coverage, coverageOffset + i, length - i, argb);
+    }
+
+    @Override
+    public void premultiply(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector argb = IntVector.fromArray(INTS, src, srcOffset + i);
+            IntVector alpha = argb.lanewise(VectorOperators.LSHR, 24);
+            IntVector red = div255(argb.lanewise(VectorOperators.LSHR, 16).and(0xFF).mul(alpha));
+            IntVector green = div255(argb.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(alpha));
+            IntVector blue = div255(argb.and(0xFF).mul(alpha));
+            argb.and(OPAQUE)
+                    .or(red.lanewise(VectorOperators.LSHL, 16))
+                    .or(green.lanewise(VectorOperators.LSHL, 8))
+                    .or(blue)
+                    .intoArray(dst, dstOffset + i);
+        }
+        scalar.premultiply(src, srcOffset + i, dst, dstOffset + i, length - i);
+    }
+
+    @Override
+    public void argbToRgba(int[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector argb = IntVector.fromArray(INTS, src, srcOffset + i);
+            //reinterpreting lays every lane out in little-endian order, so ABGR ends up as the bytes R, G, B, A
+            argb.and(0xFF00FF00)
+                    .or(argb.lanewise(VectorOperators.LSHR, 16).and(0xFF))
+                    .or(argb.and(0xFF).lanewise(VectorOperators.LSHL, 16))
+                    .reinterpretAsBytes()
+                    .intoArray(dst, dstOffset + i * 4);
+        }
+        scalar.argbToRgba(src, srcOffset + i, dst, dstOffset + i * 4, length - i);
+    }
+
+    /**
+     * {@code (x + 127) / 255} rounded like the scalar kernels, exact for {@code x <= 255 * 255}.
+     */
+    private static IntVector div255(IntVector value) {
+        IntVector rounded = value.add(127);
+        return rounded.add(rounded.lanewise(VectorOperators.LSHR, 8)).add(1).lanewise(VectorOperators.LSHR, 8);
+    }
+
+    /**
+     * {@link #div255(IntVector)} of the upper and lower 16 bits of every lane at once, the results end up in bits 16-23
+     * and 0-7. Neither half carries into the other, since {@code x + 127 + (x + 127 >>> 8) + 1} stays below 65536.
+     */
+    private static IntVector div255Pairs(IntVector value) {
+        IntVector rounded = value.add(0x7F007F);
+        return rounded.add(rounded.lanewise(VectorOperators.LSHR, 8).and(0xFF00FF)).add(0x10001)
+                .lanewise(VectorOperators.LSHR, 8).and(0xFF00FF);
+    }
+}
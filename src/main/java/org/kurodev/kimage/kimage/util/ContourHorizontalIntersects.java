@@ -197,6 +197,11 @@ public abstract class ContourHorizontalIntersects {
 
     /* Public API */
 
+    private static final ThreadLocal<ScanlineRasterizer> RASTERIZER = ThreadLocal.withInitial(ScanlineRasterizer::new);
+
+    /**
+     * Rasterizes the contours once using the non-zero winding rule, the resulting spans can be drawn any number of times.
+     */
     public static ContourHorizontalIntersects makeFromContour(Coordinate[][] contours) {
         if (contours == null || contours.length == 0) {
             return new ContourHorizontalIntersects() {
@@ -205,17 +210,50 @@ public abstract class ContourHorizontalIntersects {
                 }
             };
         } else {
-            var segments = horizontalIntersects(segmentsOfContours(contours)).toList();
-            //var matrix = touchMatrix(segments);
+            ScanlineRasterizer rasterizer = RASTERIZER.get().reset();
+            for (Coordinate[] contour : contours) {
+                if (contour.length == 0) {
+                    continue;
+                }
+                rasterizer.moveTo(contour[0].x(), contour[0].y());
+                for (int i = 1; i < contour.length; i++) {
+                    rasterizer.lineTo(contour[i].x(), contour[i].y());
+                }
+            }
+            SpanList spans = new SpanList();
+            rasterizer.fill(ScanlineRasterizer.FillRule.NON_ZERO, spans);
+            int[] data = spans.toArray();
             return new ContourHorizontalIntersects() {
                 @Override
                 public void drawPixels(Drawable image, int x, int y, Color color) {
-                    for (var segment : segments) {
-                        segment.drawPixels(image, x, y, color);
+                    for (int i = 0; i < data.length; i += 3) {
+                        image.fillSpan(data[i] + y, data[i + 1] + x, data[i + 2] + x, color);
                     }
                 }
             };
         }
     }
 
+    /**
+     * Collects spans as packed (y, xStart, xEnd) triples.
+     */
+    private static class SpanList implements ScanlineRasterizer.SpanConsumer {
+        private int[] data = new int[3 * 64];
+        private int size;
+
+        @Override
+        public void accept(int y, int xStart, int xEnd) {
+            if (size + 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = y;
+            data[size++] = xStart;
+            data[size++] = xEnd;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
 }
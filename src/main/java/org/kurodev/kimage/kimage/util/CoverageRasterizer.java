@@ -0,0 +1,200 @@
+package org.kurodev.kimage.kimage.util;
+
+import java.util.Arrays;
+
+/**
+ * Anti-aliasing polygon filler that computes the exact area each pixel is covered by, in a single pass.
+ * <p>
+ * Every edge adds its signed area contribution to an accumulation buffer, a running sum over each row then yields the
+ * coverage of every pixel. Coverage is accumulated using the non-zero winding rule.
+ * The rasterizer works in its own coordinate space from {@code (0, 0)} to {@code (width, height)},
+ * callers translate their polygon into it and offset the result while drawing.
+ * <p>
+ * Instances are NOT thread safe, use one rasterizer per thread.
+ */
+public class CoverageRasterizer {
+    private float[] accumulation = new float[0];
+    private int width;
+    private int height;
+    /**
+     * Row length of the accumulation buffer. Two more than the width, so contributions right of the last pixel
+     * do not spill into the next row.
+     */
+    private int stride;
+    private float startX, startY, lastX, lastY;
+
+    /**
+     * Clears the accumulation buffer and resizes it to the given area. The buffer is only reallocated when it grows.
+     */
+    public CoverageRasterizer reset(int width, int height) {
+        this.width = Math.max(0, width);
+        this.height = Math.max(0, height);
+        this.stride = this.width + 2;
+        int size = stride * this.height;
+        if (accumulation.length < size) {
+            accumulation = new float[size];
+        } else {
+            Arrays.fill(accumulation, 0, size, 0f);
+        }
+        startX = startY = lastX = lastY = 0;
+        return this;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Starts a new contour, closing the previous one.
+     */
+    public CoverageRasterizer moveTo(float x, float y) {
+        closePath();
+        startX = lastX = x;
+        startY = lastY = y;
+        return this;
+    }
+
+    public CoverageRasterizer lineTo(float x, float y) {
+        line(lastX, lastY, x, y);
+        lastX = x;
+        lastY = y;
+        return this;
+    }
+
+    /**
+     * Connects the last point of the current contour with its first point.
+     */
+    public CoverageRasterizer closePath() {
+        if (lastX != startX || lastY != startY) {
+            line(lastX, lastY, startX, startY);
+        }
+        lastX = startX;
+        lastY = startY;
+        return this;
+    }
+
+    /**
+     * Adds the signed area of a single edge. Parts above or below the area are dropped,
+     * parts left or right of it are projected onto its border.
+     */
+    public void line(float x0, float y0, float x1, float y1) {
+        if (y0 == y1) {
+            return;
+        }
+        float direction = 1;
+        if (y0 > y1) {
+            float tmp = x0;
+            x0 = x1;
+            x1 = tmp;
+            tmp = y0;
+            y0 = y1;
+            y1 = tmp;
+            direction = -1;
+        }
+        float dxdy = (x1 - x0) / (y1 - y0);
+        if (y0 < 0) {
+            x0 -= y0 * dxdy;
+            y0 = 0;
+        }
+        if (y1 > height) {
+            y1 = height;
+        }
+        if (y0 >= y1) {
+            return;
+        }
+        float x = x0;
+        int rowEnd = (int) Math.ceil(y1);
+        for (int y = (int) y0; y < rowEnd; y++) {
+            int lineStart = y * stride;
+            float dy = Math.min(y + 1, y1) - Math.max(y, y0);
+            float xNext = x + dxdy * dy;
+            float d = dy * direction;
+            float xa = clampX(Math.min(x, xNext));
+            float xb = clampX(Math.max(x, xNext));
+            float xaFloor = (float) Math.floor(xa);
+            int xai = (int) xaFloor;
+            float xbCeil = (float) Math.ceil(xb);
+            int xbi = (int) xbCeil;
+            if (xbi <= xai + 1) {
+                //the edge stays within one pixel column on this row
+                float xmf = 0.5f * (xa + xb) - xaFloor;
+                accumulation[lineStart + xai] += d - d * xmf;
+                accumulation[lineStart + xai + 1] += d * xmf;
+            } else {
+                float s = 1 / (xb - xa);
+                float xaf = xa - xaFloor;
+                float a0 = 0.5f * s * (1 - xaf) * (1 - xaf);
+                float xbf = xb - xbCeil + 1;
+                float am = 0.5f * s * xbf * xbf;
+                accumulation[lineStart + xai] += d * a0;
+                if (xbi == xai + 2) {
+                    accumulation[lineStart + xai + 1] += d * (1 - a0 - am);
+                } else {
+                    float a1 = s * (1.5f - xaf);
+                    accumulation[lineStart + xai + 1] += d * (a1 - a0);
+                    for (int xi = xai + 2; xi < xbi - 1; xi++) {
+                        accumulation[lineStart + xi] += d * s;
+                    }
+                    float a2 = a1 + (xbi - xai - 3) * s;
+                    accumulation[lineStart + xbi - 1] += d * (1 - a2 - am);
+                }
+                accumulation[lineStart + xbi] += d * am;
+            }
+            x = xNext;
+        }
+    }
+
+    private float clampX(float x) {
+        return Math.max(0, Math.min(width, x));
+    }
+
+    /**
+     * Sums up the accumulation buffer into a coverage mask.
+     *
+     * @param mask receives {@code width * height} coverage values from 0 (empty) to 255 (fully covered), row by row.
+     */
+    public void accumulate(byte[] mask) {
+        for (int y = 0; y < height; y++) {
+            int lineStart = y * stride;
+            int maskStart = y * width;
+            float sum = 0;
+            for (int x = 0; x < width; x++) {
+                sum += accumulation[lineStart + x];
+                mask[maskStart + x] = (byte) toCoverage(sum);
+            }
+        }
+    }
+
+    /**
+     * Sums up the accumulation buffer and reports every pixel that is at least partially covered.
+     */
+    public void forEachCoverage(CoverageConsumer consumer) {
+        for (int y = 0; y < height; y++) {
+            int lineStart = y * stride;
+            float sum = 0;
+            for (int x = 0; x < width; x++) {
+                sum += accumulation[lineStart + x];
+                int coverage = toCoverage(sum);
+                if (coverage != 0) {
+                    consumer.accept(x, y, coverage);
+                }
+            }
+        }
+    }
+
+    private static int toCoverage(float sum) {
+        return (int) (Math.min(Math.abs(sum), 1f) * 255f + 0.5f);
+    }
+
+    @FunctionalInterface
+    public interface CoverageConsumer {
+        /**
+         * @param coverage 1 (barely touched) to 255 (fully covered)
+         */
+        void accept(int x, int y, int coverage);
+    }
+}
@@ -34,6 +34,9 @@ public class DeflateCompression {
         while (!inflater.finished()) {
             try {
                 int count = inflater.inflate(buffer);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Compressed data ended unexpectedly");
+                }
                 outputStream.write(buffer, 0, count);
             } catch (Exception e) {
                 outputStream.close();
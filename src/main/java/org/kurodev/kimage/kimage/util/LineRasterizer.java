@@ -0,0 +1,165 @@
+package org.kurodev.kimage.kimage.util;
+
+import org.kurodev.kimage.kimage.img.Composite;
+
+import java.math.BigInteger;
+
+/**
+ * Draws one pixel wide lines straight into a pixel array, clipped to a rectangle before the first pixel is written.
+ * <p>
+ * The pixels are exactly those of {@link Util#calculateLinePoints(int, int, int, int)}: the start point is drawn, the
+ * end point is not. Cohen–Sutherland outcodes accept lines that lie entirely inside the clip and reject lines that lie
+ * entirely on one side of it. Any other line is cut analytically: the first and last step of the line that fall into
+ * the clip are computed in closed form and Bresenham's algorithm resumes right at the first one, so the inner loop
+ * never checks bounds and lines reaching far off-canvas cost nothing for the part outside of it.
+ */
+public final class LineRasterizer {
+    private static final int INSIDE = 0;
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private static final int TOP = 4;
+    private static final int BOTTOM = 8;
+
+    private LineRasterizer() {
+    }
+
+    /**
+     * @param pixels    packed pixels, row by row
+     * @param stride    number of pixels per row
+     * @param right     exclusive, must not exceed the stride
+     * @param bottom    exclusive, must not exceed the number of rows
+     * @param composite how the color is combined with the pixels
+     */
+    public static void draw(int[] pixels, int stride, int x1, int y1, int x2, int y2,
+                            int left, int top, int right, int bottom, int argb, Composite composite) {
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        int code1 = outcode(x1, y1, left, top, right, bottom);
+        int code2 = outcode(x2, y2, left, top, right, bottom);
+        if ((code1 & code2) != 0) {
+            return; //both ends on the same side of the clip
+        }
+        //the ends may lie so far apart that their distance does not fit into an int
+        long dx = Math.abs((long) x2 - x1);
+        long dy = Math.abs((long) y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        boolean xMajor = dx >= dy;
+        long steps = Math.max(dx, dy);
+        long first = 0;
+        long last = steps - 1;
+        if ((code1 | code2) != INSIDE) {
+            long[] range = xMajor
+                    ? clipSteps(x1, sx, left, right - 1, y1, sy, top, bottom - 1, dx, dy)
+                    : clipSteps(y1, sy, top, bottom - 1, x1, sx, left, right - 1, dy, dx);
+            first = Math.max(first, range[0]);
+            last = Math.min(last, range[1]);
+        }
+        if (first > last) {
+            return;
+        }
+        //state of Bresenham's algorithm after "first" steps. The terms may overflow, the result never does
+        int x, y;
+        long err;
+        if (xMajor) {
+            long minorSteps = minorSteps(first, dx, dy);
+            x = (int) (x1 + sx * first);
+            y = (int) (y1 + sy * minorSteps);
+            err = dx - dy - first * dy + minorSteps * dx;
+        } else {
+            long minorSteps = minorSteps(first, dy, dx);
+            x = (int) (x1 + sx * minorSteps);
+            y = (int) (y1 + sy * first);
+            err = dx - dy + first * dx - minorSteps * dy;
+        }
+        boolean replace = composite == Composite.SRC;
+        for (long step = first; step <= last; step++) {
+            int index = y * stride + x;
+            pixels[index] = replace ? argb : composite.blend(argb, pixels[index]);
+            long e2 = 2 * err;
+            if (e2 > -dy) {
+                err -= dy;
+                x += sx;
+            }
+            if (e2 < dx) {
+                err += dx;
+                y += sy;
+            }
+        }
+    }
+
+    /**
+     * @return where the point lies relative to the clip, {@link #INSIDE} or a combination of the other flags
+     */
+    static int outcode(int x, int y, int left, int top, int right, int bottom) {
+        int code = INSIDE;
+        if (x < left) {
+            code |= LEFT;
+        } else if (x >= right) {
+            code |= RIGHT;
+        }
+        if (y < top) {
+            code |= TOP;
+        } else if (y >= bottom) {
+            code |= BOTTOM;
+        }
+        return code;
+    }
+
+    /**
+     * How often the minor axis has moved after the given number of steps along the major axis.
+     *
+     * @param major distance covered along the major axis over the whole line
+     * @param minor distance covered along the minor axis, not larger than major
+     */
+    private static long minorSteps(long step, long major, long minor) {
+        //ceil((2 * step * minor - major) / (2 * major)), never negative
+        return Math.max(0, -floorDiv(-2 * step, minor, major, 2 * major));
+    }
+
+    /**
+     * {@code floor((a * b + c) / divisor)} without overflowing, the product of two distances along a line can exceed
+     * a long when the line spans almost the entire int range.
+     *
+     * @param divisor positive
+     */
+    static long floorDiv(long a, long b, long c, long divisor) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        long sum = low + c;
+        //the product fits if the high half is only its sign, the sum fits if it did not change sign unexpectedly
+        boolean productFits = high == (low >> 63);
+        boolean sumFits = ((low ^ sum) & (c ^ sum)) >= 0;
+        if (productFits && sumFits) {
+            return Math.floorDiv(sum, divisor);
+        }
+        BigInteger[] division = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).add(BigInteger.valueOf(c))
+                .divideAndRemainder(BigInteger.valueOf(divisor));
+        return division[1].signum() < 0 ? division[0].longValue() - 1 : division[0].longValue();
+    }
+
+    /**
+     * @return the first and last step at which the line is inside the clip, both inclusive. Empty if first > last.
+     */
+    private static long[] clipSteps(int majorStart, int majorSign, int majorMin, int majorMax,
+                                    int minorStart, int minorSign, int minorMin, int minorMax,
+                                    long major, long minor) {
+        long first = majorSign > 0 ? (long) majorMin - majorStart : (long) majorStart - majorMax;
+        long last = majorSign > 0 ? (long) majorMax - majorStart : (long) majorStart - majorMin;
+        //the minor axis has to have moved at least "low" and at most "high" times
+        long low = minorSign > 0 ? (long) minorMin - minorStart : (long) minorStart - minorMax;
+        long high = minorSign > 0 ? (long) minorMax - minorStart : (long) minorStart - minorMin;
+        if (high < 0) {
+            return new long[]{1, 0};
+        }
+        if (minor == 0) {
+            return low > 0 ? new long[]{1, 0} : new long[]{first, last};
+        }
+        if (low > 0) {
+            first = Math.max(first, floorDiv(2 * low - 1, major, 0, 2 * minor) + 1);
+        }
+        last = Math.min(last, floorDiv(2 * high + 1, major, 0, 2 * minor));
+        return new long[]{first, last};
+    }
+}
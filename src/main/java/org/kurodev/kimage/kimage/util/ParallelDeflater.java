@@ -0,0 +1,180 @@
+package org.kurodev.kimage.kimage.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data into a single zlib stream using several threads, in the style of pigz.
+ * <p>
+ * The input is split into blocks that are deflated concurrently. Every block is primed with the last 32KB of the
+ * block before it, so matches across block borders are still found, and ends with a sync flush so the raw deflate
+ * streams can simply be concatenated. The Adler-32 checksums of the blocks are computed alongside and combined
+ * into the checksum of the entire stream.
+ * <p>
+ * Instances hold no state besides their configuration and can be shared between threads.
+ */
+public class ParallelDeflater {
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    /**
+     * Blocks handed to every thread, more than one so threads that finish early can pick up remaining work.
+     */
+    private static final int BLOCKS_PER_THREAD = 4;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+    private final Executor executor;
+    private final int blockSize;
+    private final int level;
+
+    /**
+     * @param executor  runs the compression of the individual blocks
+     * @param blockSize minimum amount of input bytes per block. Every block starts with fresh Huffman tables,
+     *                  so blocks are made larger when there are not enough threads to keep busy anyway.
+     * @param level     compression level, see {@link Deflater}
+     */
+    public ParallelDeflater(Executor executor, int blockSize, int level) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+            throw new IllegalArgumentException("invalid compression level: " + level);
+        }
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.level = level;
+    }
+
+    public ParallelDeflater(Executor executor) {
+        this(executor, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Uses the common fork join pool.
+     */
+    public ParallelDeflater() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive pieces of data, as zlib's {@code adler32_combine} does.
+     *
+     * @param adler1 checksum of the first piece
+     * @param adler2 checksum of the second piece
+     * @param length2 length of the second piece
+     * @return the checksum of both pieces in a row
+     */
+    public static long combineAdler32(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= (ADLER_BASE << 1)) sum2 -= (ADLER_BASE << 1);
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    public byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        compress(data, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the zlib stream to {@code out}. Blocks are written in order as soon as they and all blocks before them
+     * are done, while later blocks are still being compressed.
+     */
+    public void compress(byte[] data, OutputStream out) throws IOException {
+        int threads = executor instanceof ForkJoinPool pool ? pool.getParallelism() : Runtime.getRuntime().availableProcessors();
+        int size = Math.max(blockSize, (int) ((data.length + (long) threads * BLOCKS_PER_THREAD - 1) / ((long) threads * BLOCKS_PER_THREAD)));
+        int blocks = Math.max(1, (data.length + size - 1) / size);
+        List<CompletableFuture<Block>> futures = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            int start = i * size;
+            int end = Math.min(data.length, start + size);
+            boolean last = i == blocks - 1;
+            if (blocks == 1) {
+                futures.add(CompletableFuture.completedFuture(compressBlock(data, start, end, true)));
+            } else {
+                futures.add(CompletableFuture.supplyAsync(() -> compressBlock(data, start, end, last), executor));
+            }
+        }
+        out.write(header());
+        long adler = 1;
+        for (CompletableFuture<Block> future : futures) {
+            Block block;
+            try {
+                block = future.join();
+            } catch (CompletionException e) {
+                throw new IOException("Failed to compress data", e.getCause());
+            }
+            out.write(block.compressed);
+            adler = combineAdler32(adler, block.adler, block.length);
+        }
+        out.write((int) (adler >>> 24));
+        out.write((int) (adler >>> 16));
+        out.write((int) (adler >>> 8));
+        out.write((int) adler);
+    }
+
+    /**
+     * @return the two byte zlib header: deflate with a 32KB window and the matching level hint
+     */
+    private byte[] header() {
+        int levelHint = switch (level) {
+            case 0, 1 -> 0;
+            case 2, 3, 4, 5 -> 1;
+            case 7, 8, 9 -> 3;
+            default -> 2;
+        };
+        int cmf = 0x78;
+        int flg = levelHint << 6;
+        flg += (31 - ((cmf << 8) + flg) % 31) % 31;
+        return new byte[]{(byte) cmf, (byte) flg};
+    }
+
+    private Block compressBlock(byte[] data, int start, int end, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (start > 0) {
+                int dictionaryStart = Math.max(0, start - DICTIONARY_SIZE);
+                deflater.setDictionary(data, dictionaryStart, start - dictionaryStart);
+            }
+            deflater.setInput(data, start, end - start);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((end - start) / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+            } else {
+                //the sync flush ends the block on a byte boundary, so the next block can be appended directly
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            Adler32 adler = new Adler32();
+            adler.update(data, start, end - start);
+            return new Block(out.toByteArray(), adler.getValue(), end - start);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private record Block(byte[] compressed, long adler, int length) {
+    }
+}
@@ -0,0 +1,235 @@
+package org.kurodev.kimage.kimage.util;
+
+import java.util.Arrays;
+
+/**
+ * Polygon filler based on an active edge table.
+ * <p>
+ * Edges are stored in primitive buffers that grow on demand and are reused between polygons,
+ * filling a polygon does not allocate once the buffers are large enough.
+ * A pixel is considered inside the polygon if its center lies inside it, covered pixels are reported as horizontal spans.
+ * <p>
+ * Instances are NOT thread safe, use one rasterizer per thread.
+ */
+public class ScanlineRasterizer {
+    /**
+     * Stride of one edge within {@link #edges}: x at the upper end, upper y, lower y, dx/dy
+     */
+    private static final int EDGE_STRIDE = 4;
+    private float[] edges = new float[16 * EDGE_STRIDE];
+    /**
+     * +1 for edges pointing downwards, -1 for edges pointing upwards
+     */
+    private int[] directions = new int[16];
+    /**
+     * first scanline (inclusive) and last scanline (exclusive) per edge
+     */
+    private int[] rows = new int[32];
+    private long[] sortedEdges = new long[16];
+    private int[] active = new int[16];
+    private float[] crossings = new float[16];
+    private int[] crossingDirections = new int[16];
+    private int edgeCount;
+    private float startX, startY, lastX, lastY;
+
+    /**
+     * Removes all edges, the internal buffers are kept for the next polygon.
+     */
+    public ScanlineRasterizer reset() {
+        edgeCount = 0;
+        startX = startY = lastX = lastY = 0;
+        return this;
+    }
+
+    /**
+     * Starts a new contour, closing the previous one.
+     */
+    public ScanlineRasterizer moveTo(float x, float y) {
+        closePath();
+        startX = lastX = x;
+        startY = lastY = y;
+        return this;
+    }
+
+    public ScanlineRasterizer lineTo(float x, float y) {
+        addEdge(lastX, lastY, x, y);
+        lastX = x;
+        lastY = y;
+        return this;
+    }
+
+    /**
+     * Connects the last point of the current contour with its first point.
+     */
+    public ScanlineRasterizer closePath() {
+        if (lastX != startX || lastY != startY) {
+            addEdge(lastX, lastY, startX, startY);
+        }
+        lastX = startX;
+        lastY = startY;
+        return this;
+    }
+
+    public ScanlineRasterizer addEdge(float x0, float y0, float x1, float y1) {
+        if (y0 == y1) {
+            return this; //horizontal edges never cross a scanline
+        }
+        int direction = 1;
+        if (y0 > y1) {
+            float tmp = x0;
+            x0 = x1;
+            x1 = tmp;
+            tmp = y0;
+            y0 = y1;
+            y1 = tmp;
+            direction = -1;
+        }
+        //scanline r samples at r + 0.5 and the edge covers y0 <= sample < y1
+        int firstRow = (int) Math.ceil(y0 - 0.5f);
+        int lastRow = (int) Math.ceil(y1 - 0.5f);
+        if (firstRow >= lastRow) {
+            return this; //edge lies between two sample points
+        }
+        ensureEdgeCapacity(edgeCount + 1);
+        int base = edgeCount * EDGE_STRIDE;
+        edges[base] = x0;
+        edges[base + 1] = y0;
+        edges[base + 2] = y1;
+        edges[base + 3] = (x1 - x0) / (y1 - y0);
+        directions[edgeCount] = direction;
+        rows[edgeCount * 2] = firstRow;
+        rows[edgeCount * 2 + 1] = lastRow;
+        edgeCount++;
+        return this;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Fills the polygon described by all edges added since the last {@link #reset()}.
+     *
+     * @param rule     decides which regions count as inside
+     * @param consumer receives every covered span, top to bottom and left to right within a scanline.
+     */
+    public void fill(FillRule rule, SpanConsumer consumer) {
+        closePath();
+        if (edgeCount == 0) {
+            return;
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            //signed row in the upper half, edge index in the lower half: sorting the longs sorts by first row.
+            sortedEdges[i] = ((long) rows[i * 2] << 32) | i;
+        }
+        Arrays.sort(sortedEdges, 0, edgeCount);
+
+        int nextEdge = 0;
+        int activeCount = 0;
+        int y = (int) (sortedEdges[0] >> 32);
+        while (nextEdge < edgeCount || activeCount > 0) {
+            if (activeCount == 0) {
+                y = (int) (sortedEdges[nextEdge] >> 32);
+            }
+            while (nextEdge < edgeCount && (int) (sortedEdges[nextEdge] >> 32) <= y) {
+                active[activeCount++] = (int) sortedEdges[nextEdge++];
+            }
+            float sampleY = y + 0.5f;
+            int crossingCount = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int edge = active[i];
+                int base = edge * EDGE_STRIDE;
+                float x = edges[base] + (sampleY - edges[base + 1]) * edges[base + 3];
+                int direction = directions[edge];
+                //insertion sort, the crossings are almost sorted from the previous scanline anyway
+                int j = crossingCount++;
+                while (j > 0 && crossings[j - 1] > x) {
+                    crossings[j] = crossings[j - 1];
+                    crossingDirections[j] = crossingDirections[j - 1];
+                    j--;
+                }
+                crossings[j] = x;
+                crossingDirections[j] = direction;
+            }
+            emitSpans(rule, consumer, y, crossingCount);
+
+            y++;
+            int kept = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int edge = active[i];
+                if (rows[edge * 2 + 1] > y) {
+                    active[kept++] = edge;
+                }
+            }
+            activeCount = kept;
+        }
+    }
+
+    private void emitSpans(FillRule rule, SpanConsumer consumer, int y, int crossingCount) {
+        int winding = 0;
+        float spanStart = 0;
+        for (int i = 0; i < crossingCount; i++) {
+            boolean wasInside = rule.isInside(winding);
+            winding += crossingDirections[i];
+            boolean isInside = rule.isInside(winding);
+            if (!wasInside && isInside) {
+                spanStart = crossings[i];
+            } else if (wasInside && !isInside) {
+                //pixel x is covered if its center x + 0.5 lies within [spanStart, crossing)
+                int xStart = (int) Math.ceil(spanStart - 0.5f);
+                int xEnd = (int) Math.ceil(crossings[i] - 0.5f);
+                if (xEnd > xStart) {
+                    consumer.accept(y, xStart, xEnd);
+                }
+            }
+        }
+    }
+
+    private void ensureEdgeCapacity(int capacity) {
+        if (capacity <= directions.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, directions.length * 2);
+        edges = Arrays.copyOf(edges, newCapacity * EDGE_STRIDE);
+        directions = Arrays.copyOf(directions, newCapacity);
+        rows = Arrays.copyOf(rows, newCapacity * 2);
+        sortedEdges = Arrays.copyOf(sortedEdges, newCapacity);
+        active = Arrays.copyOf(active, newCapacity);
+        crossings = Arrays.copyOf(crossings, newCapacity);
+        crossingDirections = Arrays.copyOf(crossingDirections, newCapacity);
+    }
+
+    public enum FillRule {
+        /**
+         * A point is inside if the contours wind around it at least once in either direction.
+         * This is the rule used by TrueType outlines.
+         */
+        NON_ZERO {
+            @Override
+            boolean isInside(int winding) {
+                return winding != 0;
+            }
+        },
+        /**
+         * A point is inside if a ray starting at it crosses an odd number of edges.
+         */
+        EVEN_ODD {
+            @Override
+            boolean isInside(int winding) {
+                return (winding & 1) != 0;
+            }
+        };
+
+        abstract boolean isInside(int winding);
+    }
+
+    @FunctionalInterface
+    public interface SpanConsumer {
+        /**
+         * @param y      the scanline
+         * @param xStart first covered pixel (inclusive)
+         * @param xEnd   last covered pixel (exclusive)
+         */
+        void accept(int y, int xStart, int xEnd);
+    }
+}
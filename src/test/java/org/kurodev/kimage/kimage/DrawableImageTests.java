@@ -5,6 +5,7 @@ import org.kurodev.kimage.kimage.draw.DrawableImage;
 import org.kurodev.kimage.kimage.draw.KImage;
 import org.kurodev.kimage.kimage.font.KFont;
 import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+import org.kurodev.kimage.kimage.img.Composite;
 
 import java.awt.*;
 import java.io.IOException;
@@ -13,6 +14,8 @@ import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DrawableImageTests {
 
@@ -48,4 +51,109 @@ public class DrawableImageTests {
         assertEquals(Color.GREEN, img.getColor(50, 50));
         assertEquals(new Color(30, 50, 60, 70), img.getColor(50, 51));
     }
+
+    @Test
+    public void argbRoundTrip() {
+        DrawableImage img = new DrawableImage(10, 10);
+        img.drawPixel(3, 4, new Color(30, 50, 60, 70));
+        assertEquals(0x461E323C, img.getArgb(3, 4));
+        assertEquals(0, img.getArgb(-1, 4));
+        //translucent pixels have to survive encoding without a separate alpha chunk
+        DrawableImage decoded = DrawableImage.ofBytes(img.encode());
+        assertEquals(0x461E323C, decoded.getArgb(3, 4));
+        assertEquals(img, decoded);
+    }
+
+    @Test
+    public void fillsAreClippedToTheImage() {
+        DrawableImage img = new DrawableImage(10, 10);
+        img.fill(Color.WHITE);
+        img.fillRect(-5, 8, 8, 100, Color.RED);
+        assertEquals(Color.RED, img.getColor(0, 9));
+        assertEquals(Color.RED, img.getColor(2, 8));
+        assertEquals(Color.WHITE, img.getColor(3, 8));
+        assertEquals(Color.WHITE, img.getColor(2, 7));
+        img.fillSpan(5, 7, 20, Color.BLUE);
+        assertEquals(Color.BLUE, img.getColor(9, 5));
+        assertEquals(Color.WHITE, img.getColor(6, 5));
+    }
+
+    @Test
+    public void pushedClipsNest() {
+        DrawableImage img = new DrawableImage(20, 20);
+        img.pushClip(2, 2, 10, 10).pushClip(5, -5, 100, 100);
+        img.fill(Color.RED);
+        img.drawLine(-100, 7, 100, 7, Color.BLUE);
+        img.popClip();
+        img.drawLine(0, 3, 19, 3, Color.GREEN);
+        img.popClip();
+        img.drawPixel(0, 0, Color.BLACK);
+        assertEquals(Color.RED, img.getColor(5, 2));
+        assertEquals(Color.RED, img.getColor(11, 11));
+        assertEquals(0, img.getArgb(4, 5), "outside the inner clip");
+        assertEquals(0, img.getArgb(12, 5), "outside the outer clip");
+        assertEquals(Color.BLUE, img.getColor(5, 7));
+        assertEquals(0, img.getArgb(4, 7));
+        assertEquals(Color.GREEN, img.getColor(2, 3));
+        assertEquals(0, img.getArgb(1, 3));
+        assertEquals(Color.BLACK, img.getColor(0, 0));
+        assertThrows(IllegalStateException.class, img::popClip);
+    }
+
+    @Test
+    public void everyPrimitiveRespectsTheClip() {
+        DrawableImage img = new DrawableImage(40, 40).pushClip(10, 10, 20, 20);
+        img.fillCircle(10, 10, 15, Color.RED)
+                .drawCircle(30, 30, 12, Color.RED)
+                .drawRect(0, 0, 39, 39, Color.RED)
+                .drawLine(0, 39, 39, 0, Color.RED)
+                .fillTriangle(new Coordinate(0, 0), new Coordinate(39, 5), new Coordinate(5, 39), Color.RED)
+                .drawString(0, 25, "Clip", Color.RED, 30);
+        img.setAntiAliasing(true)
+                .fillCircle(30, 10, 15, Color.BLUE)
+                .drawString(0, 35, "Clip", Color.BLUE, 30);
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 40; x++) {
+                if (x < 10 || y < 10 || x >= 30 || y >= 30) {
+                    assertEquals(0, img.getArgb(x, y), "pixel " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compositeModeAppliesToEveryDrawCall() {
+        DrawableImage img = new DrawableImage(20, 20);
+        img.fill(Color.BLUE);
+        assertEquals(Composite.SRC, img.getComposite());
+        img.setComposite(Composite.SRC_OVER);
+        img.fillRect(0, 0, 10, 10, new Color(255, 0, 0, 128));
+        img.drawLine(0, 15, 19, 15, new Color(255, 0, 0, 0));
+        assertEquals(new Color(128, 0, 127), img.getColor(5, 5));
+        assertEquals(Color.BLUE, img.getColor(5, 15), "transparent lines leave the image as it is");
+        img.setComposite(Composite.ADD).drawPixel(15, 5, Color.RED);
+        assertEquals(Color.MAGENTA, img.getColor(15, 5));
+        img.setComposite(Composite.DST_IN).fill(new Color(0, 0, 0, 0));
+        assertEquals(0, img.getArgb(5, 5));
+        img.setComposite(Composite.SRC).drawPixel(0, 0, new Color(1, 2, 3, 4));
+        assertEquals(new Color(1, 2, 3, 4), img.getColor(0, 0));
+    }
+
+    @Test
+    public void antiAliasedCircleBlendsEdges() {
+        DrawableImage img = new DrawableImage(40, 40);
+        img.fill(Color.WHITE);
+        img.setAntiAliasing(true);
+        img.fillCircle(20, 20, 10, Color.BLACK);
+        assertEquals(Color.BLACK, img.getColor(20, 20));
+        assertEquals(Color.WHITE, img.getColor(2, 2));
+        //somewhere along the horizontal radius the edge has to be a shade of grey
+        boolean foundGrey = false;
+        for (int x = 28; x < 34; x++) {
+            Color color = img.getColor(x, 20);
+            foundGrey |= color.getRed() > 0 && color.getRed() < 255;
+            assertEquals(255, color.getAlpha());
+        }
+        assertTrue(foundGrey);
+    }
 }
@@ -0,0 +1,126 @@
+package org.kurodev.kimage.kimage.draw;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.font.FontReaders;
+import org.kurodev.kimage.kimage.font.glyph.FontStyle;
+import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+
+import java.awt.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordingImageTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    private static void drawPoster(KImage img) {
+        KImage logo = new DrawableImage(20, 20).fill(Color.CYAN).fillRect(5, 5, 10, 10, Color.BLACK);
+        img.fill(Color.WHITE)
+                .fillRect(10, 10, 80, 40, Color.RED)
+                .drawRect(20, 20, 100, 60, Color.BLACK)
+                .drawLine(0, HEIGHT - 1, WIDTH - 1, 0, Color.BLUE)
+                .setAntiAliasing(true);
+        img.fillCircle(150, 50, 30, new Color(0, 128, 0, 200))
+                .fillTriangle(new Coordinate(10, 140), new Coordinate(60, 90), new Coordinate(110, 140), Color.ORANGE)
+                .drawString(30, 120, "Report", Color.DARK_GRAY, FontReaders.getDefaultFontReader(), 24, FontStyle.UNDERLINE)
+                .setAntiAliasing(false);
+        img.fillCircle(40, 100, 15, Color.MAGENTA)
+                .drawString(120, 140, "123", Color.BLACK, 20)
+                .drawBezierCurve(new Coordinate(100, 10), new Coordinate(190, 10), new Coordinate(150, 90), Color.PINK, 500)
+                .draw(170, 110, logo);
+        for (int x = 0; x < 50; x++) {
+            img.drawPixel(60 + x, 5, Color.GRAY);
+        }
+    }
+
+    private static void assertSamePixels(KImage expected, KImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getArgb(x, y), actual.getArgb(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    public void recordingMatchesDrawingDirectly() {
+        DrawableImage direct = new DrawableImage(WIDTH, HEIGHT);
+        drawPoster(direct);
+        RecordingImage recording = new RecordingImage(WIDTH, HEIGHT);
+        drawPoster(recording);
+        assertFalse(recording.getDisplayList().isEmpty());
+        assertSamePixels(direct, recording);
+        assertTrue(recording.getDisplayList().isEmpty(), "reading pixels flushes");
+        assertFalse(recording.isAntiAliased());
+    }
+
+    @Test
+    public void listsCanBeReplayedOntoSeveralImages() {
+        RecordingImage recording = new RecordingImage(WIDTH, HEIGHT);
+        drawPoster(recording);
+        DisplayList template = recording.getDisplayList().copy();
+        DrawableImage first = template.replay(new DrawableImage(WIDTH, HEIGHT));
+        DrawableImage second = template.replay(new DrawableImage(WIDTH, HEIGHT));
+        assertSamePixels(first, second);
+        assertSamePixels(first, recording);
+    }
+
+    @Test
+    public void replayingScalesEverything() {
+        DrawableImage checkers = new DrawableImage(2, 2)
+                .drawPixel(0, 0, Color.BLACK).drawPixel(1, 0, Color.GREEN)
+                .drawPixel(0, 1, Color.YELLOW).drawPixel(1, 1, Color.BLACK);
+        RecordingImage recording = new RecordingImage(10, 10);
+        recording.fill(Color.WHITE).fillRect(2, 3, 4, 5, Color.RED).drawPixel(9, 9, Color.BLUE)
+                .draw(5, 6, checkers);
+        DrawableImage scaled = recording.getDisplayList().replay(new DrawableImage(30, 30), 3);
+        DrawableImage expected = new DrawableImage(30, 30)
+                .fill(Color.WHITE)
+                .fillRect(6, 9, 12, 15, Color.RED)
+                .fillRect(27, 27, 3, 3, Color.BLUE)
+                .fillRect(15, 18, 3, 3, Color.BLACK)
+                .fillRect(18, 18, 3, 3, Color.GREEN)
+                .fillRect(15, 21, 3, 3, Color.YELLOW)
+                .fillRect(18, 21, 3, 3, Color.BLACK);
+        assertSamePixels(expected, scaled);
+    }
+
+    @Test
+    public void hiddenCommandsAreCulledAndFillsMerged() {
+        RecordingImage recording = new RecordingImage(100, 100);
+        recording.fillCircle(50, 50, 20, Color.RED)
+                .fill(Color.WHITE) //paints over the circle
+                .fillRect(200, 200, 10, 10, Color.BLACK) //off-canvas
+                .drawLine(-50, -50, -10, -30, Color.BLACK) //off-canvas
+                .fillRect(0, 0, 10, 10, Color.BLUE)
+                .fillRect(10, 0, 5, 10, Color.BLUE)
+                .fillRect(0, 10, 15, 5, Color.BLUE)
+                .fillSpan(20, 0, 5, Color.GREEN)
+                .fillSpan(21, 0, 5, Color.GREEN);
+        List<DisplayList.Pass> passes = recording.getDisplayList().compile(100, 100, 1, true);
+        assertEquals(1, passes.size());
+        RenderBatch batch = passes.getFirst().batch();
+        assertEquals(3, batch.size(), "fill, one blue and one green rectangle");
+        assertEquals(new Rectangle(0, 0, 15, 15), batch.getBounds(1));
+        assertEquals(new Rectangle(0, 20, 5, 2), batch.getBounds(2));
+    }
+
+    @Test
+    public void antiAliasingOnlySplitsBatchesWhereItMatters() {
+        RecordingImage recording = new RecordingImage(100, 100);
+        recording.fillRect(0, 0, 10, 10, Color.RED)
+                .setAntiAliasing(true);
+        recording.fillRect(20, 20, 10, 10, Color.RED)
+                .fillCircle(50, 50, 10, Color.BLUE)
+                .setAntiAliasing(false);
+        recording.fillCircle(50, 50, 5, Color.BLUE);
+        List<DisplayList.Pass> passes = recording.getDisplayList().compile(100, 100, 1, true);
+        assertEquals(3, passes.size());
+        assertFalse(passes.get(0).antiAliased());
+        assertEquals(2, passes.get(0).batch().size(), "rectangles look the same either way");
+        assertTrue(passes.get(1).antiAliased());
+        assertFalse(passes.get(2).antiAliased());
+    }
+}
@@ -0,0 +1,101 @@
+package org.kurodev.kimage.kimage.draw;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.font.FontReaders;
+import org.kurodev.kimage.kimage.font.GlyphRun;
+import org.kurodev.kimage.kimage.font.KFont;
+import org.kurodev.kimage.kimage.font.enums.HeadTable;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TileRendererTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private static RenderBatch poster() {
+        GlyphRun text = FontReaders.getDefaultFontReader().layout("Tiles 123\nagQ&@", 40);
+        return new RenderBatch()
+                .fill(Color.WHITE)
+                .fillRect(10, 10, 150, 90, new Color(200, 30, 30))
+                .fillRect(-20, 150, 400, 100, new Color(20, 20, 220, 128))
+                .drawRect(40, 40, 200, 120, Color.BLACK)
+                .drawLine(0, 0, WIDTH - 1, HEIGHT - 1, Color.GREEN)
+                .drawLine(WIDTH + 50, -10, -40, HEIGHT + 30, Color.MAGENTA)
+                .drawCircle(150, 100, 70, Color.BLUE)
+                .fillCircle(220, 60, 45, new Color(0, 150, 0, 180))
+                .fillCircle(-10, -10, 30, Color.ORANGE)
+                .drawText(text, 20, 60, Color.DARK_GRAY);
+    }
+
+    private static void assertSamePixels(DrawableImage expected, DrawableImage actual) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(expected.getArgb(x, y), actual.getArgb(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    public void tilesMatchSerialDrawing() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (boolean antiAliased : new boolean[]{false, true}) {
+                RenderBatch batch = poster();
+                DrawableImage serial = batch.drawTo(new DrawableImage(WIDTH, HEIGHT).setAntiAliasing(antiAliased));
+                //tile size not dividing the image so the last row and column are cut off
+                DrawableImage tiled = new TileRenderer(pool, 17)
+                        .render(batch, new DrawableImage(WIDTH, HEIGHT).setAntiAliasing(antiAliased));
+                assertSamePixels(serial, tiled);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void smallTextMatchesSerialDrawing() throws IOException {
+        //at a few pixels per em grid fitting moves edges the furthest relative to the glyph size
+        KFont font = FontReaders.loadFont(Path.of("./testfonts/JetBrainsMono-Regular.ttf"));
+        int unitsPerEm = font.getTableValue(HeadTable.UNITS_PER_EM);
+        for (boolean antiAliased : new boolean[]{false, true}) {
+            RenderBatch batch = new RenderBatch().fill(Color.WHITE);
+            for (int ppem = 6; ppem <= 12; ppem++) {
+                //one run per glyph, so every glyph is binned by its own ink bounds
+                String glyphs = "mE\u2261%@Z\u00C6";
+                for (int i = 0; i < glyphs.length(); i++) {
+                    GlyphRun glyph = font.layout(glyphs.substring(i, i + 1), (double) ppem / unitsPerEm);
+                    batch.drawText(glyph, 3 + i * 14, ppem * 15, Color.BLACK);
+                }
+            }
+            DrawableImage serial = batch.drawTo(new DrawableImage(WIDTH, HEIGHT).setAntiAliasing(antiAliased));
+            //single pixel tiles, so any pixel outside the ink bounds of its glyph is lost
+            DrawableImage tiled = new TileRenderer(ForkJoinPool.commonPool(), 1)
+                    .render(batch, new DrawableImage(WIDTH, HEIGHT).setAntiAliasing(antiAliased));
+            assertSamePixels(serial, tiled);
+        }
+    }
+
+    @Test
+    public void operationsOnlyRunForTilesTheyTouch() {
+        AtomicInteger calls = new AtomicInteger();
+        RenderBatch batch = new RenderBatch()
+                .add(new Rectangle(5, 5, 10, 10), image -> calls.incrementAndGet())
+                .add(new Rectangle(-100, -100, 10, 10), image -> calls.incrementAndGet());
+        new TileRenderer(ForkJoinPool.commonPool(), 8).render(batch, new DrawableImage(64, 64));
+        assertEquals(4, calls.get(), "the first rectangle covers 2x2 tiles, the second none");
+    }
+
+    @Test
+    public void drawingOutsideTheTileIsDropped() {
+        RenderBatch batch = new RenderBatch().add(new Rectangle(0, 0, 4, 4), image -> image.fill(Color.RED));
+        DrawableImage image = new TileRenderer(ForkJoinPool.commonPool(), 8).render(batch, new DrawableImage(16, 16));
+        assertEquals(Color.RED.getRGB(), image.getArgb(7, 7));
+        assertEquals(0, image.getArgb(8, 8), "the operation claimed to stay within the first tile");
+    }
+}
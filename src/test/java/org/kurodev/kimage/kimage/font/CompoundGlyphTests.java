@@ -8,17 +8,24 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.kurodev.kimage.kimage.draw.DrawableImage;
 import org.kurodev.kimage.kimage.draw.KImage;
 import org.kurodev.kimage.kimage.font.glyph.DebugFontStyles;
-import org.kurodev.kimage.kimage.font.glyph.compound.CompoundGlyph;
-import org.kurodev.kimage.kimage.font.glyph.compound.CompoundGlyphFlag;
-import org.kurodev.kimage.kimage.font.glyph.compound.GlyphWithFlags;
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
+import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.GlyphFactory;
+import org.kurodev.kimage.kimage.font.glyph.GlyphOutline;
+import org.kurodev.kimage.kimage.font.glyph.compound.*;
+import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+import org.kurodev.kimage.kimage.font.glyph.simple.SimpleFontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.simple.SimpleFontGlyphBuilder;
 
 import java.awt.*;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class CompoundGlyphTests {
 
@@ -43,6 +50,19 @@ public class CompoundGlyphTests {
         assertEquals(index, font.getGlyphIndex(character), "Incorrect glyph index for character '" + character + "'");
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "A, 1",
+            "Á, 2",
+            "B, 26",
+            "Ä, 16",
+            "|, 1470"
+    })
+    public void testReverseCmapLookup(char character, int index) {
+        assertEquals(Optional.of(character), font.getCmapTable().getCharacter(index));
+        assertEquals(index, font.getCmapTable().getGlyphIndex((int) character));
+    }
+
     @Test
     public void testCompoundGlyphFlags() {
         CompoundGlyph glyph = (CompoundGlyph) font.getGlyph('Ä');
@@ -72,4 +92,106 @@ public class CompoundGlyphTests {
     }
 
 
+    /**
+     * A square from (0, 0) to (100, 100) in font units with the y-axis pointing up, stored as deltas like in the font file.
+     */
+    private static SimpleFontGlyph square() {
+        return new SimpleFontGlyphBuilder()
+                .setNumberOfContours(1)
+                .setxMin(0).setyMin(0).setxMax(100).setyMax(100)
+                .setxCoordinates(new int[]{0, 100, 0, -100})
+                .setyCoordinates(new int[]{0, 0, 100, 0})
+                .setFlags(new byte[]{1, 1, 1, 1})
+                .setEndPtsOfContours(new int[]{3})
+                .setCodePoint('s')
+                .setAdvanceWidth(100)
+                .createSimpleFontGlyph();
+    }
+
+    private static Coordinate point(FontGlyph glyph, int contour, int index) {
+        GlyphOutline outline = glyph.getOutline();
+        int point = outline.getContourStart(contour) + index;
+        return new Coordinate(Math.round(outline.getX(point)), Math.round(outline.getY(point)));
+    }
+
+    private static GlyphWithFlags component(FontGlyph glyph, int flags, int... params) {
+        return new GlyphWithFlagsBuilder()
+                .setGlyph(glyph)
+                .setFlags(new FlagsWithParams(CompoundGlyphFlag.identify(flags), params))
+                .createGlyphWithFlags();
+    }
+
+    @Test
+    public void offsetsPointUpLikeTheFontFile() {
+        int xy = CompoundGlyphFlag.ARGS_ARE_XY_VALUES.getBit();
+        CompoundGlyph glyph = new CompoundGlyph('c', 100, 0, 0, 0, 0, List.of(component(square(), xy, 10, 50)));
+        //(0, 0) moved right and up, which is negative y once the outline points down
+        assertEquals(new Coordinate(10, -50), point(glyph, 0, 0));
+        assertEquals(new Coordinate(110, -150), point(glyph, 0, 2));
+    }
+
+    @Test
+    public void scaledComponents() {
+        int xy = CompoundGlyphFlag.ARGS_ARE_XY_VALUES.getBit();
+        int half = 1 << 13; //0.5 in 2.14
+        CompoundGlyph uniform = new CompoundGlyph('c', 100, 0, 0, 0, 0,
+                List.of(component(square(), xy | CompoundGlyphFlag.WE_HAVE_A_SCALE.getBit(), 0, 0, half)));
+        assertEquals(new Coordinate(50, -50), point(uniform, 0, 2));
+
+        CompoundGlyph stretched = new CompoundGlyph('c', 100, 0, 0, 0, 0,
+                List.of(component(square(), xy | CompoundGlyphFlag.WE_HAVE_AN_X_AND_Y_SCALE.getBit(), 0, 0, half, 2 << 14)));
+        assertEquals(new Coordinate(50, -200), point(stretched, 0, 2));
+
+        //rotated by 90 degrees counter-clockwise: (x, y) -> (-y, x) with the y-axis pointing up
+        CompoundGlyph rotated = new CompoundGlyph('c', 100, 0, 0, 0, 0,
+                List.of(component(square(), xy | CompoundGlyphFlag.WE_HAVE_A_TWO_BY_TWO.getBit(), 0, 0, 0, 1 << 14, -(1 << 14), 0)));
+        assertEquals(new Coordinate(0, -100), point(rotated, 0, 1));
+        assertEquals(new Coordinate(-100, -100), point(rotated, 0, 2));
+    }
+
+    @Test
+    public void nestedCompounds() {
+        int xy = CompoundGlyphFlag.ARGS_ARE_XY_VALUES.getBit();
+        CompoundGlyph inner = new CompoundGlyph('i', 100, 0, 0, 0, 0,
+                List.of(component(square(), xy, 0, 0), component(square(), xy, 200, 0)));
+        CompoundGlyph outer = new CompoundGlyph('o', 100, 0, 0, 0, 0,
+                List.of(component(inner, xy, 0, 100), component(square(), xy, 0, 0)));
+        assertEquals(3, outer.getOutline().getContourCount());
+        assertEquals(new Coordinate(200, -100), point(outer, 1, 0));
+        assertEquals(new Coordinate(0, 0), point(outer, 2, 0));
+        FlattenedOutline outline = outer.getFlattenedOutline(1);
+        assertEquals(3, outline.getContourCount());
+        assertEquals(300, outline.getMaxX(), 1e-3);
+        assertEquals(-200, outline.getMinY(), 1e-3);
+    }
+
+    @Test
+    public void matchedPointsAlignComponents() {
+        int xy = CompoundGlyphFlag.ARGS_ARE_XY_VALUES.getBit();
+        //the first point of the second square sits on the third point of the first square
+        CompoundGlyph glyph = new CompoundGlyph('c', 100, 0, 0, 0, 0,
+                List.of(component(square(), xy, 0, 0), component(square(), 0, 2, 0)));
+        assertEquals(new Coordinate(100, -100), point(glyph, 1, 0));
+    }
+
+    @Test
+    public void readsSignedOffsets() throws IOException {
+        int xy = CompoundGlyphFlag.ARGS_ARE_XY_VALUES.getBit();
+        ByteBuffer glyf = ByteBuffer.allocate(10 + 4 + 2 + 4 + 4 + 2);
+        glyf.putShort((short) -1).putShort((short) 0).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        //byte offsets and a scale, more components follow
+        glyf.putShort((short) (xy | CompoundGlyphFlag.MORE_COMPONENTS.getBit() | CompoundGlyphFlag.WE_HAVE_A_SCALE.getBit()));
+        glyf.putShort((short) font.getGlyphIndex('A'));
+        glyf.put((byte) -5).put((byte) -6);
+        glyf.putShort((short) (1 << 13));
+        //word offsets
+        glyf.putShort((short) (xy | CompoundGlyphFlag.ARG_1_AND_2_ARE_WORDS.getBit()));
+        glyf.putShort((short) font.getGlyphIndex('B'));
+        glyf.putShort((short) -300).putShort((short) -400);
+        CompoundGlyph glyph = GlyphFactory.readCompoundGlyph(glyf, 0, 'c', 600, font);
+        assertEquals(2, glyph.getComponents().size());
+        assertArrayEquals(new int[]{-5, -6, 1 << 13}, glyph.getComponents().get(0).flags().params());
+        assertArrayEquals(new int[]{-300, -400}, glyph.getComponents().get(1).flags().params());
+        assertSame(font.getGlyph('B'), glyph.getComponents().get(1).glyph(), "components come from the glyph cache");
+    }
 }
@@ -0,0 +1,117 @@
+package org.kurodev.kimage.kimage.font;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class FontConcurrencyTests {
+    private static final Path FONT = Path.of("./testfonts/JetBrainsMono-Regular.ttf");
+    private static final String[] TEXTS = {
+            "The quick brown fox", "jumps over the lazy dog", "0123456789", "&%$!?()[]{}",
+            "ÀÉÎÕÜ àéîõü", "Sphinx of black quartz", "judge my vow", "@#*+-=/\\|<>"
+    };
+    private static final int THREADS = 8;
+    private static final int RENDERS_PER_THREAD = 60;
+
+    private static DrawableImage render(KFont font, String text, int size, boolean antiAliased) {
+        DrawableImage image = new DrawableImage(600, 60);
+        image.setAntiAliasing(antiAliased);
+        image.drawString(5, 45, text, Color.BLACK, font, size);
+        return image;
+    }
+
+    @Test
+    public void oneFontRendersIdenticallyOnAllThreads() throws Exception {
+        //every font gets its own raster cache, so glyphs are decoded and rasterized while the threads race
+        KFont reference = ((FontReader) FontReaders.loadFont(FONT)).withRasterCache(new GlyphRasterCache(GlyphRasterCache.DEFAULT_MAX_BYTES));
+        KFont shared = ((FontReader) FontReaders.loadFont(FONT)).withRasterCache(new GlyphRasterCache(GlyphRasterCache.DEFAULT_MAX_BYTES));
+        int[] sizes = {12, 17, 24, 40};
+        DrawableImage[][][] expected = new DrawableImage[TEXTS.length][sizes.length][2];
+        for (int text = 0; text < TEXTS.length; text++) {
+            for (int size = 0; size < sizes.length; size++) {
+                expected[text][size][0] = render(reference, TEXTS[text], sizes[size], false);
+                expected[text][size][1] = render(reference, TEXTS[text], sizes[size], true);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                Random random = new Random(thread);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int mismatches = 0;
+                    for (int i = 0; i < RENDERS_PER_THREAD; i++) {
+                        int text = random.nextInt(TEXTS.length);
+                        int size = random.nextInt(sizes.length);
+                        int antiAliased = random.nextInt(2);
+                        DrawableImage actual = render(shared, TEXTS[text], sizes[size], antiAliased == 1);
+                        if (!actual.equals(expected[text][size][antiAliased])) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get(2, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void defaultFontIsLoadedOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<KFont>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                tasks.add(FontReaders::getDefaultFontReader);
+            }
+            KFont first = FontReaders.getDefaultFontReader();
+            for (Future<KFont> font : executor.invokeAll(tasks)) {
+                assertSame(first, font.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void glyphsDecodedConcurrentlyAreShared() throws IOException, InterruptedException {
+        FontReader font = (FontReader) FontReaders.loadFont(FONT);
+        char[] characters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+        ConcurrentMap<Character, Object> seen = new ConcurrentHashMap<>();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (char c : characters) {
+                    Object glyph = font.getGlyph(c);
+                    Object previous = seen.putIfAbsent(c, glyph);
+                    if (previous != null && previous != glyph) {
+                        failures.add("different instances for " + c);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), List.copyOf(failures));
+    }
+}
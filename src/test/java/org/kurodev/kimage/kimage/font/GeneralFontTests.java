@@ -1,14 +1,21 @@
 package org.kurodev.kimage.kimage.font;
 
 import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
 import org.kurodev.kimage.kimage.font.glyph.FontGlyph;
+import org.kurodev.kimage.kimage.font.glyph.GlyphOutline;
 import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
 
+import java.awt.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.kurodev.kimage.kimage.font.Helper.coordinatesForLetterA;
 
 public class GeneralFontTests {
@@ -17,17 +24,17 @@ public class GeneralFontTests {
     public void testBasicFontData() throws IOException {
         KFont font = FontReaders.loadFont(FontReaders.class.getResourceAsStream("/kimage/Pixellettersfull.ttf"));
         var glyph = font.getGlyph('A');
-        var coordinates = glyph.getCoordinates();
-        assertEquals(coordinatesForLetterA.length, coordinates.length, "read coordinates differ in size");
+        GlyphOutline outline = glyph.getOutline();
+        assertEquals(coordinatesForLetterA.length, outline.getContourCount(), "read coordinates differ in size");
         for (int contourIndex = 0; contourIndex < coordinatesForLetterA.length; contourIndex++) {
             Coordinate[] expectedContour = coordinatesForLetterA[contourIndex];
-            Coordinate[] actualContour = coordinates[contourIndex];
-            assertEquals(expectedContour.length, actualContour.length, "read contour differs in size in contour " + contourIndex);
+            int start = outline.getContourStart(contourIndex);
+            assertEquals(expectedContour.length, outline.getContourEnd(contourIndex) - start, "read contour differs in size in contour " + contourIndex);
             for (int coordinate = 0; coordinate < expectedContour.length; coordinate++) {
                 Coordinate expected = expectedContour[coordinate];
-                Coordinate actual = actualContour[coordinate];
-                actual.flags().clear(); //the expected values don't have flags, we care strictly about coordinates right now.
-                assertEquals(expected, actual);
+                //the expected values don't have flags, we care strictly about coordinates right now.
+                assertEquals(expected.x(), outline.getX(start + coordinate));
+                assertEquals(expected.y(), outline.getY(start + coordinate));
             }
         }
     }
@@ -39,6 +46,173 @@ public class GeneralFontTests {
         assertEquals(250, glyph.getAdvanceWidth(), "Advancewidth should be 250");
     }
 
+    @Test
+    public void mappedFontsMatchStreamedFonts() throws IOException {
+        Path file = Path.of("./testfonts/JetBrainsMono-Regular.ttf");
+        KFont streamed = KFont.getFont(Files.newInputStream(file));
+        KFont mapped = KFont.getFont(file);
+        KFont mappedAgain = FontReaders.loadFont(file);
+        for (char c : "Ag&%0".toCharArray()) {
+            assertEquals(streamed.getGlyph(c).getAdvanceWidth(), mapped.getGlyph(c).getAdvanceWidth());
+            assertSameOutline(streamed.getGlyph(c).getOutline(), mapped.getGlyph(c).getOutline());
+            assertSameOutline(mapped.getGlyph(c).getOutline(), mappedAgain.getGlyph(c).getOutline());
+        }
+        DrawableImage fromStream = new DrawableImage(200, 60);
+        DrawableImage fromMapping = new DrawableImage(200, 60);
+        fromStream.drawString(5, 40, "Mapped", Color.BLACK, streamed, 32);
+        fromMapping.drawString(5, 40, "Mapped", Color.BLACK, mapped, 32);
+        assertEquals(fromStream, fromMapping);
+    }
+
+    private static void assertSameOutline(GlyphOutline expected, GlyphOutline actual) {
+        assertEquals(expected.getPointCount(), actual.getPointCount(), "point count");
+        assertEquals(expected.getContourCount(), actual.getContourCount(), "contour count");
+        for (int contour = 0; contour < expected.getContourCount(); contour++) {
+            assertEquals(expected.getContourEnd(contour), actual.getContourEnd(contour), "end of contour " + contour);
+        }
+        for (int point = 0; point < expected.getPointCount(); point++) {
+            assertEquals(expected.getX(point), actual.getX(point), "x of point " + point);
+            assertEquals(expected.getY(point), actual.getY(point), "y of point " + point);
+        }
+    }
+
+    @Test
+    public void layoutMeasuresWithoutRasterizing() throws IOException {
+        GlyphRasterCache cache = new GlyphRasterCache(GlyphRasterCache.DEFAULT_MAX_BYTES);
+        FontReader font = ((FontReader) KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf"))))
+                .withRasterCache(cache);
+        double scale = 0.02;
+        GlyphRun run = font.layout("ab\nc", scale);
+        assertEquals(0, cache.getMisses(), "layout must not rasterize");
+        assertEquals(3, run.getGlyphCount());
+        assertEquals(2, run.getLineCount());
+        assertEquals(2, run.getLineStart(1));
+        int advanceA = (int) Math.ceil(font.getGlyph('a').getAdvanceWidth() * scale);
+        int advanceB = (int) Math.ceil(font.getGlyph('b').getAdvanceWidth() * scale);
+        assertEquals(advanceA, run.getX(1));
+        assertEquals(0, run.getX(2));
+        assertEquals(run.getLineHeight(), run.getY(2));
+        assertEquals(advanceA + advanceB, run.getWidth());
+        assertEquals(run.getAscent() + run.getDescent() + run.getLineHeight(), run.getHeight());
+        Rectangle ink = run.getInkBounds();
+        assertTrue(ink.y < 0 && ink.y >= -run.getAscent(), "ink starts above the baseline");
+        assertTrue(ink.getMaxY() > run.getLineHeight(), "ink reaches into the second line");
+    }
+
+    @Test
+    public void sizesBelowTheLowestRecommendedPpemAreNotEnlarged() throws IOException {
+        KFont font = KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf")));
+        int small = font.getLowestRecommendedPPEM() - 2;
+        assertTrue(small > 0);
+        GlyphRun run = font.layout("Hxp", small);
+        GlyphRun twice = font.layout("Hxp", small * 2);
+        assertEquals(twice.getScale(), run.getScale() * 2, 1e-9);
+        DrawableImage image = new DrawableImage(40, 20);
+        run.draw(image, 2, 12, Color.BLACK);
+        boolean inked = false;
+        for (int x = 0; x < image.getWidth() && !inked; x++) {
+            for (int y = 0; y < image.getHeight() && !inked; y++) {
+                inked = image.getColor(x, y).getAlpha() != 0;
+            }
+        }
+        assertTrue(inked, "small text is still drawn");
+    }
+
+    @Test
+    public void glyphRunDrawsLikeDrawString() throws IOException {
+        KFont font = KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf")));
+        DrawableImage expected = new DrawableImage(300, 120);
+        font.drawString(expected, 10, 40, 24, Color.BLACK, "Label 1");
+        font.drawString(expected, 150, 90, 24, Color.BLACK, "Label 1");
+        GlyphRun run = font.layout("Label 1", 24);
+        DrawableImage actual = new DrawableImage(300, 120);
+        run.draw(actual, 10, 40, Color.BLACK);
+        run.draw(actual, 150, 90, Color.BLACK);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void supplementaryCodePointsReachTheirGlyphs() throws IOException {
+        FontReader font = (FontReader) KFont.getFont(Path.of("./testfonts/JetBrainsMono-Regular.ttf"));
+        int doubleStruckA = 0x1D538;
+        int glyphIndex = font.getGlyphIndexByCodePoint(doubleStruckA);
+        assertTrue(glyphIndex != 0, "the font maps U+1D538");
+        assertEquals(doubleStruckA, font.getCmapTable().getCodePoint(glyphIndex).orElseThrow());
+        assertEquals(doubleStruckA, font.getGlyphByCodePoint(doubleStruckA).getCodePoint());
+
+        String text = "A" + Character.toString(doubleStruckA) + "\nB";
+        GlyphRun run = font.layout(text, 0.02);
+        assertEquals(3, run.getGlyphCount(), "the surrogate pair is a single glyph");
+        assertEquals(glyphIndex, run.getGlyphIndex(1));
+        assertEquals(2, run.getLineStart(1));
+        assertEquals(3, font.getGlyphs(text.replace("\n", "")).size());
+    }
+
+    @Test
+    public void glyphsAreCachedByIndex() throws IOException {
+        FontReader font = (FontReader) FontReaders.loadFont(FontReaders.class.getResourceAsStream("/kimage/Pixellettersfull.ttf"));
+        FontGlyph first = font.getGlyph('A');
+        FontGlyph second = font.getGlyph('A');
+        assertSame(first, second);
+        assertSame(first, font.getGlyph(font.getGlyphIndex('A')));
+        assertEquals(1, font.getGlyphCache().getMisses());
+        assertEquals(2, font.getGlyphCache().getHits());
+    }
+
+    @Test
+    public void flattenedOutlinesDependOnSize() throws IOException {
+        KFont font = KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf")));
+        FontGlyph glyph = font.getGlyph('O');
+        FlattenedOutline small = glyph.getFlattenedOutline(0.01);
+        FlattenedOutline large = glyph.getFlattenedOutline(0.5);
+        assertEquals(2, small.getContourCount());
+        assertTrue(large.getPointCount() > small.getPointCount(), "larger sizes should be flattened into more lines");
+        //scales within the same bucket share one outline
+        assertSame(large, glyph.getFlattenedOutline(0.49));
+    }
+
+    @Test
+    public void rasterizedGlyphsAreReused() throws IOException {
+        GlyphRasterCache cache = new GlyphRasterCache(GlyphRasterCache.DEFAULT_MAX_BYTES);
+        FontReader font = ((FontReader) KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf"))))
+                .withRasterCache(cache);
+        DrawableImage image = new DrawableImage(200, 50);
+        font.drawString(image, 0, 30, 20, Color.BLACK, "1111");
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+        //the anti-aliased variant is a separate entry
+        image.setAntiAliasing(true);
+        font.drawString(image, 0, 30, 20, Color.BLACK, "1");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void everyFontOwnsItsRasterCache() throws IOException {
+        FontReader first = (FontReader) KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf")));
+        FontReader second = (FontReader) KFont.getFont(Files.newInputStream(Path.of("./testfonts/JetBrainsMono-Regular.ttf")));
+        first.drawString(new DrawableImage(50, 50), 0, 30, 20, Color.BLACK, "1");
+        assertNotSame(first.getRasterCache(), second.getRasterCache());
+        assertEquals(1, first.getRasterCache().size());
+        assertEquals(0, second.getRasterCache().size(), "glyphs of one font must not end up in the cache of another");
+    }
+
+    @Test
+    public void rasterCacheEvictsLeastRecentlyUsed() {
+        GlyphBitmap bitmap = new GlyphBitmap(0, 0, 10, 10, new byte[100], false);
+        GlyphRasterCache cache = new GlyphRasterCache(bitmap.getByteSize() * 2L);
+        Object font = new Object();
+        cache.get(font, 1, 1, false, () -> bitmap);
+        cache.get(font, 2, 1, false, () -> bitmap);
+        cache.get(font, 1, 1, false, () -> bitmap);
+        cache.get(font, 3, 1, false, () -> bitmap);
+        assertEquals(2, cache.size());
+        assertEquals(bitmap.getByteSize() * 2L, cache.getBytes());
+        cache.get(font, 1, 1, false, () -> bitmap);
+        assertEquals(2, cache.getHits(), "glyph 1 was used more recently than glyph 2 and must survive");
+        cache.invalidate(font);
+        assertEquals(0, cache.size());
+    }
+
     public record Point(int x, int y) {
     }
 
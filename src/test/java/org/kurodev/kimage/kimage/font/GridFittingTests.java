@@ -0,0 +1,48 @@
+package org.kurodev.kimage.kimage.font;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.kurodev.kimage.kimage.font.enums.HeadTable;
+import org.kurodev.kimage.kimage.font.glyph.FlattenedOutline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Grid fitting real glyphs at sizes where stems are about a pixel wide.
+ */
+public class GridFittingTests {
+    private static FontReader font;
+
+    @BeforeAll
+    public static void prepare() throws IOException {
+        font = (FontReader) FontReaders.loadFont(Path.of("./testfonts/JetBrainsMono-Regular.ttf"));
+    }
+
+    private static Stream<Arguments> glyphsAndSizes() {
+        return Stream.of('m', 'E', '≡')
+                .flatMap(character -> IntStream.rangeClosed(6, 12).mapToObj(ppem -> Arguments.of(character, ppem)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("glyphsAndSizes")
+    public void fittingMovesTheBoundsByLessThanAPixel(char character, int ppem) {
+        double scale = (double) ppem / font.getTableValue(HeadTable.UNITS_PER_EM);
+        FlattenedOutline outline = font.getGlyph(character).getFlattenedOutline(scale);
+        FlattenedOutline fitted = font.getGridFitter().fit(outline, scale);
+        String bounds = String.format("%s at %dppem: x %.2f..%.2f y %.2f..%.2f fitted to x %.2f..%.2f y %.2f..%.2f",
+                character, ppem,
+                outline.getMinX() * scale, outline.getMaxX() * scale, outline.getMinY() * scale, outline.getMaxY() * scale,
+                fitted.getMinX() * scale, fitted.getMaxX() * scale, fitted.getMinY() * scale, fitted.getMaxY() * scale);
+        assertTrue(Math.abs(fitted.getMinX() - outline.getMinX()) * scale <= 1, bounds);
+        assertTrue(Math.abs(fitted.getMaxX() - outline.getMaxX()) * scale <= 1, bounds);
+        assertTrue(Math.abs(fitted.getMinY() - outline.getMinY()) * scale <= 1, bounds);
+        assertTrue(Math.abs(fitted.getMaxY() - outline.getMaxY()) * scale <= 1, bounds);
+    }
+}
@@ -0,0 +1,84 @@
+package org.kurodev.kimage.kimage.font.glyph;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.font.FontReaders;
+import org.kurodev.kimage.kimage.font.KFont;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlyphOutlineTest {
+
+    private static GlyphOutline triangle() {
+        return new GlyphOutline(
+                new float[]{0, 10, 0},
+                new float[]{0, 0, -10},
+                new boolean[]{true, true, true},
+                new int[]{3});
+    }
+
+    @Test
+    public void transformsInPlace() {
+        GlyphOutline outline = triangle();
+        assertSame(outline, outline.transform(2, 0, 0, 3, 5, -1));
+        assertEquals(5, outline.getX(0));
+        assertEquals(-1, outline.getY(0));
+        assertEquals(25, outline.getX(1));
+        assertEquals(-31, outline.getY(2));
+        outline.translate(-5, 1);
+        assertEquals(0, outline.getX(0));
+        assertEquals(0, outline.getY(0));
+    }
+
+    @Test
+    public void glyphsHandOutReadOnlyOutlines() {
+        FontGlyph glyph = FontReaders.getDefaultFontReader().getGlyph('A');
+        GlyphOutline first = glyph.getOutline();
+        assertSame(first, glyph.getOutline(), "reading the outline must not copy it");
+        assertThrows(UnsupportedOperationException.class, () -> first.translate(1000, 1000));
+        float x = first.getX(0);
+        GlyphOutline copy = first.copy().translate(1000, 1000);
+        assertEquals(x + 1000, copy.getX(0));
+        assertEquals(x, glyph.getOutline().getX(0), "transforming a copy must not move the glyph");
+    }
+
+    @Test
+    public void concatKeepsContoursApart() {
+        GlyphOutline joined = GlyphOutline.concat(List.of(triangle(), triangle().translate(20, 0)));
+        assertEquals(6, joined.getPointCount());
+        assertEquals(2, joined.getContourCount());
+        assertEquals(3, joined.getContourStart(1));
+        assertEquals(6, joined.getContourEnd(1));
+        assertEquals(20, joined.getX(3));
+    }
+
+    @Test
+    public void curvesAreFlattened() {
+        //a quadratic curve from (0, 0) over (50, -100) to (100, 0)
+        GlyphOutline outline = new GlyphOutline(
+                new float[]{0, 50, 100},
+                new float[]{0, -100, 0},
+                new boolean[]{true, false, true},
+                new int[]{3});
+        FlattenedOutline coarse = outline.flatten(0.01);
+        FlattenedOutline fine = outline.flatten(1);
+        assertTrue(fine.getPointCount() > coarse.getPointCount());
+        assertEquals(-50, fine.getMinY(), 0.5, "the curve peaks halfway to its control point");
+    }
+
+    @Test
+    public void matchesTheFlattenedOutlineOfTheGlyph() {
+        KFont font = FontReaders.getDefaultFontReader();
+        for (char c : "AgQ&@".toCharArray()) {
+            FontGlyph glyph = font.getGlyph(c);
+            FlattenedOutline expected = glyph.getFlattenedOutline(1);
+            FlattenedOutline actual = glyph.getOutline().flatten(1);
+            assertEquals(expected.getPointCount(), actual.getPointCount());
+            for (int i = 0; i < expected.getPointCount(); i++) {
+                assertEquals(expected.getX(i), actual.getX(i));
+                assertEquals(expected.getY(i), actual.getY(i));
+            }
+        }
+    }
+}
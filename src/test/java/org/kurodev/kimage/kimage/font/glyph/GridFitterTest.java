@@ -0,0 +1,67 @@
+package org.kurodev.kimage.kimage.font.glyph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GridFitterTest {
+    private static final double SCALE = 0.01;
+
+    private static FlattenedOutline rectangle(float left, float top, float right, float bottom) {
+        return new FlattenedOutline(
+                new float[]{left, right, right, left},
+                new float[]{top, top, bottom, bottom},
+                new int[]{4});
+    }
+
+    @Test
+    public void stemEdgesLandOnPixelBorders() {
+        GridFitter fitter = new GridFitter(new float[]{0}, 20);
+        FlattenedOutline fitted = fitter.fit(rectangle(130, -520, 370, 0), SCALE);
+        for (int i = 0; i < fitted.getPointCount(); i++) {
+            double x = fitted.getX(i) * SCALE;
+            double y = fitted.getY(i) * SCALE;
+            assertEquals(Math.rint(x), x, 1e-4);
+            assertEquals(Math.rint(y), y, 1e-4);
+        }
+        assertEquals(0, fitted.getMaxY() * SCALE, 1e-4, "the baseline stays where it is");
+        assertEquals(-5, fitted.getMinY() * SCALE, 1e-4);
+    }
+
+    @Test
+    public void overshootSnapsOntoBlueZone() {
+        GridFitter fitter = new GridFitter(new float[]{0, -500}, 20);
+        //a round bottom slightly below the baseline and a round top slightly above the x-height
+        FlattenedOutline outline = new FlattenedOutline(
+                new float[]{100, 200, 300, 200},
+                new float[]{-250, -512, -250, 12},
+                new int[]{4});
+        FlattenedOutline fitted = fitter.fit(outline, SCALE);
+        assertEquals(0, fitted.getMaxY() * SCALE, 1e-4);
+        assertEquals(-5, fitted.getMinY() * SCALE, 1e-4);
+    }
+
+    @Test
+    public void thinStemsKeepOnePixel() {
+        GridFitter fitter = new GridFitter(new float[]{0}, 20);
+        //60% of a pixel wide, centered on a pixel border, both edges would round onto the same border
+        FlattenedOutline fitted = fitter.fit(rectangle(170, -800, 230, 0), SCALE);
+        double width = (fitted.getMaxX() - fitted.getMinX()) * SCALE;
+        assertTrue(width >= 1 - 1e-4, "stem collapsed to " + width + "px");
+    }
+
+    @Test
+    public void outlinesWithoutEdgesAreUntouched() {
+        GridFitter fitter = new GridFitter(new float[]{0}, 20);
+        FlattenedOutline diamond = new FlattenedOutline(
+                new float[]{0, 50, 100, 50},
+                new float[]{-350, -400, -350, -300},
+                new int[]{4});
+        FlattenedOutline fitted = fitter.fit(diamond, SCALE);
+        for (int i = 0; i < diamond.getPointCount(); i++) {
+            assertEquals(diamond.getX(i), fitted.getX(i), 1e-3);
+            assertEquals(diamond.getY(i), fitted.getY(i), 1e-3);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.kurodev.kimage.kimage.img;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CompositeTest {
+    private static final int RED = 0xFFFF0000;
+    private static final int BLUE = 0xFF0000FF;
+    private static final int HALF_RED = 0x80FF0000;
+
+    @Test
+    public void srcReplaces() {
+        assertEquals(HALF_RED, Composite.SRC.blend(HALF_RED, BLUE));
+        assertEquals(0, Composite.SRC.blend(0, BLUE));
+    }
+
+    @Test
+    public void srcOverBlendsByAlpha() {
+        assertEquals(RED, Composite.SRC_OVER.blend(RED, BLUE));
+        assertEquals(BLUE, Composite.SRC_OVER.blend(0x00FF0000, BLUE));
+        assertEquals(0xFF80007F, Composite.SRC_OVER.blend(HALF_RED, BLUE));
+        assertEquals(HALF_RED, Composite.SRC_OVER.blend(HALF_RED, 0), "nothing below to blend with");
+    }
+
+    @Test
+    public void dstInMasksByAlpha() {
+        assertEquals(BLUE, Composite.DST_IN.blend(RED, BLUE));
+        assertEquals(0x800000FF, Composite.DST_IN.blend(HALF_RED, BLUE), "only the alpha of the source counts");
+        assertEquals(0, Composite.DST_IN.blend(0, BLUE));
+    }
+
+    @Test
+    public void separableBlendModes() {
+        int orange = 0xFFC86432;
+        int other = 0xFF80FF00;
+        assertEquals(0xFF646400, Composite.MULTIPLY.blend(other, orange));
+        assertEquals(0xFFE4FF32, Composite.SCREEN.blend(other, orange));
+        assertEquals(0xFFFFFF32, Composite.ADD.blend(other, orange));
+        for (Composite mode : new Composite[]{Composite.MULTIPLY, Composite.SCREEN, Composite.ADD}) {
+            assertEquals(other, mode.blend(other, 0), mode + " onto a transparent pixel");
+            assertEquals(orange, mode.blend(0, orange), mode + " of a transparent source");
+        }
+        //translucent source over opaque destination ends halfway between the destination and the blend result
+        assertEquals(0xFF964B25, Composite.MULTIPLY.blend(0x80808080, orange));
+    }
+
+    @Test
+    public void addSumsPremultipliedColors() {
+        assertEquals(0xFFFF00FF, Composite.ADD.blend(RED, BLUE));
+        assertEquals(0x80800080, Composite.ADD.blend(0x40FF0000, 0x400000FF));
+    }
+
+    @Test
+    public void coverageScalesTheSource() {
+        assertEquals(BLUE, Composite.SRC_OVER.blend(RED, BLUE, 0));
+        assertEquals(0xFF80007F, Composite.SRC_OVER.blend(RED, BLUE, 128));
+        assertEquals(0xFF80007F, Composite.SRC.blend(RED, BLUE, 128), "the same for opaque colors");
+        assertEquals(0xBF5600A9, Composite.SRC.blend(HALF_RED, BLUE, 128), "replaces in proportion to coverage");
+    }
+
+    @Test
+    public void spansAndMasks() {
+        int[] pixels = new int[6];
+        Arrays.fill(pixels, BLUE);
+        Composite.SRC_OVER.fillSpan(pixels, 1, 5, 0x00FF0000);
+        assertArrayEquals(new int[]{BLUE, BLUE, BLUE, BLUE, BLUE, BLUE}, pixels);
+        Composite.DST_IN.fillSpan(pixels, 1, 5, RED);
+        assertArrayEquals(new int[]{BLUE, BLUE, BLUE, BLUE, BLUE, BLUE}, pixels);
+        Composite.SRC_OVER.fillSpan(pixels, 1, 3, RED);
+        Composite.DST_IN.fillSpan(pixels, 4, 6, 0);
+        assertArrayEquals(new int[]{BLUE, RED, RED, BLUE, 0, 0}, pixels);
+
+        Arrays.fill(pixels, BLUE);
+        byte[] mask = {0, (byte) 255, (byte) 128, 0};
+        Composite.SRC_OVER.fillMask(pixels, 1, mask, 0, 4, RED);
+        assertArrayEquals(new int[]{BLUE, BLUE, RED, 0xFF80007F, BLUE, BLUE}, pixels);
+    }
+}
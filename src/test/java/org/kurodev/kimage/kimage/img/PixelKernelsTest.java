@@ -0,0 +1,102 @@
+package org.kurodev.kimage.kimage.img;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class PixelKernelsTest {
+    //not a multiple of any vector length, so every kernel runs into its scalar tail
+    private static final int LENGTH = 1000 + 7;
+    private static final int OFFSET = 3;
+    private final Random random = new Random(42);
+    private PixelKernels vector;
+    private final PixelKernels scalar = PixelKernels.scalar();
+
+    @BeforeEach
+    public void requireVectorKernels() {
+        vector = PixelKernels.get();
+        assumeTrue(vector != scalar, "the Vector API is not available");
+    }
+
+    @Test
+    public void fillMatchesScalar() {
+        int[] expected = randomPixels(false);
+        int[] actual = expected.clone();
+        scalar.fill(expected, OFFSET, LENGTH - 2, 0x80123456);
+        vector.fill(actual, OFFSET, LENGTH - 2, 0x80123456);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void srcOverMaskMatchesScalarOnOpaquePixels() {
+        assertMaskMatchesScalar(randomPixels(true));
+    }
+
+    @Test
+    public void srcOverMaskMatchesScalarOnTranslucentPixels() {
+        assertMaskMatchesScalar(randomPixels(false));
+    }
+
+    private void assertMaskMatchesScalar(int[] pixels) {
+        byte[] coverage = new byte[LENGTH];
+        random.nextBytes(coverage);
+        for (int i = 0; i < LENGTH; i += 5) {
+            coverage[i] = (byte) (i % 2 == 0 ? 0 : 255);
+        }
+        for (int color : new int[]{0xFF3366CC, 0x80FF0000, 0x01FFFFFF, 0xFE000000}) {
+            int[] expected = pixels.clone();
+            int[] actual = pixels.clone();
+            scalar.srcOverMask(expected, OFFSET, coverage, 1, LENGTH - OFFSET, color);
+            vector.srcOverMask(actual, OFFSET, coverage, 1, LENGTH - OFFSET, color);
+            assertArrayEquals(expected, actual, Integer.toHexString(color));
+        }
+    }
+
+    @Test
+    public void premultiplyMatchesScalar() {
+        int[] pixels = randomPixels(false);
+        int[] expected = new int[LENGTH];
+        int[] actual = new int[LENGTH];
+        scalar.premultiply(pixels, OFFSET, expected, 1, LENGTH - OFFSET);
+        vector.premultiply(pixels, OFFSET, actual, 1, LENGTH - OFFSET);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void argbToRgbaMatchesScalar() {
+        int[] pixels = randomPixels(false);
+        byte[] expected = new byte[LENGTH * 4];
+        byte[] actual = new byte[LENGTH * 4];
+        scalar.argbToRgba(pixels, OFFSET, expected, 2, LENGTH - OFFSET);
+        vector.argbToRgba(pixels, OFFSET, actual, 2, LENGTH - OFFSET);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void argbToRgbaWritesPngByteOrder() {
+        int[] pixels = new int[64];
+        Arrays.fill(pixels, 0x11223344);
+        byte[] rgba = new byte[pixels.length * 4];
+        vector.argbToRgba(pixels, 0, rgba, 0, pixels.length);
+        for (int i = 0; i < rgba.length; i += 4) {
+            assertArrayEquals(new byte[]{0x22, 0x33, 0x44, 0x11}, new byte[]{rgba[i], rgba[i + 1], rgba[i + 2], rgba[i + 3]});
+        }
+    }
+
+    private int[] randomPixels(boolean opaque) {
+        int[] pixels = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            pixels[i] = opaque ? random.nextInt() | 0xFF000000 : random.nextInt();
+        }
+        if (!opaque) {
+            pixels[LENGTH / 2] = 0;
+            pixels[LENGTH / 3] = 0xFF000000;
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,153 @@
+package org.kurodev.kimage.kimage.img;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PngFilterTest {
+
+    private static SimplePng gradient() {
+        SimplePng png = new SimplePng(37, 23);
+        Random random = new Random(7);
+        for (int y = 0; y < png.getHeight(); y++) {
+            for (int x = 0; x < png.getWidth(); x++) {
+                png.writeColor(x, y, x * 6, y * 11, (x * y) & 0xFF, 255 - random.nextInt(40));
+            }
+        }
+        return png;
+    }
+
+    @ParameterizedTest
+    @EnumSource(PngFilter.class)
+    public void unfilterReversesFilter(PngFilter filter) {
+        Random random = new Random(filter.ordinal());
+        byte[] prior = new byte[30];
+        byte[] row = new byte[30];
+        random.nextBytes(prior);
+        random.nextBytes(row);
+        byte[] filtered = new byte[30];
+        filter.filter(row, 0, prior, 0, row.length, 3, filtered, 0);
+        filter.unfilter(filtered, 0, prior, 0, filtered.length, 3);
+        assertArrayEquals(row, filtered);
+        //the first row has no prior row
+        filter.filter(row, 0, null, 0, row.length, 3, filtered, 0);
+        filter.unfilter(filtered, 0, null, 0, filtered.length, 3);
+        assertArrayEquals(row, filtered);
+    }
+
+    @Test
+    public void paethPredictor() {
+        assertEquals(10, PngFilter.paeth(10, 20, 20));
+        assertEquals(20, PngFilter.paeth(10, 20, 10));
+        assertEquals(15, PngFilter.paeth(10, 20, 15));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PngFilter.class)
+    public void encodedImagesAreReadableByImageIO(PngFilter filter) throws IOException {
+        SimplePng png = gradient();
+        byte[] encoded = new SimplePngEncoder(png).setFilter(filter).encodeToPng();
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(encoded));
+        for (int y = 0; y < png.getHeight(); y++) {
+            for (int x = 0; x < png.getWidth(); x++) {
+                assertEquals(png.getArgb(x, y), read.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void adaptiveFilteringCompressesBetterThanNone() throws IOException {
+        SimplePng png = gradient();
+        int unfiltered = new SimplePngEncoder(png).setFilter(PngFilter.NONE).encodeToPng().length;
+        byte[] adaptive = new SimplePngEncoder(png).encodeToPng();
+        assertTrue(adaptive.length < unfiltered, adaptive.length + " >= " + unfiltered);
+        DrawableImage decoded = DrawableImage.ofBytes(adaptive);
+        for (int y = 0; y < png.getHeight(); y++) {
+            for (int x = 0; x < png.getWidth(); x++) {
+                assertEquals(png.getArgb(x, y), decoded.getArgb(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void decodesInterlacedImages() throws IOException {
+        BufferedImage source = new BufferedImage(21, 13, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(3);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, random.nextInt());
+            }
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT); //Adam7
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(source, null, null), param);
+        }
+        writer.dispose();
+
+        DrawableImage decoded = DrawableImage.ofBytes(out.toByteArray());
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                assertEquals(source.getRGB(x, y), decoded.getArgb(x, y), "pixel " + x + "|" + y);
+            }
+        }
+    }
+
+    /**
+     * getRGB converts gray images from a linear color space, PNG stores the samples as they are.
+     */
+    private static int expectedArgb(BufferedImage image, int x, int y) {
+        return switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY -> 0xFF000000 | image.getRaster().getSample(x, y, 0) * 0x010101;
+            case BufferedImage.TYPE_USHORT_GRAY -> 0xFF000000 | (image.getRaster().getSample(x, y, 0) >> 8) * 0x010101;
+            default -> image.getRGB(x, y);
+        };
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_USHORT_GRAY,
+            BufferedImage.TYPE_BYTE_INDEXED,
+            BufferedImage.TYPE_BYTE_BINARY
+    })
+    public void decodesImagesWrittenByOtherEncoders(int type) throws IOException {
+        BufferedImage source = new BufferedImage(41, 19, type);
+        Graphics2D graphics = source.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.RED, 41, 19, new Color(0, 0, 255, 128)));
+        graphics.fillRect(0, 0, 41, 19);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(source, "png", out);
+
+        DrawableImage decoded = DrawableImage.ofBytes(out.toByteArray());
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                assertEquals(expectedArgb(source, x, y), decoded.getArgb(x, y), "pixel " + x + "|" + y);
+            }
+        }
+    }
+}
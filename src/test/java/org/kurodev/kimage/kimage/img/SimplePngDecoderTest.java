@@ -0,0 +1,70 @@
+package org.kurodev.kimage.kimage.img;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+import org.kurodev.kimage.kimage.draw.KImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimplePngDecoderTest {
+
+    private static SimplePng randomImage(int width, int height) {
+        SimplePng png = new SimplePng(width, height);
+        Random random = new Random(12);
+        for (int i = 0; i < 40; i++) {
+            png.fillRect(random.nextInt(width), random.nextInt(height), random.nextInt(30), random.nextInt(30), random.nextInt());
+        }
+        return png;
+    }
+
+    @Test
+    public void manySmallImageDataChunksDecodeFromStreamAndChannel() throws IOException {
+        SimplePng png = randomImage(97, 61);
+        byte[] encoded = new SimplePngEncoder(png).setIdatChunkSize(100).encodeToPng();
+
+        SimplePngDecoder decoder = new SimplePngDecoder();
+        decoder.decodePng(Channels.newChannel(new ByteArrayInputStream(encoded)));
+        DrawableImage fromChannel = decoder.getImage();
+        KImage fromStream = KImage.ofStream(new ByteArrayInputStream(encoded));
+        for (int y = 0; y < png.getHeight(); y++) {
+            for (int x = 0; x < png.getWidth(); x++) {
+                assertEquals(png.getArgb(x, y), fromChannel.getArgb(x, y));
+                assertEquals(png.getArgb(x, y), fromStream.getArgb(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void decodingStopsAfterTheEndChunk() throws IOException {
+        byte[] encoded = new SimplePngEncoder(randomImage(20, 20)).encodeToPng();
+        byte[] withTrailer = Arrays.copyOf(encoded, encoded.length + 3);
+        InputStream in = new ByteArrayInputStream(withTrailer);
+        DrawableImage.ofStream(in);
+        assertEquals(3, in.available());
+    }
+
+    @Test
+    public void truncatedImagesAreRejected() throws IOException {
+        byte[] encoded = new SimplePngEncoder(randomImage(40, 40)).encodeToPng();
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length / 2);
+        assertThrows(IOException.class, () -> new SimplePngDecoder().decodePng(truncated));
+        assertThrows(IOException.class, () -> new SimplePngDecoder().decodePng(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    public void corruptedChunksAreRejected() throws IOException {
+        byte[] encoded = new SimplePngEncoder(randomImage(40, 40)).encodeToPng();
+        //the interlace method, the last byte of the IHDR data, which is still a valid value when flipped
+        byte[] corrupted = encoded.clone();
+        corrupted[8 + 8 + 12] ^= 1;
+        IOException e = assertThrows(IOException.class, () -> new SimplePngDecoder().decodePng(corrupted));
+        assertTrue(e.getMessage().contains("CRC"), e.getMessage());
+    }
+}
@@ -0,0 +1,88 @@
+package org.kurodev.kimage.kimage.img;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.draw.DrawableImage;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimplePngEncoderTest {
+
+    private static DrawableImage sampleImage() {
+        DrawableImage image = new DrawableImage(200, 150);
+        image.fill(Color.WHITE);
+        image.fillCircle(100, 75, 60, new Color(255, 0, 0, 128));
+        image.drawString(10, 80, "Streaming", Color.BLUE, 24);
+        image.addCustomChunk("tEXt", "Comment\0streamed");
+        return image;
+    }
+
+    /**
+     * @return the amount of chunks of the given type
+     */
+    private static int countChunks(byte[] png, String type) {
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.position(8);
+        int count = 0;
+        while (buffer.remaining() >= 12) {
+            int length = buffer.getInt();
+            byte[] chunkType = new byte[4];
+            buffer.get(chunkType);
+            if (type.equals(new String(chunkType))) {
+                count++;
+            }
+            buffer.position(buffer.position() + length + 4);
+        }
+        return count;
+    }
+
+    @Test
+    public void streamedImageDecodesToTheSamePixels() throws IOException {
+        DrawableImage image = sampleImage();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.encode(out);
+        DrawableImage decoded = DrawableImage.ofBytes(out.toByteArray());
+        assertEquals(image, decoded);
+        assertEquals("Comment\0streamed", decoded.getChunkString("tEXt"));
+
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        image.encode(Channels.newChannel(channelOut));
+        assertArrayEquals(out.toByteArray(), channelOut.toByteArray());
+    }
+
+    @Test
+    public void imageDataIsSplitIntoBoundedChunks() throws IOException {
+        SimplePng png = new SimplePng(120, 80);
+        Random random = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            png.fillRect(random.nextInt(120), random.nextInt(80), random.nextInt(40), random.nextInt(40), random.nextInt());
+        }
+        SimplePngEncoder encoder = new SimplePngEncoder(png).setIdatChunkSize(1000);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        encoder.encode(streamed);
+        byte[] inMemory = encoder.encodeToPng();
+        assertTrue(countChunks(streamed.toByteArray(), "IDAT") > 1);
+        assertTrue(countChunks(inMemory, "IDAT") > 1);
+
+        //other decoders have to accept the chunked data as well
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(streamed.toByteArray()));
+        DrawableImage decoded = DrawableImage.ofBytes(inMemory);
+        for (int y = 0; y < png.getHeight(); y++) {
+            for (int x = 0; x < png.getWidth(); x++) {
+                assertEquals(png.getArgb(x, y), read.getRGB(x, y));
+                assertEquals(png.getArgb(x, y), decoded.getArgb(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.kurodev.kimage.kimage.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CoverageRasterizerTest {
+
+    private static int coverage(byte[] mask, int width, int x, int y) {
+        return mask[y * width + x] & 0xFF;
+    }
+
+    @Test
+    public void pixelAlignedSquareIsFullyCovered() {
+        CoverageRasterizer rasterizer = new CoverageRasterizer().reset(4, 4);
+        rasterizer.moveTo(1, 1).lineTo(3, 1).lineTo(3, 3).lineTo(1, 3).closePath();
+        byte[] mask = new byte[16];
+        rasterizer.accumulate(mask);
+        assertEquals(0, coverage(mask, 4, 0, 0));
+        assertEquals(255, coverage(mask, 4, 1, 1));
+        assertEquals(255, coverage(mask, 4, 2, 2));
+        assertEquals(0, coverage(mask, 4, 3, 3));
+    }
+
+    @Test
+    public void halfCoveredEdges() {
+        CoverageRasterizer rasterizer = new CoverageRasterizer().reset(4, 4);
+        //counter-clockwise this time, the winding direction must not matter
+        rasterizer.moveTo(0.5f, 0.5f).lineTo(0.5f, 3.5f).lineTo(3.5f, 3.5f).lineTo(3.5f, 0.5f).closePath();
+        byte[] mask = new byte[16];
+        rasterizer.accumulate(mask);
+        assertEquals(64, coverage(mask, 4, 0, 0));
+        assertEquals(128, coverage(mask, 4, 1, 0));
+        assertEquals(128, coverage(mask, 4, 0, 1));
+        assertEquals(255, coverage(mask, 4, 1, 1));
+    }
+
+    @Test
+    public void diagonalSplitsPixelsInHalf() {
+        CoverageRasterizer rasterizer = new CoverageRasterizer().reset(2, 2);
+        rasterizer.moveTo(0, 0).lineTo(2, 2).lineTo(0, 2).closePath();
+        int[] sum = new int[1];
+        rasterizer.forEachCoverage((x, y, coverage) -> {
+            if (x == y) {
+                assertEquals(128, coverage);
+            }
+            sum[0] += coverage;
+        });
+        assertEquals(128 + 128 + 255, sum[0]);
+    }
+}
@@ -0,0 +1,114 @@
+package org.kurodev.kimage.kimage.util;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.kimage.kimage.font.glyph.simple.Coordinate;
+import org.kurodev.kimage.kimage.img.Composite;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LineRasterizerTest {
+    private static final int SIZE = 32;
+
+    private static int[] expected(int x1, int y1, int x2, int y2, int left, int top, int right, int bottom) {
+        int[] pixels = new int[SIZE * SIZE];
+        for (Coordinate point : Util.calculateLinePoints(x1, y1, x2, y2)) {
+            if (point.x() >= left && point.x() < right && point.y() >= top && point.y() < bottom) {
+                pixels[point.y() * SIZE + point.x()] = 1;
+            }
+        }
+        return pixels;
+    }
+
+    private static void assertSameLine(int x1, int y1, int x2, int y2, int left, int top, int right, int bottom) {
+        int[] actual = new int[SIZE * SIZE];
+        LineRasterizer.draw(actual, SIZE, x1, y1, x2, y2, left, top, right, bottom, 1, Composite.SRC);
+        assertArrayEquals(expected(x1, y1, x2, y2, left, top, right, bottom), actual,
+                "line " + x1 + "," + y1 + " -> " + x2 + "," + y2);
+    }
+
+    @Test
+    public void matchesUnclippedBresenhamInEveryOctant() {
+        for (int x = 0; x < SIZE; x += 3) {
+            for (int y = 0; y < SIZE; y += 3) {
+                assertSameLine(16, 16, x, y, 0, 0, SIZE, SIZE);
+            }
+        }
+    }
+
+    @Test
+    public void clippedLinesKeepTheirPixels() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            int left = random.nextInt(SIZE / 2);
+            int top = random.nextInt(SIZE / 2);
+            int right = left + random.nextInt(SIZE - left + 1);
+            int bottom = top + random.nextInt(SIZE - top + 1);
+            assertSameLine(random.nextInt(120) - 44, random.nextInt(120) - 44,
+                    random.nextInt(120) - 44, random.nextInt(120) - 44, left, top, right, bottom);
+        }
+    }
+
+    @Test
+    public void linesFarOffCanvasAreCut() {
+        int[] pixels = new int[SIZE * SIZE];
+        //would take billions of steps without clipping
+        LineRasterizer.draw(pixels, SIZE, -1_000_000_000, 5, 1_000_000_000, 5, 0, 0, SIZE, SIZE, 1, Composite.SRC);
+        for (int x = 0; x < SIZE; x++) {
+            assertEquals(1, pixels[5 * SIZE + x]);
+        }
+        assertSameLine(-1_000_000, -999_990, 1_000_000, 1_000_010, 0, 0, SIZE, SIZE);
+    }
+
+    @Test
+    public void extremeCoordinatesDoNotOverflow() {
+        int[] pixels = new int[SIZE * SIZE];
+        LineRasterizer.draw(pixels, SIZE, -2_000_000_000, 5, 2_000_000_000, 5, 0, 0, SIZE, SIZE, 1, Composite.SRC);
+        for (int x = 0; x < SIZE; x++) {
+            assertEquals(1, pixels[5 * SIZE + x]);
+        }
+        //the distances between the ends do not fit into an int
+        int[][] directions = {{1, 1}, {1, 2}, {2, 1}, {3, 7}, {7, 3}, {-1, 2}, {5, -3}, {0, 1}, {1, 0}};
+        for (int[] direction : directions) {
+            for (int sign : new int[]{1, -1}) {
+                int dx = direction[0] * sign;
+                int dy = direction[1] * sign;
+                int repeats = 1_999_999_000 / Math.max(Math.abs(dx), Math.abs(dy));
+                int[] actual = new int[SIZE * SIZE];
+                LineRasterizer.draw(actual, SIZE, 16 - dx * repeats, 16 - dy * repeats, 16 + dx * repeats, 16 + dy * repeats,
+                        0, 0, SIZE, SIZE, 1, Composite.SRC);
+                //both lines start on the same lattice points, so Bresenham's algorithm is in the same state on the canvas
+                int shortRepeats = 40;
+                assertArrayEquals(expected(16 - dx * shortRepeats, 16 - dy * shortRepeats,
+                                16 + dx * shortRepeats, 16 + dy * shortRepeats, 0, 0, SIZE, SIZE), actual,
+                        "direction " + dx + "," + dy);
+            }
+        }
+    }
+
+    @Test
+    public void floorDivIsExactBeyondLongRange() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            //up to twice the distance across the int range, as in the clipping math
+            long a = random.nextLong(-(1L << 34), 1L << 34);
+            long b = random.nextLong(0, 1L << 33);
+            long c = random.nextLong(-(1L << 33), 1L << 33);
+            long divisor = random.nextLong(1, 1L << 34);
+            BigInteger exact = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).add(BigInteger.valueOf(c));
+            BigInteger[] division = exact.divideAndRemainder(BigInteger.valueOf(divisor));
+            long expected = division[0].longValue() - (division[1].signum() < 0 ? 1 : 0);
+            assertEquals(expected, LineRasterizer.floorDiv(a, b, c, divisor), a + " * " + b + " + " + c + " / " + divisor);
+        }
+    }
+
+    @Test
+    public void outcodes() {
+        assertEquals(0, LineRasterizer.outcode(5, 5, 0, 0, 10, 10));
+        assertEquals(1 | 4, LineRasterizer.outcode(-1, -1, 0, 0, 10, 10));
+        assertEquals(2 | 8, LineRasterizer.outcode(10, 10, 0, 0, 10, 10));
+    }
+}
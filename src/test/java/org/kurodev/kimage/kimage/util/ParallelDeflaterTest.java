@@ -0,0 +1,65 @@
+package org.kurodev.kimage.kimage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParallelDeflaterTest {
+
+    private static byte[] sampleData(int length) {
+        //repetitive enough to be compressible, with matches reaching across block borders
+        byte[] data = new byte[length];
+        Random random = new Random(1);
+        byte[] pattern = new byte[3000];
+        random.nextBytes(pattern);
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (pattern[i % pattern.length] + (random.nextInt(50) == 0 ? 1 : 0));
+        }
+        return data;
+    }
+
+    @Test
+    public void producesSingleValidZlibStream() throws IOException {
+        byte[] data = sampleData(100_000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int level : new int[]{Deflater.DEFAULT_COMPRESSION, 1, 9}) {
+                byte[] compressed = new ParallelDeflater(executor, 7000, level).compress(data);
+                //the inflater validates header and checksum
+                assertArrayEquals(data, DeflateCompression.decompress(compressed));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void smallAndEmptyInputs() throws IOException {
+        ParallelDeflater deflater = new ParallelDeflater(Runnable::run, 16, Deflater.DEFAULT_COMPRESSION);
+        for (int length : new int[]{0, 1, 16, 17}) {
+            byte[] data = Arrays.copyOf(sampleData(100), length);
+            assertArrayEquals(data, DeflateCompression.decompress(deflater.compress(data)));
+        }
+    }
+
+    @Test
+    public void combinesAdler32() {
+        byte[] data = sampleData(200_000);
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 70_000);
+        Adler32 second = new Adler32();
+        second.update(data, 70_000, data.length - 70_000);
+        assertEquals(whole.getValue(), ParallelDeflater.combineAdler32(first.getValue(), second.getValue(), data.length - 70_000));
+    }
+}
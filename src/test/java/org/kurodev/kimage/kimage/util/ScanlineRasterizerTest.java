@@ -0,0 +1,64 @@
+package org.kurodev.kimage.kimage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ScanlineRasterizerTest {
+
+    private static List<String> fill(ScanlineRasterizer rasterizer, ScanlineRasterizer.FillRule rule) {
+        List<String> spans = new ArrayList<>();
+        rasterizer.fill(rule, (y, xStart, xEnd) -> spans.add(y + ":" + xStart + "-" + xEnd));
+        return spans;
+    }
+
+    private static void square(ScanlineRasterizer rasterizer, float x, float y, float size, boolean clockwise) {
+        rasterizer.moveTo(x, y);
+        if (clockwise) {
+            rasterizer.lineTo(x + size, y).lineTo(x + size, y + size).lineTo(x, y + size);
+        } else {
+            rasterizer.lineTo(x, y + size).lineTo(x + size, y + size).lineTo(x + size, y);
+        }
+    }
+
+    @Test
+    public void fillsPixelCentersInsideRectangle() {
+        ScanlineRasterizer rasterizer = new ScanlineRasterizer();
+        square(rasterizer, 1, 2, 3, true);
+        assertEquals(List.of("2:1-4", "3:1-4", "4:1-4"), fill(rasterizer, ScanlineRasterizer.FillRule.NON_ZERO));
+    }
+
+    @Test
+    public void windingRules() {
+        ScanlineRasterizer rasterizer = new ScanlineRasterizer();
+        //both squares wind in the same direction, so the inner one is filled with non-zero but a hole with even-odd
+        square(rasterizer, 0, 0, 6, true);
+        square(rasterizer, 2, 2, 2, true);
+        List<String> nonZero = fill(rasterizer, ScanlineRasterizer.FillRule.NON_ZERO);
+        assertEquals("2:0-6", nonZero.get(2));
+        List<String> evenOdd = fill(rasterizer, ScanlineRasterizer.FillRule.EVEN_ODD);
+        assertEquals(List.of("2:0-2", "2:4-6"), evenOdd.subList(2, 4));
+
+        //a counter-clockwise inner square is a hole with both rules
+        rasterizer.reset();
+        square(rasterizer, 0, 0, 6, true);
+        square(rasterizer, 2, 2, 2, false);
+        assertEquals(List.of("2:0-2", "2:4-6"), fill(rasterizer, ScanlineRasterizer.FillRule.NON_ZERO).subList(2, 4));
+    }
+
+    @Test
+    public void resetReusesBuffers() {
+        ScanlineRasterizer rasterizer = new ScanlineRasterizer();
+        for (int i = 0; i < 100; i++) {
+            square(rasterizer, i, 0, 1, true);
+        }
+        assertEquals(100, fill(rasterizer, ScanlineRasterizer.FillRule.NON_ZERO).size());
+        rasterizer.reset();
+        assertEquals(0, rasterizer.getEdgeCount());
+        square(rasterizer, 0, 0, 1, true);
+        assertEquals(List.of("0:0-1"), fill(rasterizer, ScanlineRasterizer.FillRule.NON_ZERO));
+    }
+}